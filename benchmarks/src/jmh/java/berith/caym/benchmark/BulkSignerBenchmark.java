@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package berith.caym.benchmark;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.rlp.RlpEncoder;
+import org.web3j.rlp.RlpList;
+
+import berith.caym.crypto.BulkSigner;
+import berith.caym.crypto.RawTransaction;
+import berith.caym.crypto.Signer;
+import berith.caym.util.NumericUtil;
+
+/**
+ * Signing a batch of transfers with {@link BulkSigner} compared with {@link Signer} on one thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkSignerBenchmark {
+
+    @Param({"1000"})
+    int batchSize;
+
+    private ECKeyPair keyPair;
+    private BulkSigner bulkSigner;
+    private List<RawTransaction> transactions;
+
+    @Setup
+    public void setUp() {
+        keyPair = ECKeyPair.create(BigInteger.valueOf(3360));
+        bulkSigner = new BulkSigner();
+        transactions = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            transactions.add(RawTransaction.createTransferTransaction(
+                    BigInteger.valueOf(i), BigInteger.valueOf(1_000_000_000L), BigInteger.valueOf(21_000L),
+                    "Bx90865e6e6737fe766dd08f39cc2cf1550b5f3875", BigInteger.valueOf(1_000_000L + i)));
+        }
+    }
+
+    @Benchmark
+    public List<String> bulkSigner() {
+        return bulkSigner.sign(transactions, keyPair);
+    }
+
+    @Benchmark
+    public List<String> sequentialSigner() {
+        final List<String> rawHashes = new ArrayList<>(transactions.size());
+        for (RawTransaction transaction : transactions) {
+            Signer.signTransaction(transaction, keyPair);
+            // getRawHash() would return the cached hash from the first invocation
+            rawHashes.add(NumericUtil.toHexString(RlpEncoder.encode(new RlpList(transaction.encodeRLP()))));
+        }
+        return rawHashes;
+    }
+}
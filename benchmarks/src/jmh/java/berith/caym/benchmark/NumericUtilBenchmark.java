@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import berith.caym.util.NumericUtil;
+
+/**
+ * Hex codec of {@link NumericUtil} compared with the previous String.format / Character.digit
+ * implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NumericUtilBenchmark {
+
+    /** 20 bytes address, 32 bytes hash and a typical signed transfer */
+    @Param({"20", "32", "110"})
+    int size;
+
+    private byte[] bytes;
+    private String hex;
+    private char[] charBuffer;
+    private byte[] byteBuffer;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        hex = NumericUtil.toHexString(bytes);
+        charBuffer = new char[size * 2];
+        byteBuffer = new byte[size];
+    }
+
+    @Benchmark
+    public String toHexString() {
+        return NumericUtil.toHexString(bytes);
+    }
+
+    @Benchmark
+    public String toHexStringLegacy() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("0x");
+        for (byte b : bytes) {
+            stringBuilder.append(String.format("%02x", b & 0xFF));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Benchmark
+    public char[] encodeHexIntoBuffer() {
+        NumericUtil.encodeHex(bytes, 0, bytes.length, charBuffer, 0);
+        return charBuffer;
+    }
+
+    @Benchmark
+    public byte[] hexStringToByteArray() {
+        return NumericUtil.hexStringToByteArray(hex);
+    }
+
+    @Benchmark
+    public byte[] hexStringToByteArrayLegacy() {
+        String cleanInput = NumericUtil.cleanHexPrefix(hex);
+        int len = cleanInput.length();
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(cleanInput.charAt(i), 16) << 4)
+                                  + Character.digit(cleanInput.charAt(i + 1), 16));
+        }
+        return data;
+    }
+
+    @Benchmark
+    public byte[] decodeHexIntoBuffer() {
+        NumericUtil.decodeHex(hex, 2, hex.length() - 2, byteBuffer, 0);
+        return byteBuffer;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package berith.caym.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import org.web3j.protocol.ObjectMapperFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+/**
+ * Recorded JSON-RPC responses under {@code /payloads}, scaled up to production sizes.
+ */
+final class Payloads {
+
+    private static final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    /**
+     * berith_getBlockByNumber response with full transaction objects.
+     * The recorded transactions are repeated until the block holds {@code transactionCount} of them.
+     */
+    static byte[] block(int transactionCount) {
+        final JsonNode root = load("block.json");
+        fill((ArrayNode) root.get("result").get("transactions"), transactionCount);
+        return toBytes(root);
+    }
+
+    /**
+     * berith_getLogs response. The recorded logs are repeated until it holds {@code logCount} of them.
+     */
+    static byte[] logs(int logCount) {
+        final JsonNode root = load("logs.json");
+        fill((ArrayNode) root.get("result"), logCount);
+        return toBytes(root);
+    }
+
+    /**
+     * berith_getTransactionReceipt response of a token transfer with two logs.
+     */
+    static byte[] receipt() {
+        return toBytes(load("receipt.json"));
+    }
+
+    private static void fill(ArrayNode array, int size) {
+        final int recorded = array.size();
+        if (recorded == 0) {
+            throw new IllegalStateException("Recorded payload has no elements to repeat");
+        }
+        while (array.size() > size) {
+            array.remove(array.size() - 1);
+        }
+        for (int i = array.size(); i < size; i++) {
+            array.add(array.get(i % recorded).deepCopy());
+        }
+    }
+
+    private static JsonNode load(String name) {
+        try (InputStream inputStream = Payloads.class.getResourceAsStream("/payloads/" + name)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Missing payload: " + name);
+            }
+            return objectMapper.readTree(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] toBytes(JsonNode root) {
+        try {
+            return objectMapper.writeValueAsBytes(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Payloads() {
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package berith.caym.benchmark;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.rlp.RlpEncoder;
+import org.web3j.rlp.RlpList;
+
+import berith.caym.crypto.RawTransaction;
+import berith.caym.crypto.RawTransactionDecoder;
+import berith.caym.crypto.RawTransactionEncoder;
+import berith.caym.crypto.Signer;
+import berith.caym.util.NumericUtil;
+
+/**
+ * Encoding, signing and decoding of {@link RawTransaction}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RawTransactionBenchmark {
+
+    private static final BigInteger NONCE = BigInteger.valueOf(0x11a);
+    private static final BigInteger GAS_PRICE = BigInteger.valueOf(1_000_000_000L);
+    private static final BigInteger GAS_LIMIT = BigInteger.valueOf(100_000L);
+    private static final BigInteger VALUE = new BigInteger("100000000000000000000");
+    private static final String TO = "Bx16c5785ac562ff41e2dcfdf829c5a142f1fccd7d";
+
+    /** input data bytes: a plain transfer, a token transfer call and a contract deployment */
+    @Param({"0", "68", "4096"})
+    int dataSize;
+
+    private String data;
+    private ECKeyPair keyPair;
+    private RawTransaction signedTransaction;
+    private String signedRawHash;
+    private byte[] signedEncoded;
+    private RawTransactionDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        final byte[] bytes = new byte[dataSize];
+        new Random(dataSize).nextBytes(bytes);
+        data = NumericUtil.toHexString(bytes);
+        keyPair = ECKeyPair.create(BigInteger.valueOf(3360));
+
+        signedTransaction = newTransaction();
+        Signer.signTransaction(signedTransaction, keyPair);
+        signedRawHash = signedTransaction.getRawHash();
+        signedEncoded = RawTransactionEncoder.encode(signedTransaction);
+        decoder = new RawTransactionDecoder();
+    }
+
+    /** a new transaction for every call since {@link RawTransaction#getRawHash()} caches its result */
+    @Benchmark
+    public String getRawHash() {
+        return new RawTransaction(NONCE, GAS_PRICE, GAS_LIMIT, TO, VALUE, data, 1, 1,
+                                  signedTransaction.getV(), signedTransaction.getR(),
+                                  signedTransaction.getS()).getRawHash();
+    }
+
+    /** encoding through the RlpType object graph as done before {@link RawTransactionEncoder} */
+    @Benchmark
+    public byte[] encodeRlpList() {
+        return RlpEncoder.encode(new RlpList(signedTransaction.encodeRLP()));
+    }
+
+    @Benchmark
+    public byte[] encodeDirect() {
+        return RawTransactionEncoder.encode(signedTransaction);
+    }
+
+    @Benchmark
+    public RawTransaction signTransaction() {
+        final RawTransaction rawTransaction = newTransaction();
+        Signer.signTransaction(rawTransaction, keyPair);
+        return rawTransaction;
+    }
+
+    @Benchmark
+    public RawTransaction fromRawHash() {
+        return RawTransaction.fromRawHash(signedRawHash);
+    }
+
+    /** typed field access of an encoded transaction without building a {@link RawTransaction} */
+    @Benchmark
+    public long decodeInPlace() {
+        decoder.wrap(signedEncoded);
+        return decoder.getNonceAsLong() + decoder.getGasLimitAsLong() + decoder.getDataLength() + decoder.getBase();
+    }
+
+    private RawTransaction newTransaction() {
+        return new RawTransaction(NONCE, GAS_PRICE, GAS_LIMIT, TO, VALUE, data, 1, 1);
+    }
+}
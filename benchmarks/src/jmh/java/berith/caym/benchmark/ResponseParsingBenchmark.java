@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package berith.caym.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.web3j.protocol.ObjectMapperFactory;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithBlock.TransactionObject;
+import berith.caym.protocol.response.BerithBlockReader;
+import berith.caym.protocol.response.BerithLog;
+import berith.caym.protocol.response.BlockVisitor;
+
+/**
+ * Jackson deserialization of recorded block and log responses, the same way
+ * {@link org.web3j.protocol.Service} reads them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseParsingBenchmark {
+
+    /** transactions per block and logs per berith_getLogs response */
+    @Param({"10", "200", "1000"})
+    int count;
+
+    private ObjectReader objectReader;
+    private byte[] block;
+    private byte[] logs;
+
+    @Setup
+    public void setUp() {
+        objectReader = ObjectMapperFactory.getObjectReader();
+        block = Payloads.block(count);
+        logs = Payloads.logs(count);
+    }
+
+    @Benchmark
+    public BerithBlock berithBlock() throws IOException {
+        return objectReader.forType(BerithBlock.class).readValue(block);
+    }
+
+    @Benchmark
+    public BerithBlock berithBlockStreaming(Blackhole blackhole) throws IOException {
+        return BerithBlockReader.read(new ByteArrayInputStream(block), new BlockVisitor() {
+            @Override
+            public void onTransaction(TransactionObject transaction) {
+                blackhole.consume(transaction);
+            }
+
+            @Override
+            public void onBlock(Block block) {
+            }
+        });
+    }
+
+    @Benchmark
+    public BerithLog berithLog() throws IOException {
+        return objectReader.forType(BerithLog.class).readValue(logs);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package berith.caym.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.protocol.ObjectMapperFactory;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import berith.caym.protocol.response.BerithGetTransactionReceipt;
+
+/**
+ * Jackson deserialization of a recorded berith_getTransactionReceipt response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransactionReceiptParsingBenchmark {
+
+    private ObjectReader objectReader;
+    private byte[] receipt;
+
+    @Setup
+    public void setUp() {
+        objectReader = ObjectMapperFactory.getObjectReader().forType(BerithGetTransactionReceipt.class);
+        receipt = Payloads.receipt();
+    }
+
+    @Benchmark
+    public BerithGetTransactionReceipt transactionReceipt() throws IOException {
+        return objectReader.readValue(receipt);
+    }
+}
@@ -3,6 +3,10 @@ package berith.caym;
 import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.core.Batcher;
 
+import berith.caym.block.BlockRangeFetcher;
+import berith.caym.block.LogScanner;
+import berith.caym.metrics.MetricsRegistry;
+
 public interface Caym extends Batcher {
 
     /**
@@ -23,6 +27,16 @@ public interface Caym extends Batcher {
         return new CaymImpl(web3jService);
     }
 
+    /**
+     * Create a Caym instance given {@link Web3jService} which reports every request to the registry.
+     * An {@link berith.caym.protocol.AsyncHttpService} also reports the bytes sent and received.
+     *
+     * @return new {@link Caym} instance
+     */
+    static Caym build(Web3jService web3jService, MetricsRegistry metricsRegistry) {
+        return new CaymImpl(web3jService, metricsRegistry);
+    }
+
     /**
      * Returns a {@link Berith} instance
      */
@@ -32,4 +46,18 @@ public interface Caym extends Batcher {
      * Returns a {@link Web3jService} in {@link Caym} instance
      */
     Web3jService getWeb3JService();
+
+    /**
+     * Returns a new {@link BlockRangeFetcher} which keeps at most {@code maxInFlight} block requests outstanding
+     */
+    default BlockRangeFetcher newBlockRangeFetcher(int maxInFlight, boolean fullTransactionObjects) {
+        return new BlockRangeFetcher(this, maxInFlight, fullTransactionObjects);
+    }
+
+    /**
+     * Returns a new {@link LogScanner} which keeps at most {@code maxInFlight} block requests outstanding
+     */
+    default LogScanner newLogScanner(int maxInFlight) {
+        return new LogScanner(this, maxInFlight);
+    }
 }
@@ -21,7 +21,10 @@ import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.admin.Admin;
 import org.web3j.protocol.admin.JsonRpc2_0Admin;
 import org.web3j.protocol.core.BatchRequest;
-import org.web3j.protocol.http.HttpService;
+
+import berith.caym.metrics.InstrumentedWeb3jService;
+import berith.caym.metrics.MetricsRegistry;
+import berith.caym.protocol.AsyncHttpService;
 
 /**
  * Implements of {@link Caym}
@@ -29,6 +32,8 @@ import org.web3j.protocol.http.HttpService;
 public class CaymImpl implements Caym {
 
     private Web3jService web3jService;
+    // the service requests are sent through, instrumented if metrics are enabled
+    private Web3jService requestService;
     private Admin web3j;
     private Berith berith;
 
@@ -37,13 +42,26 @@ public class CaymImpl implements Caym {
     }
 
     CaymImpl(String httpUrl) {
-        this(new HttpService(httpUrl));
+        this(new AsyncHttpService(httpUrl));
     }
 
     CaymImpl(Web3jService web3jService) {
+        this(web3jService, MetricsRegistry.NOOP);
+    }
+
+    CaymImpl(Web3jService web3jService, MetricsRegistry metricsRegistry) {
         this.web3jService = Objects.requireNonNull(web3jService, "web3jService");
-        web3j = new JsonRpc2_0Admin(web3jService);
-        berith = new JsonRpc2_0Berith(web3jService, web3j);
+        Objects.requireNonNull(metricsRegistry, "metricsRegistry");
+        if (metricsRegistry == MetricsRegistry.NOOP) {
+            requestService = web3jService;
+        } else {
+            requestService = new InstrumentedWeb3jService(web3jService, metricsRegistry);
+            if (web3jService instanceof AsyncHttpService) {
+                ((AsyncHttpService) web3jService).setMetricsRegistry(metricsRegistry);
+            }
+        }
+        web3j = new JsonRpc2_0Admin(requestService);
+        berith = new JsonRpc2_0Berith(requestService, web3j);
     }
 
     @Override
@@ -58,6 +76,6 @@ public class CaymImpl implements Caym {
 
     @Override
     public BatchRequest newBatch() {
-        return new BatchRequest(web3jService);
+        return new BatchRequest(requestService);
     }
 }
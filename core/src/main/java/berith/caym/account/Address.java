@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.account;
+
+import java.util.Objects;
+
+/**
+ * 20 byte account address held in two longs and an int.
+ *
+ * <p>Addresses are parsed with or without a {@code Bx} or {@code 0x} prefix, in any case, and
+ * printed as {@code Bx} followed by lower case hex. Equality and hash code only look at the 20
+ * bytes, so addresses are cheap map keys. Use an {@link AddressPool} to share one instance per
+ * address.
+ */
+public final class Address implements Comparable<Address> {
+
+    public static final int LENGTH = 20;
+
+    private static final int HEX_LENGTH = LENGTH * 2;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // bytes 0 to 7, 8 to 15 and 16 to 19, big endian
+    private final long high;
+    private final long middle;
+    private final int low;
+
+    private Address(long high, long middle, int low) {
+        this.high = high;
+        this.middle = middle;
+        this.low = low;
+    }
+
+    /**
+     * Parses an address of 40 hex characters with an optional {@code Bx} or {@code 0x} prefix
+     *
+     * @throws IllegalArgumentException if the input is not an address
+     */
+    public static Address of(CharSequence address) {
+        final Address result = parse(Objects.requireNonNull(address, "address"));
+        if (result == null) {
+            throw new IllegalArgumentException("Invalid address: " + address);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the address of the 20 bytes starting at {@code offset}
+     */
+    public static Address of(byte[] bytes, int offset) {
+        if (offset < 0 || bytes.length - offset < LENGTH) {
+            throw new IllegalArgumentException("Address needs " + LENGTH + " bytes from offset " + offset);
+        }
+        return new Address(readBits(bytes, offset, 8), readBits(bytes, offset + 8, 8),
+                           (int) readBits(bytes, offset + 16, 4));
+    }
+
+    /**
+     * Parses an address like {@link #of(CharSequence)}, or returns null if the input is not an address
+     */
+    static Address parse(CharSequence address) {
+        final int offset = address.length() - HEX_LENGTH;
+        if (offset != 0 && offset != 2) {
+            return null;
+        }
+        if (offset == 2) {
+            final char first = address.charAt(0);
+            final char second = address.charAt(1);
+            if (!((first == 'B' || first == '0') && (second == 'x' || second == 'X'))) {
+                return null;
+            }
+        }
+
+        long high = 0L;
+        long middle = 0L;
+        long low = 0L;
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            final int digit = Character.digit(address.charAt(offset + i), 16);
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 16) {
+                high = (high << 4) | digit;
+            } else if (i < 32) {
+                middle = (middle << 4) | digit;
+            } else {
+                low = (low << 4) | digit;
+            }
+        }
+        return new Address(high, middle, (int) low);
+    }
+
+    public byte[] toBytes() {
+        final byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - 8 * i));
+            bytes[8 + i] = (byte) (middle >>> (56 - 8 * i));
+        }
+        for (int i = 0; i < 4; i++) {
+            bytes[16 + i] = (byte) (low >>> (24 - 8 * i));
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the 40 lower case hex characters without prefix
+     */
+    public String toHexStringNoPrefix() {
+        final char[] chars = new char[HEX_LENGTH];
+        writeHex(chars, 0);
+        return new String(chars);
+    }
+
+    @Override
+    public int compareTo(Address other) {
+        int result = Long.compareUnsigned(high, other.high);
+        if (result == 0) {
+            result = Long.compareUnsigned(middle, other.middle);
+        }
+        return result != 0 ? result : Integer.compareUnsigned(low, other.low);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Address)) {
+            return false;
+        }
+        final Address address = (Address) o;
+        return high == address.high && middle == address.middle && low == address.low;
+    }
+
+    @Override
+    public int hashCode() {
+        // addresses are hashes already, the low bits of each part are well distributed
+        return (int) (high ^ middle) ^ low;
+    }
+
+    /**
+     * Returns {@code Bx} followed by the 40 lower case hex characters
+     */
+    @Override
+    public String toString() {
+        final char[] chars = new char[HEX_LENGTH + 2];
+        chars[0] = 'B';
+        chars[1] = 'x';
+        writeHex(chars, 2);
+        return new String(chars);
+    }
+
+    private void writeHex(char[] out, int offset) {
+        for (int i = 0; i < 16; i++) {
+            out[offset + i] = HEX_DIGITS[(int) (high >>> (60 - 4 * i)) & 0xf];
+            out[offset + 16 + i] = HEX_DIGITS[(int) (middle >>> (60 - 4 * i)) & 0xf];
+        }
+        for (int i = 0; i < 8; i++) {
+            out[offset + 32 + i] = HEX_DIGITS[(low >>> (28 - 4 * i)) & 0xf];
+        }
+    }
+
+    private static long readBits(byte[] bytes, int offset, int length) {
+        long value = 0L;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xffL);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.account;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool which shares one {@link Address} instance, and one string, per address.
+ *
+ * <p>The {@linkplain #global() global pool} lives as long as the class loader, scoped pools can be
+ * dropped or {@linkplain #clear() cleared} with the data which refers to them.
+ */
+public class AddressPool {
+
+    private static final AddressPool GLOBAL = new AddressPool();
+
+    private final ConcurrentMap<Address, Entry> entries = new ConcurrentHashMap<>();
+
+    public static AddressPool global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the pooled instance of the address
+     */
+    public Address intern(Address address) {
+        return entry(address, null).address;
+    }
+
+    /**
+     * Parses and returns the pooled instance of the address
+     *
+     * @throws IllegalArgumentException if the input is not an address
+     */
+    public Address intern(CharSequence address) {
+        return intern(Address.of(address));
+    }
+
+    /**
+     * Returns the pooled string of the address if it is spelled the same way, the first spelling of
+     * an address is pooled. Strings which are not addresses are returned as they are.
+     */
+    public String internString(String address) {
+        if (address == null) {
+            return null;
+        }
+        final Address parsed = Address.parse(address);
+        if (parsed == null) {
+            return address;
+        }
+        final String pooled = entry(parsed, address).string;
+        return pooled.equals(address) ? pooled : address;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private Entry entry(Address address, String string) {
+        final Entry entry = entries.get(address);
+        if (entry != null) {
+            return entry;
+        }
+        final Entry created = new Entry(address, string != null ? string : address.toString());
+        final Entry existing = entries.putIfAbsent(address, created);
+        return existing != null ? existing : created;
+    }
+
+    private static final class Entry {
+
+        private final Address address;
+        private final String string;
+
+        private Entry(Address address, String string) {
+            this.address = address;
+            this.string = string;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.account;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.web3j.exceptions.MessageDecodingException;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.Quantity;
+import berith.caym.util.FutureUtil;
+import berith.caym.util.NumericUtil;
+
+/**
+ * Reads the main and stake balances of many addresses at one block.
+ *
+ * <p>Addresses are taken from the iterator in chunks of {@code batchSize}, and each chunk is sent
+ * as one batch of berith_getBalance and berith_getStakeBalance requests with at most
+ * {@code maxInFlight} batches outstanding. Balances are delivered to the consumer in address order
+ * on the calling thread, and a new batch is only sent after the oldest one has been consumed.
+ *
+ * <p>Balances are kept as unsigned 128 bit values in two longs, which holds any amount of wei on
+ * the chain.
+ */
+public class BalanceSnapshot {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    private final Caym caym;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    public BalanceSnapshot(Caym caym) {
+        this(caym, DEFAULT_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param batchSize   addresses per batch, each address takes two requests
+     * @param maxInFlight max batches outstanding
+     */
+    public BalanceSnapshot(Caym caym, int batchSize, int maxInFlight) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+
+        this.caym = Objects.requireNonNull(caym, "caym");
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Reads the balances of the addresses at the block and passes them to the consumer in the
+     * order of the iterator.
+     *
+     * @return the number of delivered balances
+     * @throws IOException if a batch could not be sent or a balance is invalid, outstanding batches
+     *                     are abandoned
+     */
+    public long take(Iterator<String> addresses, DefaultBlockParameter defaultBlockParameter,
+                     Consumer<AccountBalance> consumer) throws IOException {
+        Objects.requireNonNull(addresses, "addresses");
+        Objects.requireNonNull(defaultBlockParameter, "defaultBlockParameter");
+        Objects.requireNonNull(consumer, "consumer");
+
+        final Deque<Chunk> inFlight = new ArrayDeque<>(maxInFlight);
+        long delivered = 0L;
+        try {
+            while (inFlight.size() < maxInFlight && addresses.hasNext()) {
+                inFlight.add(request(addresses, defaultBlockParameter));
+            }
+
+            while (!inFlight.isEmpty()) {
+                final Chunk chunk = inFlight.poll();
+                final BatchResponse batchResponse = FutureUtil.await(chunk.future);
+                final List<AccountBalance> balances = toBalances(chunk.addresses, batchResponse);
+
+                if (addresses.hasNext()) {
+                    inFlight.add(request(addresses, defaultBlockParameter));
+                }
+                for (AccountBalance balance : balances) {
+                    consumer.accept(balance);
+                }
+                delivered += balances.size();
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Chunk chunk : inFlight) {
+                chunk.future.cancel(true);
+            }
+            throw e;
+        }
+        return delivered;
+    }
+
+    private Chunk request(Iterator<String> addresses, DefaultBlockParameter defaultBlockParameter) {
+        final List<String> chunk = new ArrayList<>(batchSize);
+        final BatchRequest batch = caym.newBatch();
+        while (chunk.size() < batchSize && addresses.hasNext()) {
+            final String address = addresses.next();
+            chunk.add(address);
+            batch.add(caym.berith().berithGetBalance(address, defaultBlockParameter))
+                 .add(caym.berith().berithGetStakeBalance(address, defaultBlockParameter));
+        }
+        return new Chunk(chunk, batch.sendAsync());
+    }
+
+    private static List<AccountBalance> toBalances(List<String> addresses, BatchResponse batchResponse)
+        throws IOException {
+        if (batchResponse.getResponses().size() != addresses.size() * 2) {
+            throw new IOException("Expected " + addresses.size() * 2 + " responses but received "
+                                  + batchResponse.getResponses().size());
+        }
+
+        final List<AccountBalance> balances = new ArrayList<>(addresses.size());
+        final long[] main = new long[2];
+        final long[] stake = new long[2];
+        for (int i = 0; i < addresses.size(); i++) {
+            final String address = addresses.get(i);
+            decode(address, (Quantity) batchResponse.getResponses().get(2 * i), main);
+            decode(address, (Quantity) batchResponse.getResponses().get(2 * i + 1), stake);
+            balances.add(new AccountBalance(address, main[0], main[1], stake[0], stake[1]));
+        }
+        return balances;
+    }
+
+    /**
+     * Decodes the quantity into its high and low 64 bits
+     */
+    static void decode(String address, Quantity quantity, long[] out) throws IOException {
+        if (quantity.hasError()) {
+            throw new IOException("Invalid response for balance of " + address + ": "
+                                  + quantity.getError().getMessage());
+        }
+
+        final String value = quantity.getResult();
+        // a quantity has at least one digit, "0x" is not zero
+        if (value == null || !NumericUtil.containsHexPrefix(value) || value.length() == 2) {
+            throw new IOException("Invalid balance of " + address + ": " + value);
+        }
+        final int digits = value.length() - 2;
+        if (digits > 32) {
+            throw new IOException("Balance of " + address + " exceeds 128 bits: " + value);
+        }
+        final int highDigits = Math.max(digits - 16, 0);
+        try {
+            out[0] = NumericUtil.decodeHexAsLong(value, 2, highDigits);
+            out[1] = NumericUtil.decodeHexAsLong(value, 2 + highDigits, digits - highDigits);
+        } catch (MessageDecodingException | IllegalArgumentException e) {
+            throw new IOException("Invalid balance of " + address + ": " + value, e);
+        }
+    }
+
+    private static final class Chunk {
+
+        private final List<String> addresses;
+        private final CompletableFuture<BatchResponse> future;
+
+        private Chunk(List<String> addresses, CompletableFuture<BatchResponse> future) {
+            this.addresses = addresses;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Main and stake balance of an address in wei, as unsigned 128 bit values
+     */
+    public static final class AccountBalance {
+
+        private final String address;
+        private final long mainHigh;
+        private final long mainLow;
+        private final long stakeHigh;
+        private final long stakeLow;
+
+        AccountBalance(String address, long mainHigh, long mainLow, long stakeHigh, long stakeLow) {
+            this.address = address;
+            this.mainHigh = mainHigh;
+            this.mainLow = mainLow;
+            this.stakeHigh = stakeHigh;
+            this.stakeLow = stakeLow;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public BigInteger getMain() {
+            return toBigInteger(mainHigh, mainLow);
+        }
+
+        /**
+         * @throws ArithmeticException if the balance does not fit in a long
+         */
+        public long getMainAsLong() {
+            return toLong(mainHigh, mainLow);
+        }
+
+        /**
+         * Returns the upper 64 bits of the main balance
+         */
+        public long getMainHigh() {
+            return mainHigh;
+        }
+
+        /**
+         * Returns the lower 64 bits of the main balance
+         */
+        public long getMainLow() {
+            return mainLow;
+        }
+
+        public BigInteger getStake() {
+            return toBigInteger(stakeHigh, stakeLow);
+        }
+
+        /**
+         * @throws ArithmeticException if the balance does not fit in a long
+         */
+        public long getStakeAsLong() {
+            return toLong(stakeHigh, stakeLow);
+        }
+
+        /**
+         * Returns the upper 64 bits of the stake balance
+         */
+        public long getStakeHigh() {
+            return stakeHigh;
+        }
+
+        /**
+         * Returns the lower 64 bits of the stake balance
+         */
+        public long getStakeLow() {
+            return stakeLow;
+        }
+
+        @Override
+        public String toString() {
+            return "AccountBalance{address='" + address + "', main=" + getMain() + ", stake=" + getStake() + '}';
+        }
+
+        private static BigInteger toBigInteger(long high, long low) {
+            if (high == 0L && low >= 0L) {
+                return BigInteger.valueOf(low);
+            }
+            final byte[] bytes = new byte[16];
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (high >>> (56 - 8 * i));
+                bytes[8 + i] = (byte) (low >>> (56 - 8 * i));
+            }
+            return new BigInteger(1, bytes);
+        }
+
+        private static long toLong(long high, long low) {
+            if (high != 0L || low < 0L) {
+                throw new ArithmeticException("Balance does not fit in a long");
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.block;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.util.FutureUtil;
+
+/**
+ * Fetches a range of blocks with a bounded number of requests in flight.
+ *
+ * <p>Blocks are delivered to the consumer in height order on the calling thread. A new request is
+ * only issued after the oldest outstanding block has been consumed, so a slow consumer throttles
+ * the fetcher instead of causing unbounded buffering.
+ */
+public class BlockRangeFetcher {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    private final Caym caym;
+    private final int maxInFlight;
+    private final boolean fullTransactionObjects;
+
+    public BlockRangeFetcher(Caym caym) {
+        this(caym, DEFAULT_MAX_IN_FLIGHT, true);
+    }
+
+    public BlockRangeFetcher(Caym caym, int maxInFlight, boolean fullTransactionObjects) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+
+        this.caym = Objects.requireNonNull(caym, "caym");
+        this.maxInFlight = maxInFlight;
+        this.fullTransactionObjects = fullTransactionObjects;
+    }
+
+    /**
+     * Fetches blocks from {@code startHeight} to {@code endHeight} (both inclusive) and passes them
+     * to the consumer in height order.
+     *
+     * @return the number of delivered blocks
+     * @throws IOException if a block could not be fetched, outstanding requests are abandoned
+     */
+    public long fetch(long startHeight, long endHeight, Consumer<Block> consumer) throws IOException {
+        if (startHeight < 0 || endHeight < startHeight) {
+            throw new IllegalArgumentException("Invalid block range [" + startHeight + ", " + endHeight + "]");
+        }
+        Objects.requireNonNull(consumer, "consumer");
+
+        // ring of outstanding requests, slot for height h is (h - startHeight) % window
+        final long total = endHeight - startHeight + 1;
+        final int window = (int) Math.min(maxInFlight, total);
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<BerithBlock>[] inFlight = new CompletableFuture[window];
+
+        long nextRequest = startHeight;
+        for (int i = 0; i < window; i++) {
+            inFlight[i] = request(nextRequest++);
+        }
+
+        try {
+            for (long height = startHeight; height <= endHeight; height++) {
+                final int slot = (int) ((height - startHeight) % window);
+                final Block block = toBlock(height, FutureUtil.await(inFlight[slot]));
+
+                inFlight[slot] = nextRequest <= endHeight ? request(nextRequest++) : null;
+                consumer.accept(block);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (CompletableFuture<BerithBlock> future : inFlight) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+            throw e;
+        }
+
+        return total;
+    }
+
+    private CompletableFuture<BerithBlock> request(long height) {
+        return caym.berith()
+                   .berithGetBlockByNumber(new DefaultBlockParameterNumber(height), fullTransactionObjects)
+                   .sendAsync();
+    }
+
+    private static Block toBlock(long height, BerithBlock berithBlock) throws IOException {
+        if (berithBlock.hasError()) {
+            throw new IOException("Invalid response for block " + height + ": "
+                                  + berithBlock.getError().getMessage());
+        }
+        if (berithBlock.getBlock() == null) {
+            throw new IOException("Block " + height + " not found");
+        }
+        return berithBlock.getBlock();
+    }
+}
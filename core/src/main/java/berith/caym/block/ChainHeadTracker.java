@@ -0,0 +1,298 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.block;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import berith.caym.Caym;
+import berith.caym.filter.BlockFilter;
+import berith.caym.filter.Callback;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+
+/**
+ * Follows the canonical chain and tells listeners which blocks were added to and removed from it.
+ *
+ * <p>The last {@code capacity} canonical blocks are kept in a ring buffer indexed by height. A new
+ * head is linked to the ring by its parent hash, missing ancestors are fetched by hash until the
+ * common ancestor is found. Blocks above the common ancestor are reported as removed, newest
+ * first, then the new branch is reported as added, oldest first. A reorg deeper than the ring
+ * removes every known block. After a gap of more than {@code capacity} blocks the ring starts over
+ * without removing anything, and blocks older than the ring are ignored.
+ *
+ * <p>One tracker fetches every block once, however many listeners it has. Listeners are called on
+ * the thread which delivers the block hashes and must not block.
+ */
+public class ChainHeadTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChainHeadTracker.class);
+
+    public static final int DEFAULT_CAPACITY = 128;
+
+    private final Caym caym;
+    private final boolean fullTransactionObjects;
+    private final Block[] ring;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by this
+    private long head = -1L;
+    private int size;
+    private BlockFilter blockFilter;
+
+    public ChainHeadTracker(Caym caym) {
+        this(caym, DEFAULT_CAPACITY, false);
+    }
+
+    public ChainHeadTracker(Caym caym, int capacity, boolean fullTransactionObjects) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        this.caym = Objects.requireNonNull(caym, "caym");
+        this.fullTransactionObjects = fullTransactionObjects;
+        ring = new Block[capacity];
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts following new blocks with a {@link BlockFilter}, which subscribes over a web socket
+     * and polls otherwise
+     */
+    public synchronized void run(ScheduledExecutorService scheduledExecutorService, long pollingInterval) {
+        if (blockFilter != null) {
+            throw new IllegalStateException("ChainHeadTracker is already running");
+        }
+
+        blockFilter = new BlockFilter(caym, new Callback<String>() {
+            @Override
+            public void onEvent(String blockHash) {
+                onBlockHash(blockHash);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                notifyError(throwable);
+            }
+        });
+        blockFilter.run(scheduledExecutorService, pollingInterval);
+    }
+
+    /**
+     * Stops following new blocks, the known blocks are kept
+     */
+    public synchronized void cancel() {
+        if (blockFilter != null) {
+            blockFilter.cancel();
+            blockFilter = null;
+        }
+    }
+
+    /**
+     * Fetches the block and updates the canonical chain with it, for callers which receive new block
+     * hashes from elsewhere. Errors are reported to the listeners.
+     */
+    public void onBlockHash(String blockHash) {
+        final Block block;
+        try {
+            block = fetch(blockHash);
+        } catch (IOException e) {
+            notifyError(e);
+            return;
+        }
+        onBlock(block);
+    }
+
+    /**
+     * Updates the canonical chain with a fetched block which is the new head. Missing ancestors are
+     * fetched, errors are reported to the listeners.
+     */
+    public synchronized void onBlock(Block block) {
+        final long number = block.getNumberAsLong();
+        final Block known = get(number);
+        if (known != null && known.getHash().equalsIgnoreCase(block.getHash())) {
+            return;
+        }
+        if (size > 0 && number <= head - size) {
+            logger.debug("Ignoring block {} older than the tracked chain", number);
+            return;
+        }
+
+        // walk back from the new block until its parent is in the ring
+        final List<Block> branch = new ArrayList<>();
+        branch.add(block);
+        Block oldest = block;
+        while (size > 0 && branch.size() < ring.length) {
+            final Block parent = get(oldest.getNumberAsLong() - 1);
+            if (parent != null && parent.getHash().equalsIgnoreCase(oldest.getParentHash())) {
+                break;
+            }
+            if (oldest.getNumberAsLong() - 1 < head - size + 1) {
+                // the common ancestor is older than the ring
+                break;
+            }
+            try {
+                oldest = fetch(oldest.getParentHash());
+            } catch (IOException e) {
+                notifyError(e);
+                return;
+            }
+            branch.add(oldest);
+        }
+
+        if (size > 0 && oldest.getNumberAsLong() - 1 > head) {
+            logger.warn("Lost track of the chain between blocks {} and {}", head, oldest.getNumberAsLong());
+            Arrays.fill(ring, null);
+            size = 0;
+        }
+
+        final Block ancestor = get(oldest.getNumberAsLong() - 1);
+        final long keep = ancestor != null && ancestor.getHash().equalsIgnoreCase(oldest.getParentHash())
+                          ? oldest.getNumberAsLong() - 1 : -1L;
+        while (size > 0 && head > keep) {
+            final Block removed = ring[index(head)];
+            ring[index(head)] = null;
+            head--;
+            size--;
+            notifyRemoved(removed);
+        }
+        if (size == 0) {
+            head = oldest.getNumberAsLong() - 1;
+        }
+
+        for (int i = branch.size() - 1; i >= 0; i--) {
+            final Block added = branch.get(i);
+            head++;
+            ring[index(head)] = added;
+            size = Math.min(size + 1, ring.length);
+            notifyAdded(added);
+        }
+    }
+
+    /**
+     * Returns the head of the canonical chain, or null if no block has been seen
+     */
+    public synchronized Block getHead() {
+        return size > 0 ? ring[index(head)] : null;
+    }
+
+    /**
+     * Returns the canonical block at the height, or null if it is not in the ring
+     */
+    public synchronized Block getBlock(long number) {
+        return get(number);
+    }
+
+    /**
+     * Returns the number of blocks in the ring
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    private Block get(long number) {
+        if (size == 0 || number > head || number <= head - size) {
+            return null;
+        }
+        return ring[index(number)];
+    }
+
+    private int index(long number) {
+        return (int) Math.floorMod(number, (long) ring.length);
+    }
+
+    private Block fetch(String blockHash) throws IOException {
+        final BerithBlock berithBlock = caym.berith().berithGetBlockByHash(blockHash, fullTransactionObjects).send();
+        if (berithBlock.hasError()) {
+            throw new IOException("Invalid response for block " + blockHash + ": "
+                                  + berithBlock.getError().getMessage());
+        }
+        if (berithBlock.getBlock() == null) {
+            throw new IOException("Block not found: " + blockHash);
+        }
+        return berithBlock.getBlock();
+    }
+
+    private void notifyAdded(Block block) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onBlockAdded(block);
+            } catch (RuntimeException e) {
+                logger.error("Error notifying added block " + block.getHash(), e);
+            }
+        }
+    }
+
+    private void notifyRemoved(Block block) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onBlockRemoved(block);
+            } catch (RuntimeException e) {
+                logger.error("Error notifying removed block " + block.getHash(), e);
+            }
+        }
+    }
+
+    private void notifyError(Throwable throwable) {
+        logger.warn("Failed to track chain head", throwable);
+        for (Listener listener : listeners) {
+            try {
+                listener.onError(throwable);
+            } catch (RuntimeException e) {
+                logger.error("Error notifying error", e);
+            }
+        }
+    }
+
+    /**
+     * Receives changes of the canonical chain
+     */
+    public interface Listener {
+
+        /**
+         * Called for a block which became canonical, parents before children
+         */
+        void onBlockAdded(Block block);
+
+        /**
+         * Called for a block which is no longer canonical, children before parents
+         */
+        void onBlockRemoved(Block block);
+
+        default void onError(Throwable throwable) {
+        }
+    }
+}
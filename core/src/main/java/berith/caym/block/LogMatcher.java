@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.block;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+import org.web3j.protocol.core.methods.request.Filter;
+
+import berith.caym.protocol.request.BerithFilterRequest;
+import berith.caym.protocol.response.Log;
+import berith.caym.util.NumericUtil;
+
+/**
+ * The address and topics of a {@link BerithFilterRequest} compiled for matching on the client.
+ *
+ * <p>{@link #mightMatch(long[])} tests a logs bloom against precomputed bit indices, a block whose
+ * bloom does not match cannot contain a matching log. {@link #matches(Log)} compares a log with
+ * the criteria as the node does: any of the addresses, and for every topic position either a
+ * wildcard or any of its alternatives.
+ */
+public class LogMatcher {
+
+    private final String[] addresses;
+    private final int[] addressBits;
+    // null entries are wildcards
+    private final String[][] topics;
+    private final int[][] topicBits;
+
+    public LogMatcher(BerithFilterRequest filterRequest) {
+        Objects.requireNonNull(filterRequest, "filterRequest");
+
+        final List<String> address = filterRequest.getAddress();
+        addresses = address == null ? new String[0] : normalize(address);
+        addressBits = bits(addresses, 20);
+
+        final List<Filter.FilterTopic> filterTopics = filterRequest.getTopics();
+        topics = new String[filterTopics.size()][];
+        topicBits = new int[filterTopics.size()][];
+        for (int i = 0; i < topics.length; i++) {
+            final List<String> alternatives = alternatives(filterTopics.get(i));
+            if (alternatives != null) {
+                topics[i] = normalize(alternatives);
+                topicBits[i] = bits(topics[i], 32);
+            }
+        }
+    }
+
+    /**
+     * Returns false if no log of the block or receipt with the given bloom can match
+     */
+    public boolean mightMatch(long[] bloom) {
+        if (addresses.length > 0 && !containsAny(bloom, addressBits)) {
+            return false;
+        }
+        for (int[] bits : topicBits) {
+            if (bits != null && !containsAny(bloom, bits)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the log matches the address and topics
+     */
+    public boolean matches(Log log) {
+        return matches(log.getAddress(), log.getTopics());
+    }
+
+    /**
+     * Returns true if a log with the given address and topics matches
+     */
+    public boolean matches(String address, List<String> logTopics) {
+        if (addresses.length > 0 && !containsAny(addresses, address)) {
+            return false;
+        }
+
+        final int logTopicCount = logTopics == null ? 0 : logTopics.size();
+        if (topics.length > logTopicCount) {
+            return false;
+        }
+        for (int i = 0; i < topics.length; i++) {
+            if (topics[i] != null && !containsAny(topics[i], logTopics.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsAny(long[] bloom, int[] bits) {
+        for (int offset = 0; offset < bits.length; offset += LogsBloom.BITS_PER_VALUE) {
+            if (LogsBloom.contains(bloom, bits, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsAny(String[] values, String value) {
+        if (value == null) {
+            return false;
+        }
+        final int offset = prefixLength(value);
+        final int length = value.length() - offset;
+        for (String candidate : values) {
+            if (candidate.length() == length && candidate.regionMatches(true, 0, value, offset, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the topics of the position, or null if the position matches any topic
+     */
+    private static List<String> alternatives(Filter.FilterTopic<?> filterTopic) {
+        final Object value = filterTopic.getValue();
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String) {
+            final List<String> single = new ArrayList<>(1);
+            single.add((String) value);
+            return single;
+        }
+
+        final List<String> alternatives = new ArrayList<>();
+        for (Object topic : (List<?>) value) {
+            final Object alternative = ((Filter.FilterTopic<?>) topic).getValue();
+            if (alternative == null) {
+                return null;
+            }
+            alternatives.add((String) alternative);
+        }
+        return alternatives;
+    }
+
+    private static String[] normalize(List<String> values) {
+        final String[] normalized = new String[values.size()];
+        for (int i = 0; i < normalized.length; i++) {
+            final String value = Objects.requireNonNull(values.get(i), "value");
+            normalized[i] = value.substring(prefixLength(value)).toLowerCase(Locale.ROOT);
+        }
+        return normalized;
+    }
+
+    private static int[] bits(String[] values, int size) {
+        final int[] bits = new int[values.length * LogsBloom.BITS_PER_VALUE];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].length() != size * 2) {
+                throw new IllegalArgumentException("Invalid filter value: " + values[i]);
+            }
+            LogsBloom.bits(NumericUtil.hexStringToByteArray(values[i], 0, size * 2), bits,
+                           i * LogsBloom.BITS_PER_VALUE);
+        }
+        return bits;
+    }
+
+    private static int prefixLength(String value) {
+        return NumericUtil.containsHexPrefix(value) || NumericUtil.containsAddressPrefix(value) ? 2 : 0;
+    }
+}
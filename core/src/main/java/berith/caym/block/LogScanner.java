@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.block;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.protocol.request.BerithFilterRequest;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithBlock.TransactionResult;
+import berith.caym.protocol.response.BerithGetTransactionReceipt;
+import berith.caym.protocol.response.Log;
+import berith.caym.protocol.response.Transaction;
+import berith.caym.protocol.response.TransactionReceipt;
+
+/**
+ * Finds the logs of a block range on the client instead of with berith_getLogs.
+ *
+ * <p>Block headers are fetched with a {@link BlockRangeFetcher} and their logs bloom is tested
+ * against the address and topics of the filter request. Only for blocks whose bloom matches are
+ * the transaction receipts fetched, in one batch per block, and their logs are matched locally.
+ */
+public class LogScanner {
+
+    private final Caym caym;
+    private final BlockRangeFetcher blockRangeFetcher;
+
+    public LogScanner(Caym caym) {
+        this(caym, BlockRangeFetcher.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public LogScanner(Caym caym, int maxInFlight) {
+        this.caym = Objects.requireNonNull(caym, "caym");
+        this.blockRangeFetcher = new BlockRangeFetcher(caym, maxInFlight, false);
+    }
+
+    /**
+     * Passes the logs from {@code startHeight} to {@code endHeight} (both inclusive) which match
+     * the address and topics of the filter request to the consumer in chain order. The block range
+     * of the filter request is ignored.
+     *
+     * @return the number of matched logs
+     * @throws IOException if a block or receipt could not be fetched
+     */
+    public long scan(long startHeight, long endHeight, BerithFilterRequest filterRequest, Consumer<Log> consumer)
+            throws IOException {
+        final LogMatcher matcher = new LogMatcher(filterRequest);
+        Objects.requireNonNull(consumer, "consumer");
+
+        final long[] bloom = new long[LogsBloom.WORDS];
+        final long[] matched = new long[1];
+        try {
+            blockRangeFetcher.fetch(startHeight, endHeight, block -> {
+                if (isCandidate(block, matcher, bloom)) {
+                    matched[0] += scanReceipts(block, matcher, consumer);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return matched[0];
+    }
+
+    private static boolean isCandidate(Block block, LogMatcher matcher, long[] bloom) {
+        final List<TransactionResult> transactions = block.getTransactions();
+        if (transactions == null || transactions.isEmpty()) {
+            return false;
+        }
+        // a block without bloom can not be ruled out
+        return block.getLogsBloom() == null || matcher.mightMatch(LogsBloom.decode(block.getLogsBloom(), bloom));
+    }
+
+    private long scanReceipts(Block block, LogMatcher matcher, Consumer<Log> consumer) {
+        final List<TransactionResult> transactions = block.getTransactions();
+        final BatchRequest batch = caym.newBatch();
+        for (TransactionResult transaction : transactions) {
+            batch.add(caym.berith().berithGetTransactionReceipt(transactionHash(transaction)));
+        }
+
+        final List<? extends Response<?>> responses;
+        try {
+            responses = batch.send().getResponses();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (responses.size() != transactions.size()) {
+            throw new UncheckedIOException(new IOException(
+                "Expected " + transactions.size() + " receipts of block " + block.getNumberRaw()
+                + " but received " + responses.size()));
+        }
+
+        long matched = 0L;
+        for (int i = 0; i < responses.size(); i++) {
+            final TransactionReceipt receipt = toReceipt(transactionHash(transactions.get(i)),
+                                                         (BerithGetTransactionReceipt) responses.get(i));
+            if (receipt.getLogs() == null) {
+                continue;
+            }
+            for (org.web3j.protocol.core.methods.response.Log log : receipt.getLogs()) {
+                if (matcher.matches(log.getAddress(), log.getTopics())) {
+                    consumer.accept(toLog(log));
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    private static Log toLog(org.web3j.protocol.core.methods.response.Log log) {
+        return new Log(log.isRemoved(), log.getLogIndexRaw(), log.getTransactionIndexRaw(), log.getTransactionHash(),
+                       log.getBlockHash(), log.getBlockNumberRaw(), log.getAddress(), log.getData(), log.getType(),
+                       log.getTopics());
+    }
+
+    private static String transactionHash(TransactionResult transaction) {
+        final Object value = transaction.get();
+        return value instanceof String ? (String) value
+                                       : ((Transaction) value).getHash();
+    }
+
+    private static TransactionReceipt toReceipt(String transactionHash, BerithGetTransactionReceipt response) {
+        if (response.hasError()) {
+            throw new UncheckedIOException(new IOException(
+                "Invalid response for receipt of " + transactionHash + ": " + response.getError().getMessage()));
+        }
+        if (response.getResult() == null) {
+            throw new UncheckedIOException(new IOException("Receipt of " + transactionHash + " not found"));
+        }
+        return response.getResult();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.block;
+
+import org.web3j.crypto.Hash;
+
+import berith.caym.util.NumericUtil;
+
+/**
+ * The 2048-bit logs bloom of a block or receipt as 32 big-endian {@code long} words.
+ *
+ * <p>A value sets three bits, each taken from the low 11 bits of a byte pair of its keccak256
+ * hash. Bit {@code b} counts from the least significant bit of the whole filter, so it lives in
+ * word {@code 31 - b / 64}. Tests work on precomputed bit indices and do not allocate.
+ */
+public final class LogsBloom {
+
+    public static final int WORDS = 32;
+    public static final int BITS_PER_VALUE = 3;
+
+    private static final int HEX_LENGTH = WORDS * 16;
+
+    private LogsBloom() {
+    }
+
+    /**
+     * Decodes a hex logs bloom, with or without prefix, into {@code out}
+     *
+     * @return {@code out}
+     */
+    public static long[] decode(CharSequence logsBloom, long[] out) {
+        final int offset = logsBloom.length() == HEX_LENGTH + 2 ? 2 : 0;
+        if (logsBloom.length() - offset != HEX_LENGTH) {
+            throw new IllegalArgumentException("Invalid logs bloom length: " + logsBloom.length());
+        }
+        if (out.length != WORDS) {
+            throw new IllegalArgumentException("Logs bloom must have " + WORDS + " words");
+        }
+
+        for (int i = 0; i < WORDS; i++) {
+            out[i] = NumericUtil.decodeHexAsLong(logsBloom, offset + i * 16, 16);
+        }
+        return out;
+    }
+
+    /**
+     * Writes the three bit indices of the value into {@code out} starting at {@code offset}
+     */
+    public static void bits(byte[] value, int[] out, int offset) {
+        final byte[] hash = Hash.sha3(value);
+        for (int i = 0; i < BITS_PER_VALUE; i++) {
+            out[offset + i] = ((hash[2 * i] & 0x07) << 8) | (hash[2 * i + 1] & 0xFF);
+        }
+    }
+
+    /**
+     * Returns true if the three bits starting at {@code offset} are set in the bloom
+     */
+    public static boolean contains(long[] bloom, int[] bits, int offset) {
+        for (int i = offset; i < offset + BITS_PER_VALUE; i++) {
+            final int bit = bits[i];
+            if ((bloom[WORDS - 1 - (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the bits of the value in the bloom
+     */
+    public static void add(long[] bloom, byte[] value) {
+        final int[] bits = new int[BITS_PER_VALUE];
+        bits(value, bits, 0);
+        for (int bit : bits) {
+            bloom[WORDS - 1 - (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Encodes the bloom as a prefixed hex string as returned by the node
+     */
+    public static String toHexString(long[] bloom) {
+        final byte[] bytes = new byte[WORDS * 8];
+        for (int i = 0; i < WORDS; i++) {
+            for (int j = 0; j < 8; j++) {
+                bytes[i * 8 + j] = (byte) (bloom[i] >>> (56 - j * 8));
+            }
+        }
+        return NumericUtil.toHexString(bytes);
+    }
+}
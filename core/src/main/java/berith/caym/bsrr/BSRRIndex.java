@@ -0,0 +1,461 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.bsrr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BSRRBlockCreators;
+import berith.caym.protocol.response.BSRRJoinRatio;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.Quantity;
+
+/**
+ * In-memory history of BSRR block creators, the miner of every block, and optionally the creators'
+ * join ratios, from a start height up to the confirmed head.
+ *
+ * <p>Every address is interned once to an int id. The creators of a height are kept as an int
+ * array of ids and the miner as one id. Every address keeps the sorted heights it is a block
+ * creator at and the sorted heights it mined, so range counts are two binary searches. Each
+ * {@link #sync()} ingests the heights which got {@code confirmations} blocks deep since the last
+ * one, in batches of bsrr_getBlockCreatorsByNumber and berith_getBlockByNumber requests, followed by
+ * batches of bsrr_getJoinRatio requests if join ratios are indexed.
+ */
+public class BSRRIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BSRRIndex.class);
+
+    public static final int DEFAULT_CONFIRMATIONS = 12;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final Caym caym;
+    private final long startHeight;
+    private final int confirmations;
+    private final int batchSize;
+    private final boolean joinRatios;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> addresses = new ArrayList<>();
+    private final List<Heights> heights = new ArrayList<>();
+    private final List<Heights> mined = new ArrayList<>();
+    private final List<int[]> creators = new ArrayList<>();
+    // id of the miner per height, -1 if the block has none
+    private int[] miners = new int[64];
+    private final List<double[]> ratios = new ArrayList<>();
+
+    private ScheduledFuture<?> schedule;
+
+    public BSRRIndex(Caym caym, long startHeight) {
+        this(caym, startHeight, DEFAULT_CONFIRMATIONS, DEFAULT_BATCH_SIZE, false);
+    }
+
+    /**
+     * @param confirmations blocks a height must be below the head before it is indexed
+     * @param batchSize     max requests per batch, each height takes two requests plus one per
+     *                      creator if join ratios are indexed
+     * @param joinRatios    true to index the join ratio of every creator at every height
+     */
+    public BSRRIndex(Caym caym, long startHeight, int confirmations, int batchSize, boolean joinRatios) {
+        if (startHeight < 0) {
+            throw new IllegalArgumentException("startHeight must not be negative");
+        }
+        if (confirmations < 0) {
+            throw new IllegalArgumentException("confirmations must not be negative");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+
+        this.caym = Objects.requireNonNull(caym, "caym");
+        this.startHeight = startHeight;
+        this.confirmations = confirmations;
+        this.batchSize = batchSize;
+        this.joinRatios = joinRatios;
+    }
+
+    /**
+     * Syncs every interval until cancelled
+     */
+    public synchronized void run(ScheduledExecutorService scheduledExecutorService, long intervalMillis) {
+        if (schedule != null) {
+            throw new IllegalStateException("BSRRIndex is already running");
+        }
+
+        schedule = scheduledExecutorService.scheduleWithFixedDelay(
+            () -> {
+                try {
+                    sync();
+                } catch (Throwable e) {
+                    // the task must not terminate, the next run continues from the last indexed height
+                    logger.warn("Failed to sync BSRR index", e);
+                }
+            },
+            0L, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void cancel() {
+        if (schedule != null) {
+            schedule.cancel(false);
+            schedule = null;
+        }
+    }
+
+    /**
+     * Indexes the heights up to the confirmed head
+     *
+     * @return the number of indexed heights
+     * @throws IOException if a request failed, heights indexed before stay indexed
+     */
+    public synchronized long sync() throws IOException {
+        final Quantity blockNumber = caym.berith().berithBlockNumber().send();
+        if (blockNumber.hasError()) {
+            throw new IOException("Invalid response for block number: " + blockNumber.getError().getMessage());
+        }
+        final long target = blockNumber.getValue().longValueExact() - confirmations;
+
+        // a block creators and a block request per height
+        final int heightsPerBatch = Math.max(1, batchSize / 2);
+        long indexed = 0L;
+        for (long from = getNextHeight(); from <= target; from += heightsPerBatch) {
+            final long to = Math.min(from + heightsPerBatch - 1, target);
+            final String[] heightMiners = new String[(int) (to - from + 1)];
+            ingest(from, fetchCreators(from, to, heightMiners), heightMiners);
+            indexed += to - from + 1;
+        }
+        return indexed;
+    }
+
+    /**
+     * Returns the first height which is not indexed yet
+     */
+    public long getNextHeight() {
+        lock.readLock().lock();
+        try {
+            return startHeight + creators.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the block creators of the height, or null if it is not indexed
+     */
+    public List<String> getBlockCreators(long height) {
+        lock.readLock().lock();
+        try {
+            final int[] creatorIds = creatorIds(height);
+            if (creatorIds == null) {
+                return null;
+            }
+            final String[] result = new String[creatorIds.length];
+            for (int i = 0; i < creatorIds.length; i++) {
+                result[i] = addresses.get(creatorIds[i]);
+            }
+            return Collections.unmodifiableList(Arrays.asList(result));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the miner of the block at the height, or null if it is not indexed or has no miner
+     */
+    public String getBlockMiner(long height) {
+        lock.readLock().lock();
+        try {
+            if (creatorIds(height) == null) {
+                return null;
+            }
+            final int minerId = miners[(int) (height - startHeight)];
+            return minerId < 0 ? null : addresses.get(minerId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns how many of the indexed blocks from {@code fromHeight} to {@code toHeight} (both
+     * inclusive) the address mined
+     */
+    public int countBlocksCreated(String address, long fromHeight, long toHeight) {
+        return count(mined, address, fromHeight, toHeight);
+    }
+
+    /**
+     * Returns at how many indexed heights from {@code fromHeight} to {@code toHeight} (both inclusive)
+     * the address was among the block creators, i.e. eligible to create the block
+     */
+    public int countBlockCreatorHeights(String address, long fromHeight, long toHeight) {
+        return count(heights, address, fromHeight, toHeight);
+    }
+
+    private int count(List<Heights> heightsById, String address, long fromHeight, long toHeight) {
+        lock.readLock().lock();
+        try {
+            final Integer id = ids.get(key(address));
+            if (id == null || toHeight < fromHeight) {
+                return 0;
+            }
+            final Heights addressHeights = heightsById.get(id);
+            return addressHeights.lowerBound(toHeight + 1) - addressHeights.lowerBound(fromHeight);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the join ratio of the address at the height. Ratios of block creators at indexed
+     * heights are answered from memory, others are requested from the node.
+     */
+    public double getJoinRatio(String address, long height) throws IOException {
+        lock.readLock().lock();
+        try {
+            final Integer id = ids.get(key(address));
+            final int[] creatorIds = creatorIds(height);
+            if (joinRatios && id != null && creatorIds != null) {
+                for (int i = 0; i < creatorIds.length; i++) {
+                    if (creatorIds[i] == id) {
+                        return ratios.get((int) (height - startHeight))[i];
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        final BSRRJoinRatio joinRatio =
+            caym.berith().bsrrGetJoinRatio(address, new DefaultBlockParameterNumber(height)).send();
+        if (joinRatio.hasError()) {
+            throw new IOException("Invalid response for join ratio of " + address + " at " + height + ": "
+                                  + joinRatio.getError().getMessage());
+        }
+        return joinRatio.getJoinRatio() != null ? joinRatio.getJoinRatio() : Double.NaN;
+    }
+
+    /**
+     * Returns the number of distinct block creators seen
+     */
+    public int getAddressCount() {
+        lock.readLock().lock();
+        try {
+            return addresses.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] creatorIds(long height) {
+        if (height < startHeight || height >= startHeight + creators.size()) {
+            return null;
+        }
+        return creators.get((int) (height - startHeight));
+    }
+
+    /**
+     * Fetches the block creators of the heights and stores the miner of each block in {@code heightMiners}
+     */
+    private List<List<String>> fetchCreators(long from, long to, String[] heightMiners) throws IOException {
+        final BatchRequest batch = caym.newBatch();
+        for (long height = from; height <= to; height++) {
+            final DefaultBlockParameterNumber number = new DefaultBlockParameterNumber(height);
+            batch.add(caym.berith().bsrrGetBlockCreatorsByNumber(number));
+            batch.add(caym.berith().berithGetBlockByNumber(number, false));
+        }
+        final BatchResponse batchResponse = send(batch);
+
+        final List<List<String>> result = new ArrayList<>(heightMiners.length);
+        for (int offset = 0; offset < heightMiners.length; offset++) {
+            final BSRRBlockCreators blockCreators =
+                (BSRRBlockCreators) batchResponse.getResponses().get(2 * offset);
+            if (blockCreators.hasError()) {
+                throw new IOException("Invalid response for block creators at " + (from + offset) + ": "
+                                      + blockCreators.getError().getMessage());
+            }
+            result.add(blockCreators.getBlockCreators() != null ? blockCreators.getBlockCreators()
+                                                                : Collections.emptyList());
+
+            final BerithBlock block = (BerithBlock) batchResponse.getResponses().get(2 * offset + 1);
+            if (block.hasError()) {
+                throw new IOException("Invalid response for block at " + (from + offset) + ": "
+                                      + block.getError().getMessage());
+            }
+            if (block.getBlock() == null) {
+                throw new IOException("Missing block at " + (from + offset));
+            }
+            heightMiners[offset] = block.getBlock().getMiner();
+        }
+        return result;
+    }
+
+    private List<double[]> fetchJoinRatios(long from, List<List<String>> creatorsByHeight) throws IOException {
+        final List<double[]> result = new ArrayList<>(creatorsByHeight.size());
+        for (List<String> heightCreators : creatorsByHeight) {
+            result.add(new double[heightCreators.size()]);
+        }
+
+        // (height offset, creator index) of every request in the current batch
+        final List<int[]> positions = new ArrayList<>(batchSize);
+        BatchRequest batch = caym.newBatch();
+        for (int offset = 0; offset < creatorsByHeight.size(); offset++) {
+            final List<String> heightCreators = creatorsByHeight.get(offset);
+            for (int i = 0; i < heightCreators.size(); i++) {
+                batch.add(caym.berith().bsrrGetJoinRatio(heightCreators.get(i),
+                                                         new DefaultBlockParameterNumber(from + offset)));
+                positions.add(new int[] {offset, i});
+                if (positions.size() == batchSize) {
+                    readJoinRatios(from, send(batch), positions, result);
+                    batch = caym.newBatch();
+                    positions.clear();
+                }
+            }
+        }
+        if (!positions.isEmpty()) {
+            readJoinRatios(from, send(batch), positions, result);
+        }
+        return result;
+    }
+
+    private static void readJoinRatios(long from, BatchResponse batchResponse, List<int[]> positions,
+                                       List<double[]> result) throws IOException {
+        for (int i = 0; i < positions.size(); i++) {
+            final int[] position = positions.get(i);
+            final BSRRJoinRatio joinRatio = (BSRRJoinRatio) batchResponse.getResponses().get(i);
+            if (joinRatio.hasError()) {
+                throw new IOException("Invalid response for join ratio at " + (from + position[0]) + ": "
+                                      + joinRatio.getError().getMessage());
+            }
+            result.get(position[0])[position[1]] =
+                joinRatio.getJoinRatio() != null ? joinRatio.getJoinRatio() : Double.NaN;
+        }
+    }
+
+    private static BatchResponse send(BatchRequest batch) throws IOException {
+        final BatchResponse batchResponse = batch.send();
+        if (batchResponse.getResponses().size() != batch.getRequests().size()) {
+            throw new IOException("Expected " + batch.getRequests().size() + " responses but received "
+                                  + batchResponse.getResponses().size());
+        }
+        return batchResponse;
+    }
+
+    private void ingest(long from, List<List<String>> creatorsByHeight, String[] heightMiners) throws IOException {
+        final List<double[]> joinRatiosByHeight = joinRatios ? fetchJoinRatios(from, creatorsByHeight) : null;
+
+        lock.writeLock().lock();
+        try {
+            for (int offset = 0; offset < creatorsByHeight.size(); offset++) {
+                final long height = from + offset;
+                final List<String> heightCreators = creatorsByHeight.get(offset);
+                final int[] creatorIds = new int[heightCreators.size()];
+                for (int i = 0; i < creatorIds.length; i++) {
+                    creatorIds[i] = intern(heightCreators.get(i));
+                    heights.get(creatorIds[i]).add(height);
+                }
+                final int minerId = heightMiners[offset] != null ? intern(heightMiners[offset]) : -1;
+                if (minerId >= 0) {
+                    mined.get(minerId).add(height);
+                }
+                if (creators.size() == miners.length) {
+                    miners = Arrays.copyOf(miners, miners.length * 2);
+                }
+                miners[creators.size()] = minerId;
+                creators.add(creatorIds);
+                ratios.add(joinRatiosByHeight != null ? joinRatiosByHeight.get(offset) : null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int intern(String address) {
+        final String key = key(address);
+        final Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        final int newId = addresses.size();
+        ids.put(key, newId);
+        addresses.add(address);
+        heights.add(new Heights());
+        mined.add(new Heights());
+        return newId;
+    }
+
+    private static String key(String address) {
+        final String key = Objects.requireNonNull(address, "address").toLowerCase(Locale.ROOT);
+        // a block miner may be reported with the 0x prefix, block creators use Bx
+        return key.startsWith("0x") ? "bx" + key.substring(2) : key;
+    }
+
+    /**
+     * Growable sorted array of heights
+     */
+    private static final class Heights {
+
+        private long[] values = new long[8];
+        private int size;
+
+        private void add(long height) {
+            // a creator listed twice at one height counts once
+            if (size > 0 && values[size - 1] == height) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = height;
+        }
+
+        /**
+         * Returns the index of the first height not less than the given height
+         */
+        private int lowerBound(long height) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (values[middle] < height) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
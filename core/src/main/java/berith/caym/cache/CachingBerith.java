@@ -0,0 +1,477 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.cache;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.admin.methods.response.BooleanResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.NetVersion;
+import org.web3j.protocol.core.methods.response.Web3ClientVersion;
+import org.web3j.protocol.core.methods.response.Web3Sha3;
+
+import berith.caym.Berith;
+import berith.caym.Caym;
+import berith.caym.protocol.request.BerithFilterRequest;
+import berith.caym.protocol.request.TransactionRequest;
+import berith.caym.protocol.response.BSRRBlockCreators;
+import berith.caym.protocol.response.BSRRJoinRatio;
+import berith.caym.protocol.response.BerithAccounts;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithCall;
+import berith.caym.protocol.response.BerithCoinbase;
+import berith.caym.protocol.response.BerithFilter;
+import berith.caym.protocol.response.BerithGetCode;
+import berith.caym.protocol.response.BerithGetTransactionReceipt;
+import berith.caym.protocol.response.BerithLog;
+import berith.caym.protocol.response.BerithProtocolVersion;
+import berith.caym.protocol.response.BerithSendTransaction;
+import berith.caym.protocol.response.BerithSign;
+import berith.caym.protocol.response.BerithSyncing;
+import berith.caym.protocol.response.BerithTransaction;
+import berith.caym.protocol.response.BerithUninstallFilter;
+import berith.caym.protocol.response.Quantity;
+import berith.caym.util.NumericUtil;
+
+/**
+ * {@link Berith} decorator which serves immutable chain data from a {@link ChainDataCache}.
+ *
+ * <p>Blocks by hash are always cached. Blocks by number, transactions by hash and transaction
+ * receipts are cached once they are at least {@code confirmations} blocks below the chain head,
+ * pending transactions are never cached. Requests for a block by {@code latest}, {@code pending}
+ * or {@code earliest} and all other methods go to the delegate.
+ *
+ * <p>The chain head is the highest block seen in responses, it is refreshed with
+ * berith_blockNumber at most once per block time when a response is too recent to be cached. An
+ * asynchronous response waits for the refresh without blocking the thread which completed it.
+ * Only {@link Request#send()}, {@link Request#sendAsync()} and {@link Request#flowable()} use the
+ * cache, requests added to a batch always go to the node.
+ *
+ * <p>A cached response is the same instance for every caller of the request and must be treated as
+ * read-only, a caller which modifies it changes the result of all later callers.
+ */
+public class CachingBerith implements Berith {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingBerith.class);
+
+    public static final int DEFAULT_CONFIRMATIONS = 12;
+
+    private static final long HEAD_REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(Caym.DEFAULT_BLOCK_TIME);
+
+    private final Berith berith;
+    private final ChainDataCache cache;
+    private final int confirmations;
+
+    private final AtomicLong head = new AtomicLong(-1L);
+    private volatile long headRefreshedAt = System.nanoTime() - HEAD_REFRESH_INTERVAL;
+
+    public CachingBerith(Berith berith, ChainDataCache cache) {
+        this(berith, cache, DEFAULT_CONFIRMATIONS);
+    }
+
+    public CachingBerith(Berith berith, ChainDataCache cache, int confirmations) {
+        if (confirmations < 0) {
+            throw new IllegalArgumentException("confirmations must not be negative");
+        }
+
+        this.berith = Objects.requireNonNull(berith, "berith");
+        this.cache = Objects.requireNonNull(cache, "cache");
+        this.confirmations = confirmations;
+    }
+
+    public ChainDataCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public Request<?, Web3ClientVersion> web3ClientVersion() {
+        return berith.web3ClientVersion();
+    }
+
+    @Override
+    public Request<?, Web3Sha3> web3Sha3(String data) {
+        return berith.web3Sha3(data);
+    }
+
+    @Override
+    public Request<?, NetVersion> netVersion() {
+        return berith.netVersion();
+    }
+
+    @Override
+    public Request<?, Quantity> netPeerCount() {
+        return berith.netPeerCount();
+    }
+
+    @Override
+    public Request<?, BooleanResponse> netListening() {
+        return berith.netListening();
+    }
+
+    @Override
+    public Request<?, BerithProtocolVersion> berithProtocolVersion() {
+        return berith.berithProtocolVersion();
+    }
+
+    @Override
+    public Request<?, BerithCoinbase> berithCoinbase() {
+        return berith.berithCoinbase();
+    }
+
+    @Override
+    public Request<?, BerithSyncing> berithSyncing() {
+        return berith.berithSyncing();
+    }
+
+    @Override
+    public Request<?, BooleanResponse> berithMining() {
+        return berith.berithMining();
+    }
+
+    @Override
+    public Request<?, Quantity> berithGasPrice() {
+        return berith.berithGasPrice();
+    }
+
+    @Override
+    public Request<?, BerithAccounts> berithAccounts() {
+        return berith.berithAccounts();
+    }
+
+    @Override
+    public Request<?, Quantity> berithBlockNumber() {
+        return berith.berithBlockNumber();
+    }
+
+    @Override
+    public Request<?, Quantity> berithGetBalance(String address, DefaultBlockParameter defaultBlockParameter) {
+        return berith.berithGetBalance(address, defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, Quantity> berithGetStakeBalance(String address, DefaultBlockParameter defaultBlockParameter) {
+        return berith.berithGetStakeBalance(address, defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, Quantity> berithGetTransactionCount(String address, DefaultBlockParameter defaultBlockParameter) {
+        return berith.berithGetTransactionCount(address, defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, Quantity> berithGetBlockTransactionCountByHash(String blockHash) {
+        return berith.berithGetBlockTransactionCountByHash(blockHash);
+    }
+
+    @Override
+    public Request<?, Quantity> berithGetBlockTransactionCountByNumber(DefaultBlockParameter defaultBlockParameter) {
+        return berith.berithGetBlockTransactionCountByNumber(defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, Quantity> berithGetUncleCountByBlockHash(String blockHash) {
+        return berith.berithGetUncleCountByBlockHash(blockHash);
+    }
+
+    @Override
+    public Request<?, Quantity> berithGetUncleCountByBlockNumber(DefaultBlockParameter defaultBlockParameter) {
+        return berith.berithGetUncleCountByBlockNumber(defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, BerithGetCode> berithGetCode(String address, DefaultBlockParameter defaultBlockParameter) {
+        return berith.berithGetCode(address, defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, BerithSign> berithSign(String address, String sha3HashOfDataToSign) {
+        return berith.berithSign(address, sha3HashOfDataToSign);
+    }
+
+    @Override
+    public Request<?, BerithSendTransaction> berithSendTransaction(TransactionRequest transactionRequest) {
+        return berith.berithSendTransaction(transactionRequest);
+    }
+
+    @Override
+    public Request<?, BerithSendTransaction> berithSendRawTransaction(String rawTransaction) {
+        return berith.berithSendRawTransaction(rawTransaction);
+    }
+
+    @Override
+    public Request<?, BerithCall> berithCall(TransactionRequest transactionRequest,
+        DefaultBlockParameter defaultBlockParameter) {
+        return berith.berithCall(transactionRequest, defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, Quantity> berithEstimateGas(TransactionRequest transactionRequest) {
+        return berith.berithEstimateGas(transactionRequest);
+    }
+
+    @Override
+    public Request<?, BerithBlock> berithGetBlockByHash(String blockHash, boolean fullTransactionObjects) {
+        // the content of a block never changes for its hash
+        return new CachingRequest<>(berith.berithGetBlockByHash(blockHash, fullTransactionObjects),
+                                    key("berith_getBlockByHash", blockHash, fullTransactionObjects),
+                                    response -> response.getBlock() != null && observe(response.getBlock()),
+                                    response -> -1L);
+    }
+
+    @Override
+    public Request<?, BerithBlock> berithGetBlockByNumber(DefaultBlockParameter defaultBlockParameter,
+                                                          boolean fullTransactionObjects) {
+        final Request<?, BerithBlock> request = berith.berithGetBlockByNumber(defaultBlockParameter,
+                                                                              fullTransactionObjects);
+        if (!(defaultBlockParameter instanceof DefaultBlockParameterNumber)) {
+            // latest, pending and earliest are resolved by the node
+            return request;
+        }
+
+        final BigInteger number = ((DefaultBlockParameterNumber) defaultBlockParameter).getBlockNumber();
+        return new CachingRequest<>(request, key("berith_getBlockByNumber", number, fullTransactionObjects),
+                                    response -> response.getBlock() != null && observe(response.getBlock()),
+                                    response -> response.getBlock().getNumberAsLong());
+    }
+
+    @Override
+    public Request<?, BerithTransaction> berithGetTransactionByHash(String transactionHash) {
+        return new CachingRequest<>(berith.berithGetTransactionByHash(transactionHash),
+                                    key("berith_getTransactionByHash", transactionHash),
+                                    response -> response.getResult() != null
+                                                && response.getResult().getBlockNumberRaw() != null,
+                                    response -> response.getResult().getBlockNumberAsLong());
+    }
+
+    @Override
+    public Request<?, BerithTransaction> berithGetTransactionByBlockHashAndIndex(String blockHash,
+        BigInteger transactionIndex) {
+        return berith.berithGetTransactionByBlockHashAndIndex(blockHash, transactionIndex);
+    }
+
+    @Override
+    public Request<?, BerithTransaction> berithGetTransactionByBlockNumberAndIndex(
+        DefaultBlockParameter defaultBlockParameter, BigInteger transactionIndex) {
+        return berith.berithGetTransactionByBlockNumberAndIndex(defaultBlockParameter, transactionIndex);
+    }
+
+    @Override
+    public Request<?, BerithGetTransactionReceipt> berithGetTransactionReceipt(String transactionHash) {
+        return new CachingRequest<>(berith.berithGetTransactionReceipt(transactionHash),
+                                    key("berith_getTransactionReceipt", transactionHash),
+                                    response -> response.getResult() != null
+                                                && response.getResult().getBlockNumberRaw() != null,
+                                    response -> response.getResult().getBlockNumberAsLong());
+    }
+
+    @Override
+    public Request<?, BerithFilter> berithNewFilter(BerithFilterRequest berithFilter) {
+        return berith.berithNewFilter(berithFilter);
+    }
+
+    @Override
+    public Request<?, BerithFilter> berithNewBlockFilter() {
+        return berith.berithNewBlockFilter();
+    }
+
+    @Override
+    public Request<?, BerithFilter> berithNewPendingTransactionFilter() {
+        return berith.berithNewPendingTransactionFilter();
+    }
+
+    @Override
+    public Request<?, BerithUninstallFilter> berithUninstallFilter(BigInteger filterId) {
+        return berith.berithUninstallFilter(filterId);
+    }
+
+    @Override
+    public Request<?, BerithLog> berithGetFilterChanges(BigInteger filterId) {
+        return berith.berithGetFilterChanges(filterId);
+    }
+
+    @Override
+    public Request<?, BerithLog> berithGetFilterLogs(BigInteger filterId) {
+        return berith.berithGetFilterLogs(filterId);
+    }
+
+    @Override
+    public Request<?, BerithLog> berithGetLogs(BerithFilterRequest berithFilterRequest) {
+        return berith.berithGetLogs(berithFilterRequest);
+    }
+
+    @Override
+    public Request<?, BSRRBlockCreators> bsrrGetBlockCreatorsByNumber(DefaultBlockParameter defaultBlockParameter) {
+        return berith.bsrrGetBlockCreatorsByNumber(defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, BSRRBlockCreators> bsrrGetBlockCreatorsByHash(String blockHash) {
+        return berith.bsrrGetBlockCreatorsByHash(blockHash);
+    }
+
+    @Override
+    public Request<?, BSRRJoinRatio> bsrrGetJoinRatio(String address, DefaultBlockParameter defaultBlockParameter) {
+        return berith.bsrrGetJoinRatio(address, defaultBlockParameter);
+    }
+
+    @Override
+    public Request<?, BSRRJoinRatio> berithContract(String address, DefaultBlockParameter defaultBlockParameter) {
+        return berith.berithContract(address, defaultBlockParameter);
+    }
+
+    /**
+     * Returns the highest block number seen, or -1 if none was seen yet
+     */
+    public long getHead() {
+        return head.get();
+    }
+
+    private boolean observe(Block block) {
+        if (block.getNumberRaw() != null) {
+            head.accumulateAndGet(block.getNumberAsLong(), Math::max);
+        }
+        return true;
+    }
+
+    private boolean isConfirmed(long height) {
+        return height < 0L || head.get() - height >= confirmations;
+    }
+
+    /**
+     * Returns true if the chain head should be refreshed before the response of the given height is stored,
+     * at most once per block time
+     */
+    private boolean claimHeadRefresh(long height) {
+        if (isConfirmed(height)) {
+            return false;
+        }
+
+        final long now = System.nanoTime();
+        if (now - headRefreshedAt < HEAD_REFRESH_INTERVAL) {
+            return false;
+        }
+        headRefreshedAt = now;
+        return true;
+    }
+
+    private void onHeadRefreshed(Quantity blockNumber, Throwable throwable) {
+        if (throwable != null) {
+            logger.warn("Failed to refresh the chain head", throwable);
+        } else if (!blockNumber.hasError()) {
+            head.accumulateAndGet(NumericUtil.decodeQuantityAsLong(blockNumber.getResult()), Math::max);
+        }
+    }
+
+    private static String key(String method, Object... params) {
+        final StringBuilder key = new StringBuilder(method);
+        for (Object param : params) {
+            key.append(':').append(param instanceof String ? ((String) param).toLowerCase(Locale.ROOT) : param);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Request which answers from the cache and stores cacheable responses of the delegate
+     */
+    private final class CachingRequest<T extends Response<?>> extends Request<Object, T> {
+
+        private final Request<?, T> request;
+        private final String key;
+        private final Predicate<T> cacheable;
+        private final ToLongFunction<T> heightOf;
+
+        /**
+         * @param cacheable returns true if the response holds immutable data
+         * @param heightOf returns the block which must be confirmed before the response is cached, or -1
+         */
+        @SuppressWarnings("unchecked")
+        private CachingRequest(Request<?, T> request, String key, Predicate<T> cacheable, ToLongFunction<T> heightOf) {
+            super(request.getMethod(), (List<Object>) request.getParams(), null, request.getResponseType());
+            setId(request.getId());
+            this.request = request;
+            this.key = key;
+            this.cacheable = cacheable;
+            this.heightOf = heightOf;
+        }
+
+        @Override
+        public T send() throws IOException {
+            final T cached = cache.get(key, getResponseType());
+            if (cached != null) {
+                return cached;
+            }
+
+            final T response = request.send();
+            if (isCacheable(response) && claimHeadRefresh(heightOf.applyAsLong(response))) {
+                Quantity blockNumber = null;
+                IOException failure = null;
+                try {
+                    blockNumber = berith.berithBlockNumber().send();
+                } catch (IOException e) {
+                    failure = e;
+                }
+                onHeadRefreshed(blockNumber, failure);
+            }
+            return store(response);
+        }
+
+        @Override
+        public CompletableFuture<T> sendAsync() {
+            final T cached = cache.get(key, getResponseType());
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+
+            // the head is refreshed without blocking the thread which completed the response
+            return request.sendAsync().thenCompose(response -> {
+                if (isCacheable(response) && claimHeadRefresh(heightOf.applyAsLong(response))) {
+                    return berith.berithBlockNumber().sendAsync().handle((blockNumber, throwable) -> {
+                        onHeadRefreshed(blockNumber, throwable);
+                        return store(response);
+                    });
+                }
+                return CompletableFuture.completedFuture(store(response));
+            });
+        }
+
+        private boolean isCacheable(T response) {
+            return !response.hasError() && cacheable.test(response);
+        }
+
+        private T store(T response) {
+            if (isCacheable(response) && isConfirmed(heightOf.applyAsLong(response))) {
+                cache.put(key, response);
+            }
+            return response;
+        }
+    }
+}
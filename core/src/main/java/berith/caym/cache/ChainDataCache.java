@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.cache;
+
+import org.web3j.protocol.core.Response;
+
+/**
+ * Stores responses of immutable chain data by a request key.
+ *
+ * <p>Implementations must be thread safe. Cached responses are shared between callers and must
+ * not be modified.
+ */
+public interface ChainDataCache {
+
+    /**
+     * Returns the cached response of the key, or null if there is none of the given type
+     */
+    <T extends Response<?>> T get(String key, Class<T> responseType);
+
+    /**
+     * Caches the response of the key, replacing any previous one
+     */
+    void put(String key, Response<?> response);
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.web3j.protocol.core.Response;
+
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithBlock.TransactionObject;
+import berith.caym.protocol.response.BerithBlock.TransactionResult;
+import berith.caym.protocol.response.BerithGetTransactionReceipt;
+import berith.caym.protocol.response.BerithTransaction;
+
+/**
+ * In-memory {@link ChainDataCache} bounded by a number of entries and an estimated size in bytes.
+ *
+ * <p>The least recently used entries are evicted first. Sizes are estimated from the number of
+ * transactions and logs of a response rather than measured.
+ *
+ * <p>Reads do not lock, hits are buffered and applied to the LRU order by the next write or once
+ * the buffer is full. Hits are dropped while the buffer is full and another thread holds the lock,
+ * the order is approximate then. The cached response instances are returned to every reader and
+ * must be treated as read-only.
+ */
+public class LruChainDataCache implements ChainDataCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+
+    private static final long BASE_SIZE = 256L;
+    private static final long BLOCK_SIZE = 1024L;
+    private static final long TRANSACTION_HASH_SIZE = 96L;
+    private static final long TRANSACTION_SIZE = 1024L;
+    private static final long RECEIPT_SIZE = 512L;
+    private static final long LOG_SIZE = 512L;
+
+    private static final int READ_BUFFER_SIZE = 128;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    // keys of recent hits, not applied to the order yet
+    private final Queue<String> reads = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger readCount = new AtomicInteger();
+
+    // guards the fields below
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> order = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long evictionCount;
+
+    public LruChainDataCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public LruChainDataCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public <T extends Response<?>> T get(String key, Class<T> responseType) {
+        final Entry entry = entries.get(key);
+        if (entry == null || !responseType.isInstance(entry.response)) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        recordRead(key);
+        return responseType.cast(entry.response);
+    }
+
+    @Override
+    public void put(String key, Response<?> response) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(response, "response");
+
+        final long size = estimateSize(response);
+        if (size > maxBytes) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            drainReads();
+
+            final Entry entry = new Entry(response, size);
+            final Entry previous = order.put(key, entry);
+            entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.size;
+            }
+            bytes += size;
+
+            final Iterator<Map.Entry<String, Entry>> eldest = order.entrySet().iterator();
+            while (order.size() > maxEntries || bytes > maxBytes) {
+                final Map.Entry<String, Entry> evicted = eldest.next();
+                bytes -= evicted.getValue().size;
+                entries.remove(evicted.getKey(), evicted.getValue());
+                eldest.remove();
+                evictionCount++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated size of all entries in bytes
+     */
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            order.clear();
+            entries.clear();
+            reads.clear();
+            readCount.set(0);
+            bytes = 0L;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordRead(String key) {
+        if (readCount.get() >= READ_BUFFER_SIZE) {
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+        reads.add(key);
+        readCount.incrementAndGet();
+    }
+
+    /**
+     * Moves the keys of buffered hits to the end of the order, must hold the lock
+     */
+    private void drainReads() {
+        String key;
+        while ((key = reads.poll()) != null) {
+            readCount.decrementAndGet();
+            // an access ordered map moves the key on get
+            order.get(key);
+        }
+    }
+
+    static long estimateSize(Response<?> response) {
+        if (response instanceof BerithBlock) {
+            final Block block = ((BerithBlock) response).getBlock();
+            final List<TransactionResult> transactions = block == null ? null : block.getTransactions();
+            if (transactions == null || transactions.isEmpty()) {
+                return BLOCK_SIZE;
+            }
+            final long transactionSize = transactions.get(0) instanceof TransactionObject
+                                         ? TRANSACTION_SIZE : TRANSACTION_HASH_SIZE;
+            return BLOCK_SIZE + transactions.size() * transactionSize;
+        }
+        if (response instanceof BerithTransaction) {
+            return TRANSACTION_SIZE;
+        }
+        if (response instanceof BerithGetTransactionReceipt) {
+            final BerithGetTransactionReceipt receipt = (BerithGetTransactionReceipt) response;
+            final int logCount = receipt.getResult() == null || receipt.getResult().getLogs() == null
+                                 ? 0 : receipt.getResult().getLogs().size();
+            return RECEIPT_SIZE + logCount * LOG_SIZE;
+        }
+        return BASE_SIZE;
+    }
+
+    private static final class Entry {
+
+        private final Response<?> response;
+        private final long size;
+
+        private Entry(Response<?> response, long size) {
+            this.response = response;
+            this.size = size;
+        }
+    }
+}
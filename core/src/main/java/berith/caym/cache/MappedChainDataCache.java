@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.Response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * Persistent {@link ChainDataCache} which appends responses to memory-mapped segment files.
+ *
+ * <p>Every response is stored as the JSON the node returned, so only responses with a raw
+ * response are written, e.g. from {@code new HttpService(url, true)}. A record is the length of
+ * its body, the key and the payload. The length is written last, so a record torn by a crash ends
+ * the segment when it is read again. An in-memory index maps keys to the position of their
+ * record, it is rebuilt by scanning the segments when the cache is opened. Responses are read
+ * directly from the mapped segment.
+ *
+ * <p>Keys are never rewritten, a key which is already stored is ignored. The segment size must not
+ * change between runs on the same directory.
+ */
+public class MappedChainDataCache implements ChainDataCache, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedChainDataCache.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int LENGTH_SIZE = Integer.BYTES;
+    private static final int KEY_LENGTH_SIZE = Short.BYTES;
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+    private final Path directory;
+    private final int segmentSize;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    // segment index in the upper, record position in the lower 32 bits
+    private final ConcurrentMap<String, Long> index = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    // guarded by this
+    private int position;
+    private boolean closed;
+
+    public MappedChainDataCache(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedChainDataCache(Path directory, int segmentSize) throws IOException {
+        if (segmentSize <= LENGTH_SIZE + KEY_LENGTH_SIZE) {
+            throw new IllegalArgumentException("segmentSize is too small: " + segmentSize);
+        }
+
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        open();
+    }
+
+    @Override
+    public <T extends Response<?>> T get(String key, Class<T> responseType) {
+        final Long location = index.get(key);
+        if (location == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        final ByteBuffer buffer = segments.get((int) (location >>> 32)).buffer.duplicate();
+        final int recordPosition = (int) location.longValue();
+        final int length = buffer.getInt(recordPosition);
+        final int keyLength = buffer.getShort(recordPosition + LENGTH_SIZE) & 0xFFFF;
+        final int payloadPosition = recordPosition + LENGTH_SIZE + KEY_LENGTH_SIZE + keyLength;
+        buffer.limit(recordPosition + LENGTH_SIZE + length).position(payloadPosition);
+
+        try {
+            final T response = objectMapper.readValue(new ByteBufferBackedInputStream(buffer), responseType);
+            hitCount.incrementAndGet();
+            return response;
+        } catch (IOException e) {
+            logger.warn("Failed to read cached response of " + key, e);
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, Response<?> response) {
+        Objects.requireNonNull(key, "key");
+        if (response.getRawResponse() == null || index.containsKey(key)) {
+            return;
+        }
+
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] payload = response.getRawResponse().getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Key is too long: " + keyBytes.length + " bytes");
+        }
+        final long length = (long) KEY_LENGTH_SIZE + keyBytes.length + payload.length;
+        if (LENGTH_SIZE + length > segmentSize) {
+            logger.debug("Response of {} exceeds the segment size", key);
+            return;
+        }
+
+        try {
+            append(key, keyBytes, payload, (int) length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void append(String key, byte[] keyBytes, byte[] payload, int length) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Cache is closed");
+        }
+        if (index.containsKey(key)) {
+            return;
+        }
+        if (segments.isEmpty() || position + LENGTH_SIZE + length > segmentSize) {
+            segments.add(map(segments.size()));
+            position = 0;
+        }
+
+        final int segmentIndex = segments.size() - 1;
+        final MappedByteBuffer buffer = segments.get(segmentIndex).buffer;
+        final ByteBuffer record = buffer.duplicate();
+        record.position(position + LENGTH_SIZE);
+        record.putShort((short) keyBytes.length).put(keyBytes).put(payload);
+        // the length makes the record visible to a scan, so it goes last
+        buffer.putInt(position, length);
+
+        index.put(key, ((long) segmentIndex << 32) | position);
+        position += LENGTH_SIZE + length;
+    }
+
+    /**
+     * Flushes written records to the segment files
+     */
+    public synchronized void flush() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flush();
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private synchronized void open() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        final String glob = SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            stream.forEach(files::add);
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (!Files.exists(segmentPath(i))) {
+                throw new IOException("Segment " + i + " of " + files.size() + " is missing in " + directory);
+            }
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            final Segment segment = map(i);
+            segments.add(segment);
+            position = scan(i, segment.buffer);
+        }
+        logger.debug("Opened {} records in {} segments of {}", index.size(), segments.size(), directory);
+    }
+
+    /**
+     * Indexes the records of a segment
+     *
+     * @return the position after the last record
+     */
+    private int scan(int segmentIndex, ByteBuffer buffer) {
+        int recordPosition = 0;
+        while (recordPosition + LENGTH_SIZE + KEY_LENGTH_SIZE <= segmentSize) {
+            final int length = buffer.getInt(recordPosition);
+            if (length <= KEY_LENGTH_SIZE || recordPosition + LENGTH_SIZE + length > segmentSize) {
+                break;
+            }
+
+            final int keyLength = buffer.getShort(recordPosition + LENGTH_SIZE) & 0xFFFF;
+            final byte[] keyBytes = new byte[keyLength];
+            final ByteBuffer key = buffer.duplicate();
+            key.position(recordPosition + LENGTH_SIZE + KEY_LENGTH_SIZE);
+            key.get(keyBytes);
+
+            index.put(new String(keyBytes, StandardCharsets.UTF_8), ((long) segmentIndex << 32) | recordPosition);
+            recordPosition += LENGTH_SIZE + length;
+        }
+        return recordPosition;
+    }
+
+    private Segment map(int segmentIndex) throws IOException {
+        final FileChannel channel = FileChannel.open(segmentPath(segmentIndex), StandardOpenOption.CREATE,
+                                                     StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new Segment(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private Path segmentPath(int segmentIndex) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+    }
+
+    private static final class Segment {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
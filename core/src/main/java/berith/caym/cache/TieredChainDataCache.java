@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.cache;
+
+import java.util.Objects;
+
+import org.web3j.protocol.core.Response;
+
+/**
+ * Looks up responses in a fast cache first and in a slower one, e.g. on disk, second.
+ *
+ * <p>Responses found in the second cache are copied to the first one. New responses are put
+ * into both.
+ */
+public class TieredChainDataCache implements ChainDataCache {
+
+    private final ChainDataCache first;
+    private final ChainDataCache second;
+
+    public TieredChainDataCache(ChainDataCache first, ChainDataCache second) {
+        this.first = Objects.requireNonNull(first, "first");
+        this.second = Objects.requireNonNull(second, "second");
+    }
+
+    @Override
+    public <T extends Response<?>> T get(String key, Class<T> responseType) {
+        final T response = first.get(key, responseType);
+        if (response != null) {
+            return response;
+        }
+
+        final T stored = second.get(key, responseType);
+        if (stored != null) {
+            first.put(key, stored);
+        }
+        return stored;
+    }
+
+    @Override
+    public void put(String key, Response<?> response) {
+        first.put(key, response);
+        second.put(key, response);
+    }
+}
@@ -0,0 +1,151 @@
+package berith.caym.crypto;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Sign;
+
+import berith.caym.util.NumericUtil;
+
+/**
+ * Signs many {@link RawTransaction}s in parallel on a {@link ForkJoinPool}.
+ *
+ * <p>Each worker thread reuses its own digest, encoding and hex buffers, and the signed raw
+ * transaction hashes are returned in the order of the given transactions.
+ */
+public class BulkSigner {
+
+    /** transactions signed by a single task without forking */
+    static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    private final long chainId;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    /**
+     * Signer with berith main net chain id on the common pool
+     */
+    public BulkSigner() {
+        this(Signer.BERITH_CHAIN_ID, ForkJoinPool.commonPool());
+    }
+
+    public BulkSigner(long chainId, ForkJoinPool pool) {
+        this(chainId, pool, DEFAULT_BATCH_SIZE);
+    }
+
+    public BulkSigner(long chainId, ForkJoinPool pool, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+
+        this.chainId = chainId;
+        this.pool = Objects.requireNonNull(pool, "pool");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Signs the transactions with the key pair and returns raw transaction hashes in the same order.
+     * The v, r, s of each RawTransaction are set as in {@link Signer#signTransaction(long, RawTransaction, ECKeyPair)}.
+     */
+    public List<String> sign(List<RawTransaction> transactions, ECKeyPair keyPair) {
+        Objects.requireNonNull(keyPair, "keyPair");
+        final RawTransaction[] source = transactions.toArray(new RawTransaction[0]);
+        final String[] rawHashes = new String[source.length];
+
+        if (source.length > 0) {
+            pool.invoke(new SignTask(source, rawHashes, keyPair, 0, source.length));
+        }
+        return Arrays.asList(rawHashes);
+    }
+
+    /**
+     * Signs the transactions of the stream with the key pair and returns raw transaction hashes in
+     * encounter order.
+     */
+    public List<String> sign(Stream<RawTransaction> transactions, ECKeyPair keyPair) {
+        return sign(transactions.collect(Collectors.toList()), keyPair);
+    }
+
+    private String signOne(RawTransaction rawTransaction, ECKeyPair keyPair) {
+        final Buffers buffers = BulkSigner.buffers.get();
+
+        final byte[] encoded = buffers.encoded(RawTransactionEncoder.encodedLengthForSigning(rawTransaction, chainId));
+        final int messageLength = RawTransactionEncoder.encodeForSigning(rawTransaction, chainId, encoded, 0);
+        buffers.digest.update(encoded, 0, messageLength);
+        Signer.applySignature(chainId, rawTransaction, Sign.signMessage(buffers.digest.digest(), keyPair, false));
+
+        final byte[] signed = buffers.encoded(RawTransactionEncoder.encodedLength(rawTransaction));
+        return buffers.toHexString(signed, RawTransactionEncoder.encode(rawTransaction, signed, 0));
+    }
+
+    private final class SignTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RawTransaction[] source;
+        private final String[] rawHashes;
+        private final ECKeyPair keyPair;
+        private final int from;
+        private final int to;
+
+        private SignTask(RawTransaction[] source, String[] rawHashes, ECKeyPair keyPair, int from, int to) {
+            this.source = source;
+            this.rawHashes = rawHashes;
+            this.keyPair = keyPair;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                for (int i = from; i < to; i++) {
+                    rawHashes[i] = signOne(source[i], keyPair);
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new SignTask(source, rawHashes, keyPair, from, middle),
+                      new SignTask(source, rawHashes, keyPair, middle, to));
+        }
+    }
+
+    /**
+     * Per thread encoding state
+     */
+    private static final class Buffers {
+
+        private final Keccak.Digest256 digest = new Keccak.Digest256();
+        private byte[] encoded = new byte[128];
+        private char[] hex = new char[258];
+
+        private byte[] encoded(int length) {
+            if (encoded.length < length) {
+                encoded = new byte[Math.max(length, encoded.length * 2)];
+            }
+            return encoded;
+        }
+
+        private String toHexString(byte[] bytes, int length) {
+            final int hexLength = 2 + length * 2;
+            if (hex.length < hexLength) {
+                hex = new char[Math.max(hexLength, hex.length * 2)];
+            }
+
+            hex[0] = '0';
+            hex[1] = 'x';
+            NumericUtil.encodeHex(bytes, 0, length, hex, 2);
+            return new String(hex, 0, hexLength);
+        }
+    }
+}
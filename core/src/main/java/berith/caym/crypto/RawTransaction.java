@@ -4,9 +4,6 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.web3j.rlp.RlpDecoder;
-import org.web3j.rlp.RlpEncoder;
-import org.web3j.rlp.RlpList;
 import org.web3j.rlp.RlpString;
 import org.web3j.rlp.RlpType;
 
@@ -87,30 +84,7 @@ public class RawTransaction {
      * Create a {@link RawTransaction} from raw transaction hash
      */
     public static RawTransaction fromRawHash(String rawHash) {
-        final byte[] rlpEncoded = NumericUtil.hexStringToByteArray(rawHash);
-        final RlpList rlpList = RlpDecoder.decode(rlpEncoded);
-
-        final RlpList values = (RlpList) rlpList.getValues().get(0);
-        final BigInteger nonce = ((RlpString) values.getValues().get(0)).asPositiveBigInteger();
-        final BigInteger gasPrice = ((RlpString) values.getValues().get(1)).asPositiveBigInteger();
-        final BigInteger gasLimit = ((RlpString) values.getValues().get(2)).asPositiveBigInteger();
-        //final String to = ((RlpString) values.getValues().get(3)).asString();
-        final String to = ((RlpString) values.getValues().get(3)).asPositiveBigInteger().toString(16);
-        final BigInteger value = ((RlpString) values.getValues().get(4)).asPositiveBigInteger();
-        final String data = ((RlpString) values.getValues().get(5)).asString();
-        final int base = ((RlpString) values.getValues().get(6)).asPositiveBigInteger().intValue();
-        final int target = ((RlpString) values.getValues().get(7)).asPositiveBigInteger().intValue();
-
-        if (values.getValues().size() > 8 && values.getValues().get(9) instanceof RlpString) {
-            final BigInteger v = NumericUtil.toBigInt(((RlpString) values.getValues().get(8)).getBytes());
-            final BigInteger r = NumericUtil.toBigInt(((RlpString) values.getValues().get(9)).getBytes());
-            final BigInteger s = NumericUtil.toBigInt(((RlpString) values.getValues().get(10)).getBytes());
-
-            return new RawTransaction(nonce, gasPrice, gasLimit, to, value, data, base, target,
-                                      v, r, s);
-        } else {
-            return new RawTransaction(nonce, gasPrice, gasLimit, to, value, data, base, target);
-        }
+        return RawTransactionDecoder.fromRawHash(rawHash).toRawTransaction();
     }
 
     /**
@@ -144,7 +118,7 @@ public class RawTransaction {
             return rawHash;
         }
 
-        return rawHash = NumericUtil.toHexString(RlpEncoder.encode(new RlpList(encodeRLP())));
+        return rawHash = NumericUtil.toHexString(RawTransactionEncoder.encode(this));
     }
 
     public List<RlpType> dataToRlp() {
@@ -0,0 +1,268 @@
+package berith.caym.crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import berith.caym.util.NumericUtil;
+
+/**
+ * Reads the fields of a RLP encoded raw transaction in place.
+ *
+ * <p>Wrapping only walks the item headers and records where each field starts, nothing is copied.
+ * Field values are decoded on access. A decoder can be reused for many transactions by wrapping the
+ * next one, it is not thread safe.
+ */
+public final class RawTransactionDecoder {
+
+    private static final int NONCE = 0;
+    private static final int GAS_PRICE = 1;
+    private static final int GAS_LIMIT = 2;
+    private static final int TO = 3;
+    private static final int VALUE = 4;
+    private static final int DATA = 5;
+    private static final int BASE = 6;
+    private static final int TARGET = 7;
+    private static final int V = 8;
+    private static final int R = 9;
+    private static final int S = 10;
+    private static final int MAX_FIELDS = 11;
+
+    private static final int OFFSET_SHORT_STRING = 0x80;
+    private static final int OFFSET_LONG_STRING = 0xb7;
+    private static final int OFFSET_SHORT_LIST = 0xc0;
+    private static final int OFFSET_LONG_LIST = 0xf7;
+
+    private ByteBuffer buffer;
+    /** absolute index and length of each field's payload */
+    private final int[] fieldOffsets = new int[MAX_FIELDS];
+    private final int[] fieldLengths = new int[MAX_FIELDS];
+    private int fieldCount;
+
+    /**
+     * Decodes the raw transaction hash (hex string) into a new array and wraps it
+     */
+    public static RawTransactionDecoder fromRawHash(String rawHash) {
+        return new RawTransactionDecoder().wrap(NumericUtil.hexStringToByteArray(rawHash));
+    }
+
+    public RawTransactionDecoder wrap(byte[] encoded) {
+        return wrap(encoded, 0, encoded.length);
+    }
+
+    public RawTransactionDecoder wrap(byte[] encoded, int offset, int length) {
+        return wrap(ByteBuffer.wrap(encoded, offset, length));
+    }
+
+    /**
+     * Wraps the bytes between position and limit of the buffer. The position of the buffer is not
+     * changed, and the buffer must not be modified while the decoder is used.
+     */
+    public RawTransactionDecoder wrap(ByteBuffer encoded) {
+        buffer = encoded;
+        fieldCount = 0;
+
+        final int end = encoded.limit();
+        int pos = encoded.position();
+        if (pos >= end) {
+            throw new IllegalArgumentException("Empty raw transaction");
+        }
+
+        final int prefix = encoded.get(pos) & 0xFF;
+        if (prefix < OFFSET_SHORT_LIST) {
+            throw new IllegalArgumentException("Raw transaction is not a RLP list");
+        }
+
+        final int listLength;
+        if (prefix <= OFFSET_LONG_LIST) {
+            listLength = prefix - OFFSET_SHORT_LIST;
+            pos++;
+        } else {
+            final int lengthOfLength = prefix - OFFSET_LONG_LIST;
+            listLength = readLength(pos + 1, lengthOfLength, end);
+            pos += 1 + lengthOfLength;
+        }
+
+        // compared by difference, pos + listLength may overflow
+        if (listLength > end - pos) {
+            throw new IllegalArgumentException("RLP list length exceeds the input: " + listLength);
+        }
+        final int listEnd = pos + listLength;
+
+        while (pos < listEnd) {
+            if (fieldCount == MAX_FIELDS) {
+                throw new IllegalArgumentException("Raw transaction has more than " + MAX_FIELDS + " fields");
+            }
+            pos = indexString(pos, listEnd);
+        }
+
+        if (fieldCount != TARGET + 1 && fieldCount != MAX_FIELDS) {
+            throw new IllegalArgumentException("Unexpected number of raw transaction fields: " + fieldCount);
+        }
+        return this;
+    }
+
+    public BigInteger getNonce() {
+        return getBigInteger(NONCE);
+    }
+
+    public long getNonceAsLong() {
+        return getLong(NONCE);
+    }
+
+    public BigInteger getGasPrice() {
+        return getBigInteger(GAS_PRICE);
+    }
+
+    public BigInteger getGasLimit() {
+        return getBigInteger(GAS_LIMIT);
+    }
+
+    public long getGasLimitAsLong() {
+        return getLong(GAS_LIMIT);
+    }
+
+    /**
+     * Returns the recipient address as hex without prefix, or null for a contract creation
+     */
+    public String getTo() {
+        return fieldLengths[TO] == 0 ? null : toHex(TO, false);
+    }
+
+    public BigInteger getValue() {
+        return getBigInteger(VALUE);
+    }
+
+    /**
+     * Returns the input data as 0x prefixed hex
+     */
+    public String getData() {
+        return toHex(DATA, true);
+    }
+
+    public int getDataLength() {
+        return fieldLengths[DATA];
+    }
+
+    public int getBase() {
+        return (int) getLong(BASE);
+    }
+
+    public int getTarget() {
+        return (int) getLong(TARGET);
+    }
+
+    public boolean isSigned() {
+        return fieldCount == MAX_FIELDS;
+    }
+
+    /**
+     * Returns the signature v, or null if the transaction is not signed
+     */
+    public BigInteger getV() {
+        return isSigned() ? getBigInteger(V) : null;
+    }
+
+    public BigInteger getR() {
+        return isSigned() ? getBigInteger(R) : null;
+    }
+
+    public BigInteger getS() {
+        return isSigned() ? getBigInteger(S) : null;
+    }
+
+    /**
+     * Copies all fields into a new {@link RawTransaction}
+     */
+    public RawTransaction toRawTransaction() {
+        if (isSigned()) {
+            return new RawTransaction(getNonce(), getGasPrice(), getGasLimit(), getTo(), getValue(),
+                                      getData(), getBase(), getTarget(), getV(), getR(), getS());
+        }
+        return new RawTransaction(getNonce(), getGasPrice(), getGasLimit(), getTo(), getValue(),
+                                  getData(), getBase(), getTarget());
+    }
+
+    private int indexString(int pos, int end) {
+        final int prefix = buffer.get(pos) & 0xFF;
+        final int offset;
+        final int length;
+
+        if (prefix < OFFSET_SHORT_STRING) {
+            offset = pos;
+            length = 1;
+        } else if (prefix <= OFFSET_LONG_STRING) {
+            offset = pos + 1;
+            length = prefix - OFFSET_SHORT_STRING;
+        } else if (prefix < OFFSET_SHORT_LIST) {
+            final int lengthOfLength = prefix - OFFSET_LONG_STRING;
+            offset = pos + 1 + lengthOfLength;
+            length = readLength(pos + 1, lengthOfLength, end);
+        } else {
+            throw new IllegalArgumentException("Unexpected RLP list in raw transaction field " + fieldCount);
+        }
+
+        if (length > end - offset) {
+            throw new IllegalArgumentException("RLP string length exceeds the list: " + length);
+        }
+
+        fieldOffsets[fieldCount] = offset;
+        fieldLengths[fieldCount] = length;
+        fieldCount++;
+        return offset + length;
+    }
+
+    private int readLength(int pos, int lengthOfLength, int end) {
+        if (lengthOfLength > 4 || pos + lengthOfLength > end) {
+            throw new IllegalArgumentException("Invalid RLP length of length: " + lengthOfLength);
+        }
+
+        long length = 0;
+        for (int i = 0; i < lengthOfLength; i++) {
+            length = (length << 8) | (buffer.get(pos + i) & 0xFF);
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("RLP length is too large: " + length);
+        }
+        return (int) length;
+    }
+
+    private long getLong(int field) {
+        final int length = fieldLengths[field];
+        final int offset = fieldOffsets[field];
+        if (length > 8 || (length == 8 && buffer.get(offset) < 0)) {
+            throw new ArithmeticException("Raw transaction field " + field + " does not fit in a long");
+        }
+
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buffer.get(offset + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private BigInteger getBigInteger(int field) {
+        final int length = fieldLengths[field];
+        if (length < 8 || (length == 8 && buffer.get(fieldOffsets[field]) >= 0)) {
+            return BigInteger.valueOf(getLong(field));
+        }
+        return new BigInteger(1, copy(field));
+    }
+
+    private String toHex(int field, boolean withPrefix) {
+        final int length = fieldLengths[field];
+        if (buffer.hasArray()) {
+            return NumericUtil.toHexString(buffer.array(), buffer.arrayOffset() + fieldOffsets[field], length,
+                                           withPrefix);
+        }
+        return NumericUtil.toHexString(copy(field), 0, length, withPrefix);
+    }
+
+    private byte[] copy(int field) {
+        final byte[] bytes = new byte[fieldLengths[field]];
+        final int offset = fieldOffsets[field];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,288 @@
+package berith.caym.crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import berith.caym.util.NumericUtil;
+
+/**
+ * RLP encoder of {@link RawTransaction} which writes the fields straight into a byte array.
+ *
+ * <p>The output is identical to encoding {@link RawTransaction#encodeRLP()} or
+ * {@link RawTransaction#encodeRlpToSign(long)} with {@link org.web3j.rlp.RlpEncoder}, but the exact
+ * length is computed up front so no intermediate RlpType objects or partial arrays are created.
+ */
+public final class RawTransactionEncoder {
+
+    private static final int OFFSET_SHORT_STRING = 0x80;
+    private static final int OFFSET_LONG_STRING = 0xb7;
+    private static final int OFFSET_SHORT_LIST = 0xc0;
+    private static final int OFFSET_LONG_LIST = 0xf7;
+    private static final int MAX_SHORT_LENGTH = 55;
+
+    /**
+     * Returns the RLP encoded transaction including v, r, s if the transaction is signed
+     */
+    public static byte[] encode(RawTransaction transaction) {
+        final byte[] out = new byte[encodedLength(transaction)];
+        encode(transaction, out, 0);
+        return out;
+    }
+
+    /**
+     * Returns the RLP encoded EIP-155 signing payload of the transaction
+     */
+    public static byte[] encodeForSigning(RawTransaction transaction, long chainId) {
+        final byte[] out = new byte[encodedLengthForSigning(transaction, chainId)];
+        encodeForSigning(transaction, chainId, out, 0);
+        return out;
+    }
+
+    /**
+     * Writes the RLP encoded transaction into {@code out} starting at {@code offset}
+     *
+     * @return the number of bytes written
+     */
+    public static int encode(RawTransaction transaction, byte[] out, int offset) {
+        int pos = writeListHeader(out, offset, payloadLength(transaction));
+        pos = writeTxData(transaction, out, pos);
+
+        if (isSigned(transaction)) {
+            pos = writeQuantity(out, pos, transaction.getV());
+            pos = writeQuantity(out, pos, transaction.getR());
+            pos = writeQuantity(out, pos, transaction.getS());
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Writes the RLP encoded EIP-155 signing payload into {@code out} starting at {@code offset}
+     *
+     * @return the number of bytes written
+     */
+    public static int encodeForSigning(RawTransaction transaction, long chainId, byte[] out, int offset) {
+        int pos = writeListHeader(out, offset, payloadLengthForSigning(transaction, chainId));
+        pos = writeTxData(transaction, out, pos);
+        pos = writeQuantity(out, pos, chainId);
+        out[pos++] = (byte) OFFSET_SHORT_STRING;
+        out[pos++] = (byte) OFFSET_SHORT_STRING;
+        return pos - offset;
+    }
+
+    /**
+     * Writes the RLP encoded transaction at the position of the buffer and advances the position
+     */
+    public static void encode(RawTransaction transaction, ByteBuffer buffer) {
+        final int length = encodedLength(transaction);
+        if (buffer.remaining() < length) {
+            throw new IllegalArgumentException(
+                    "Buffer has " + buffer.remaining() + " bytes remaining but " + length + " are required");
+        }
+
+        if (buffer.hasArray()) {
+            encode(transaction, buffer.array(), buffer.arrayOffset() + buffer.position());
+            buffer.position(buffer.position() + length);
+        } else {
+            buffer.put(encode(transaction));
+        }
+    }
+
+    public static int encodedLength(RawTransaction transaction) {
+        return listLength(payloadLength(transaction));
+    }
+
+    public static int encodedLengthForSigning(RawTransaction transaction, long chainId) {
+        return listLength(payloadLengthForSigning(transaction, chainId));
+    }
+
+    private static boolean isSigned(RawTransaction transaction) {
+        return transaction.getV() != null && transaction.getR() != null && transaction.getS() != null;
+    }
+
+    private static int payloadLength(RawTransaction transaction) {
+        int length = txDataLength(transaction);
+        if (isSigned(transaction)) {
+            length += quantityLength(transaction.getV())
+                      + quantityLength(transaction.getR())
+                      + quantityLength(transaction.getS());
+        }
+        return length;
+    }
+
+    private static int payloadLengthForSigning(RawTransaction transaction, long chainId) {
+        // chain id followed by two empty strings
+        return txDataLength(transaction) + quantityLength(chainId) + 2;
+    }
+
+    private static int txDataLength(RawTransaction transaction) {
+        final String to = transaction.getTo();
+        final String data = transaction.getData();
+
+        return quantityLength(transaction.getNonce())
+               + quantityLength(transaction.getGasPrice())
+               + quantityLength(transaction.getGasLimit())
+               + (to != null && !to.isEmpty() ? hexLength(to, hexOffset(to)) : 1)
+               + quantityLength(transaction.getValue())
+               + (data != null ? hexLength(data, hexOffset(data)) : 1)
+               + quantityLength(transaction.getBase())
+               + quantityLength(transaction.getTarget());
+    }
+
+    private static int writeTxData(RawTransaction transaction, byte[] out, int offset) {
+        final String to = transaction.getTo();
+        final String data = transaction.getData();
+
+        int pos = writeQuantity(out, offset, transaction.getNonce());
+        pos = writeQuantity(out, pos, transaction.getGasPrice());
+        pos = writeQuantity(out, pos, transaction.getGasLimit());
+        if (to != null && !to.isEmpty()) {
+            pos = writeHex(out, pos, to, hexOffset(to));
+        } else {
+            out[pos++] = (byte) OFFSET_SHORT_STRING;
+        }
+        pos = writeQuantity(out, pos, transaction.getValue());
+        if (data != null) {
+            pos = writeHex(out, pos, data, hexOffset(data));
+        } else {
+            out[pos++] = (byte) OFFSET_SHORT_STRING;
+        }
+        pos = writeQuantity(out, pos, transaction.getBase());
+        return writeQuantity(out, pos, transaction.getTarget());
+    }
+
+    /** skips an address (Bx) prefix and then a hex (0x) prefix */
+    private static int hexOffset(String value) {
+        int offset = 0;
+        if (NumericUtil.containsAddressPrefix(value)) {
+            offset = 2;
+        }
+        if (value.length() > offset + 1 && value.charAt(offset) == '0' && value.charAt(offset + 1) == 'x') {
+            offset += 2;
+        }
+        return offset;
+    }
+
+    // -- quantities
+
+    private static int quantityLength(BigInteger value) {
+        if (value.signum() < 1) {
+            return 1;
+        }
+        if (value.bitLength() < 64) {
+            return quantityLength(value.longValue());
+        }
+        return stringLength((value.bitLength() + 7) / 8);
+    }
+
+    private static int quantityLength(long value) {
+        return value < OFFSET_SHORT_STRING ? 1 : 1 + byteCount(value);
+    }
+
+    private static int writeQuantity(byte[] out, int offset, BigInteger value) {
+        if (value.signum() < 1) {
+            out[offset] = (byte) OFFSET_SHORT_STRING;
+            return offset + 1;
+        }
+        if (value.bitLength() < 64) {
+            return writeQuantity(out, offset, value.longValue());
+        }
+
+        final byte[] bytes = value.toByteArray();
+        // drop the sign byte of a positive value
+        final int start = bytes[0] == 0 ? 1 : 0;
+        final int pos = writeStringHeader(out, offset, bytes.length - start);
+        System.arraycopy(bytes, start, out, pos, bytes.length - start);
+        return pos + bytes.length - start;
+    }
+
+    private static int writeQuantity(byte[] out, int offset, long value) {
+        if (value <= 0) {
+            out[offset] = (byte) OFFSET_SHORT_STRING;
+            return offset + 1;
+        }
+        if (value < OFFSET_SHORT_STRING) {
+            out[offset] = (byte) value;
+            return offset + 1;
+        }
+
+        final int length = byteCount(value);
+        out[offset] = (byte) (OFFSET_SHORT_STRING + length);
+        return writeBigEndian(out, offset + 1, value, length);
+    }
+
+    // -- hex strings
+
+    private static int hexLength(String value, int offset) {
+        final int chars = value.length() - offset;
+        final int length = (chars + 1) / 2;
+        if (length == 1 && singleByteValue(value, offset) < OFFSET_SHORT_STRING) {
+            return 1;
+        }
+        return stringLength(length);
+    }
+
+    private static int writeHex(byte[] out, int offset, String value, int hexOffset) {
+        final int chars = value.length() - hexOffset;
+        final int length = (chars + 1) / 2;
+        if (length == 1 && singleByteValue(value, hexOffset) < OFFSET_SHORT_STRING) {
+            NumericUtil.decodeHex(value, hexOffset, chars, out, offset);
+            return offset + 1;
+        }
+
+        final int pos = writeStringHeader(out, offset, length);
+        return pos + NumericUtil.decodeHex(value, hexOffset, chars, out, pos);
+    }
+
+    private static int singleByteValue(String value, int offset) {
+        int result = 0;
+        for (int i = offset; i < value.length(); i++) {
+            // invalid characters are reported when the value is decoded
+            result = (result << 4) | (Character.digit(value.charAt(i), 16) & 0x0F);
+        }
+        return result;
+    }
+
+    // -- headers
+
+    private static int stringLength(int length) {
+        return length <= MAX_SHORT_LENGTH ? 1 + length : 1 + byteCount(length) + length;
+    }
+
+    private static int listLength(int payloadLength) {
+        return payloadLength <= MAX_SHORT_LENGTH ? 1 + payloadLength : 1 + byteCount(payloadLength) + payloadLength;
+    }
+
+    private static int writeStringHeader(byte[] out, int offset, int length) {
+        return writeHeader(out, offset, length, OFFSET_SHORT_STRING, OFFSET_LONG_STRING);
+    }
+
+    private static int writeListHeader(byte[] out, int offset, int length) {
+        return writeHeader(out, offset, length, OFFSET_SHORT_LIST, OFFSET_LONG_LIST);
+    }
+
+    private static int writeHeader(byte[] out, int offset, int length, int shortOffset, int longOffset) {
+        if (length <= MAX_SHORT_LENGTH) {
+            out[offset] = (byte) (shortOffset + length);
+            return offset + 1;
+        }
+
+        final int lengthOfLength = byteCount(length);
+        out[offset] = (byte) (longOffset + lengthOfLength);
+        return writeBigEndian(out, offset + 1, length, lengthOfLength);
+    }
+
+    private static int byteCount(long value) {
+        return (64 - Long.numberOfLeadingZeros(value) + 7) / 8;
+    }
+
+    private static int writeBigEndian(byte[] out, int offset, long value, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            out[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+        return offset + length;
+    }
+
+    private RawTransactionEncoder() {
+    }
+}
@@ -5,8 +5,6 @@ import java.math.BigInteger;
 import org.web3j.crypto.ECKeyPair;
 import org.web3j.crypto.Sign;
 import org.web3j.crypto.Sign.SignatureData;
-import org.web3j.rlp.RlpEncoder;
-import org.web3j.rlp.RlpList;
 
 import berith.caym.util.NumericUtil;
 
@@ -32,9 +30,16 @@ public final class Signer {
      * Sign a given RawTransaction with chain id and key pair
      */
     public static void signTransaction(long chainId, RawTransaction rawTransaction, ECKeyPair keyPair) {
-        final RlpList list = new RlpList(rawTransaction.encodeRlpToSign(chainId));
-        final SignatureData sign = Sign.signMessage(RlpEncoder.encode(list), keyPair, true);
+        final byte[] message = RawTransactionEncoder.encodeForSigning(rawTransaction, chainId);
+        final SignatureData sign = Sign.signMessage(message, keyPair, true);
 
+        applySignature(chainId, rawTransaction, sign);
+    }
+
+    /**
+     * Sets EIP-155 v, r, s of the signature data to the RawTransaction
+     */
+    static void applySignature(long chainId, RawTransaction rawTransaction, SignatureData sign) {
         BigInteger v = NumericUtil.toBigInt(sign.getV());
 
         v = v.subtract(BigInteger.valueOf(LOWER_REAL_V))
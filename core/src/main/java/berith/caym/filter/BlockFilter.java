@@ -21,11 +21,14 @@ import berith.caym.Caym;
 import berith.caym.protocol.response.BerithFilter;
 import berith.caym.protocol.response.BerithLog;
 import berith.caym.protocol.response.BerithLog.LogResult;
+import io.reactivex.Flowable;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.Optional;
 import org.web3j.protocol.core.Request;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.NewHeadsNotification;
 
 /**
  * Handler for working with block filter requests.
@@ -53,6 +56,12 @@ public class BlockFilter extends Filter<String> {
         }
     }
 
+    @Override
+    Flowable<String> subscribe(WebSocketService webSocketService) {
+        return subscribe(webSocketService, NewHeadsNotification.class, "newHeads")
+            .map(notification -> notification.getParams().getResult().getHash());
+    }
+
     /**
      * Since the block filter does not support historic filters, the filterId is ignored
      * and an empty optional is returned.
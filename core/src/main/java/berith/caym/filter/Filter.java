@@ -22,8 +22,11 @@ import berith.caym.protocol.response.BerithFilter;
 import berith.caym.protocol.response.BerithLog;
 import berith.caym.protocol.response.BerithLog.LogResult;
 import berith.caym.protocol.response.BerithUninstallFilter;
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -36,14 +39,22 @@ import org.web3j.protocol.core.Request;
 import org.web3j.protocol.core.Response;
 import org.web3j.protocol.core.Response.Error;
 import org.web3j.protocol.core.RpcErrors;
+import org.web3j.protocol.core.methods.response.EthSubscribe;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.Notification;
 
 /**
  * Class for creating managed filter requests with callbacks.
+ *
+ * <p>Over a {@link WebSocketService} the filter subscribes with berith_subscribe and events are
+ * pushed by the node. Other transports, or a subscription which fails, poll berith_getFilterChanges.
  */
 public abstract class Filter<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(Filter.class);
-    private static final long DEFAULT_POLLING_DEADLINE = TimeUnit.MINUTES.toMillis(5);
+    static final long DEFAULT_POLLING_DEADLINE = TimeUnit.MINUTES.toMillis(5);
+    private static final String SUBSCRIBE_METHOD = "berith_subscribe";
+    private static final String UNSUBSCRIBE_METHOD = "berith_unsubscribe";
 
     // final Web3j web3j;
     final Caym caym;
@@ -53,18 +64,154 @@ public abstract class Filter<T> {
     private ScheduledFuture<?> schedule;
     private ScheduledExecutorService scheduledExecutorService;
     private long pollingInterval;
+    private volatile Disposable subscription;
+    // held while historic logs of a subscription are delivered
+    private final Object deliveryLock = new Object();
 
     public Filter(Caym caym, Callback<T> callback) {
         this.caym = caym;
         this.callback = callback;
     }
 
+    /**
+     * Starts the filter. The polling interval is only used if the filter falls back to polling.
+     */
     public void run(ScheduledExecutorService scheduledExecutorService, long pollingInterval) {
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.pollingInterval = pollingInterval;
+
+        if (caym.getWeb3JService() instanceof WebSocketService && canSubscribe()
+            && runSubscription((WebSocketService) caym.getWeb3JService())) {
+            return;
+        }
+        runPolling(scheduledExecutorService, pollingInterval);
+    }
+
+    private boolean runSubscription(WebSocketService webSocketService) {
+        final Flowable<T> events;
+        try {
+            events = subscribe(webSocketService);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to subscribe, falling back to polling", e);
+            return false;
+        }
+
+        // events pushed while the historic logs are delivered wait in the buffer, so the callback
+        // sees historic logs first and is never called from two threads at once
+        final List<T> buffered = new ArrayList<>();
+        final boolean[] live = new boolean[1];
+        synchronized (deliveryLock) {
+            subscription = events.subscribe(event -> {
+                synchronized (buffered) {
+                    if (live[0]) {
+                        onSubscriptionEvent(event);
+                    } else {
+                        buffered.add(event);
+                    }
+                }
+            }, this::onSubscriptionError);
+
+            try {
+                final Optional<Request<?, BerithLog>> maybeRequest = getSubscriptionLogs();
+                if (maybeRequest.isPresent()) {
+                    try {
+                        final BerithLog berithLog = maybeRequest.get().send();
+                        if (berithLog.hasError()) {
+                            throwException(berithLog.getError());
+                        }
+                        process(berithLog.getLogs());
+                    } catch (IOException e) {
+                        throwException(e);
+                    }
+                }
+            } finally {
+                synchronized (buffered) {
+                    for (T event : buffered) {
+                        onSubscriptionEvent(event);
+                    }
+                    buffered.clear();
+                    live[0] = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void onSubscriptionError(Throwable throwable) {
+        // errors are delivered on the socket thread, which must not block on a request
+        logger.warn("Subscription failed, falling back to polling", throwable);
+        subscription = null;
+        scheduledExecutorService.execute(() -> {
+            // waits until the historic logs have been delivered
+            synchronized (deliveryLock) {
+                try {
+                    runPolling(scheduledExecutorService, pollingInterval);
+                } catch (Throwable e) {
+                    callback.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns false if the filter must be polled even over a {@link WebSocketService}
+     */
+    boolean canSubscribe() {
+        return true;
+    }
+
+    /**
+     * Passes an event pushed by the subscription to the callback
+     */
+    void onSubscriptionEvent(T event) {
+        callback.onEvent(event);
+    }
+
+    private void runPolling(ScheduledExecutorService scheduledExecutorService, long pollingInterval) {
         // berith node has deadline about filters.
         if (pollingInterval > DEFAULT_POLLING_DEADLINE) {
             logger.warn("recommend to use polling interval less then " + DEFAULT_POLLING_DEADLINE);
         }
 
+        // this runs in the caller thread as if any exceptions are encountered, we shouldn't
+        // proceed with creating the scheduled task below
+        install();
+
+        /*
+        We want the filter to be resilient against client issues. On numerous occasions
+        users have reported socket timeout exceptions when connected over HTTP to Geth and
+        Parity clients. For examples, refer to
+        https://github.com/web3j/web3j/issues/144 and
+        https://github.com/ethereum/go-ethereum/issues/15243.
+
+        Hence we consume errors and log them as errors, allowing our polling for changes to
+        resume. The downside of this approach is that users will not be notified of
+        downstream connection issues. But given the intermittent nature of the connection
+        issues, this seems like a reasonable compromise.
+
+        The alternative approach would be to have another thread that blocks waiting on
+        schedule.get(), catching any Exceptions thrown, and passing them back up to the
+        caller. However, the user would then be required to recreate subscriptions manually
+        which isn't ideal given the aforementioned issues.
+        */
+        schedule = scheduledExecutorService.scheduleAtFixedRate(
+            () -> {
+                try {
+                    pollFilter();
+                } catch (Throwable e) {
+                    // All exceptions must be caught, otherwise our job terminates without
+                    // any notification
+                    logger.error("Error sending request", e);
+                    callback.onError(e);
+                }
+            },
+            0, pollingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Installs the filter on the node and passes its historic logs to the callback
+     */
+    void install() {
         try {
             BerithFilter berithFilter = sendRequest();
             if (berithFilter.hasError()) {
@@ -72,46 +219,16 @@ public abstract class Filter<T> {
             }
 
             filterId = berithFilter.getFilterId();
-            this.scheduledExecutorService = scheduledExecutorService;
-            this.pollingInterval = pollingInterval;
-            // this runs in the caller thread as if any exceptions are encountered, we shouldn't
-            // proceed with creating the scheduled task below
             getInitialFilterLogs();
-
-            /*
-            We want the filter to be resilient against client issues. On numerous occasions
-            users have reported socket timeout exceptions when connected over HTTP to Geth and
-            Parity clients. For examples, refer to
-            https://github.com/web3j/web3j/issues/144 and
-            https://github.com/ethereum/go-ethereum/issues/15243.
-
-            Hence we consume errors and log them as errors, allowing our polling for changes to
-            resume. The downside of this approach is that users will not be notified of
-            downstream connection issues. But given the intermittent nature of the connection
-            issues, this seems like a reasonable compromise.
-
-            The alternative approach would be to have another thread that blocks waiting on
-            schedule.get(), catching any Exceptions thrown, and passing them back up to the
-            caller. However, the user would then be required to recreate subscriptions manually
-            which isn't ideal given the aforementioned issues.
-            */
-            schedule = scheduledExecutorService.scheduleAtFixedRate(
-                () -> {
-                    try {
-                        pollFilter(berithFilter);
-                    } catch (Throwable e) {
-                        // All exceptions must be caught, otherwise our job terminates without
-                        // any notification
-                        logger.error("Error sending request", e);
-                        callback.onError(e);
-                    }
-                },
-                0, pollingInterval, TimeUnit.MILLISECONDS);
         } catch (IOException e) {
             throwException(e);
         }
     }
 
+    BigInteger getFilterId() {
+        return filterId;
+    }
+
     private void getInitialFilterLogs() {
         try {
             final Optional<Request<?, BerithLog>> maybeRequest = getFilterLogs(filterId);
@@ -122,45 +239,105 @@ public abstract class Filter<T> {
                 berithLog = new BerithLog();
                 berithLog.setResult(Collections.emptyList());
             }
-            process(berithLog.getLogs());
+            processInitial(berithLog.getLogs());
         } catch (IOException e) {
             throwException(e);
         }
     }
 
-    private void pollFilter(BerithFilter berithFilter) {
+    private void pollFilter() {
         try {
-            BerithLog berithLog = caym.berith().berithGetFilterChanges(berithFilter.getFilterId()).send();
-            if (berithLog.hasError()) {
-                Error error = berithLog.getError();
-                switch (error.getCode()) {
-                    case RpcErrors.FILTER_NOT_FOUND:
-                        reinstallFilter();
-                        break;
-                    default:
-                        throwException(error);
-                        break;
-                }
-            } else {
-                process(berithLog.getLogs());
+            BerithLog berithLog = caym.berith().berithGetFilterChanges(filterId).send();
+            if (processChanges(berithLog) < 0) {
+                reinstallFilter();
             }
         } catch (IOException e) {
             throwException(e);
         }
     }
 
+    /**
+     * Passes the result of berith_getFilterChanges to the callback
+     *
+     * @return the number of changes, or -1 if the node no longer knows the filter
+     */
+    int processChanges(BerithLog berithLog) {
+        if (berithLog.hasError()) {
+            Error error = berithLog.getError();
+            switch (error.getCode()) {
+                case RpcErrors.FILTER_NOT_FOUND:
+                    return -1;
+                default:
+                    throwException(error);
+                    break;
+            }
+        }
+
+        final List<LogResult> logResults = berithLog.getLogs();
+        process(logResults);
+        return logResults.size();
+    }
+
     abstract BerithFilter sendRequest() throws IOException;
 
     abstract void process(List<LogResult> logResults);
 
+    /**
+     * Passes the historic logs of a newly installed filter to the callback
+     */
+    void processInitial(List<LogResult> logResults) {
+        process(logResults);
+    }
+
+    /**
+     * Returns the stream of events pushed by a berith_subscribe subscription of this filter
+     */
+    abstract Flowable<T> subscribe(WebSocketService webSocketService);
+
+    /**
+     * Subscribes with berith_subscribe to the given subscription type and params
+     */
+    <N extends Notification<?>> Flowable<N> subscribe(WebSocketService webSocketService, Class<N> notificationType,
+                                                      String subscriptionType, Object... params) {
+        final List<Object> subscribeParams = new ArrayList<>(params.length + 1);
+        subscribeParams.add(subscriptionType);
+        Collections.addAll(subscribeParams, params);
+
+        final Request<?, EthSubscribe> request =
+            new Request<>(SUBSCRIBE_METHOD, subscribeParams, webSocketService, EthSubscribe.class);
+        return webSocketService.subscribe(request, UNSUBSCRIBE_METHOD, notificationType);
+    }
+
+    /**
+     * Retrieves historic logs when the filter runs as a subscription.
+     * Returns an empty optional by default.
+     */
+    protected Optional<Request<?, BerithLog>> getSubscriptionLogs() {
+        return Optional.empty();
+    }
+
     private void reinstallFilter() {
         logger.warn("The filter has not been found. Filter id: " + filterId);
         schedule.cancel(true);
-        run(scheduledExecutorService, pollingInterval);
+        runPolling(scheduledExecutorService, pollingInterval);
     }
 
     public void cancel() {
-        schedule.cancel(false);
+        final Disposable subscription = this.subscription;
+        if (subscription != null) {
+            subscription.dispose();
+            this.subscription = null;
+        }
+        if (schedule != null) {
+            schedule.cancel(false);
+        }
+        uninstall();
+    }
+
+    /**
+     * Uninstalls the filter from the node if it was installed
+     */
+    void uninstall() {
         if (filterId == null) {
             return;
         }
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.filter;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithLog;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.Response;
+
+/**
+ * Polls many installed filters with a single scheduled task.
+ *
+ * <p>On every tick the berith_getFilterChanges requests of all due filters are sent in one JSON-RPC
+ * batch and the results are passed to each filter's callback. A filter without changes is polled
+ * half as often on every idle poll, up to the max polling interval which stays below the node's
+ * filter deadline. Any change resets it to the polling interval.
+ *
+ * <p>Filters installed here must not be started with {@link Filter#run(ScheduledExecutorService, long)}.
+ */
+public class FilterManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilterManager.class);
+
+    /** Longest interval between two polls of an idle filter, with a margin to the filter deadline */
+    public static final long DEFAULT_MAX_POLLING_INTERVAL =
+        Filter.DEFAULT_POLLING_DEADLINE - TimeUnit.SECONDS.toMillis(30);
+
+    private final Caym caym;
+    private final long pollingInterval;
+    private final long maxPollingInterval;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    private ScheduledFuture<?> schedule;
+
+    public FilterManager(Caym caym, long pollingInterval) {
+        this(caym, pollingInterval, DEFAULT_MAX_POLLING_INTERVAL);
+    }
+
+    public FilterManager(Caym caym, long pollingInterval, long maxPollingInterval) {
+        if (pollingInterval <= 0) {
+            throw new IllegalArgumentException("pollingInterval must be positive");
+        }
+        if (maxPollingInterval < pollingInterval) {
+            throw new IllegalArgumentException("maxPollingInterval must not be less than pollingInterval");
+        }
+        if (maxPollingInterval + pollingInterval > Filter.DEFAULT_POLLING_DEADLINE) {
+            logger.warn("recommend to use max polling interval less then "
+                + (Filter.DEFAULT_POLLING_DEADLINE - pollingInterval));
+        }
+
+        this.caym = Objects.requireNonNull(caym, "caym");
+        this.pollingInterval = pollingInterval;
+        this.maxPollingInterval = maxPollingInterval;
+    }
+
+    /**
+     * Starts polling installed filters every polling interval
+     */
+    public synchronized void run(ScheduledExecutorService scheduledExecutorService) {
+        if (schedule != null) {
+            throw new IllegalStateException("FilterManager is already running");
+        }
+
+        schedule = scheduledExecutorService.scheduleWithFixedDelay(
+            () -> {
+                try {
+                    poll(now());
+                } catch (Throwable e) {
+                    // the task must not terminate, errors are reported to the filters in poll
+                    logger.error("Error polling filters", e);
+                }
+            },
+            pollingInterval, pollingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Installs the filter on the node in the caller thread, passes its historic logs to the callback
+     * and polls it from then on
+     */
+    public void install(Filter<?> filter) {
+        Objects.requireNonNull(filter, "filter");
+        filter.install();
+        registrations.add(new Registration(filter, pollingInterval, now() + pollingInterval));
+    }
+
+    /**
+     * Stops polling the filter and uninstalls it from the node
+     */
+    public void uninstall(Filter<?> filter) {
+        registrations.removeIf(registration -> registration.filter == filter);
+        filter.uninstall();
+    }
+
+    /**
+     * Stops polling and uninstalls all filters
+     */
+    public synchronized void cancel() {
+        if (schedule != null) {
+            schedule.cancel(false);
+            schedule = null;
+        }
+
+        for (Registration registration : registrations) {
+            try {
+                registration.filter.uninstall();
+            } catch (FilterException e) {
+                logger.warn("Failed to uninstall filter " + registration.filter.getFilterId(), e);
+            }
+        }
+        registrations.clear();
+    }
+
+    public int getFilterCount() {
+        return registrations.size();
+    }
+
+    /**
+     * Polls all filters which are due at the given time in one batch
+     */
+    void poll(long now) {
+        final List<Registration> due = new ArrayList<>();
+        for (Registration registration : registrations) {
+            if (registration.nextPoll <= now) {
+                due.add(registration);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        final BatchRequest batch = caym.newBatch();
+        for (Registration registration : due) {
+            batch.add(caym.berith().berithGetFilterChanges(registration.filter.getFilterId()));
+        }
+
+        final List<? extends Response<?>> responses;
+        try {
+            responses = batch.send().getResponses();
+            if (responses.size() != due.size()) {
+                throw new IOException("Expected " + due.size() + " responses but received " + responses.size());
+            }
+        } catch (IOException e) {
+            final FilterException exception = new FilterException("Error sending request", e);
+            for (Registration registration : due) {
+                registration.filter.callback.onError(exception);
+                registration.nextPoll = now + registration.interval;
+            }
+            return;
+        }
+
+        for (int i = 0; i < due.size(); i++) {
+            dispatch(due.get(i), (BerithLog) responses.get(i), now);
+        }
+    }
+
+    private void dispatch(Registration registration, BerithLog berithLog, long now) {
+        final Filter<?> filter = registration.filter;
+        try {
+            final int changes = filter.processChanges(berithLog);
+            if (changes < 0) {
+                logger.warn("The filter has not been found. Filter id: " + filter.getFilterId());
+                filter.install();
+                registration.interval = pollingInterval;
+            } else if (changes == 0) {
+                registration.interval = Math.min(registration.interval * 2, maxPollingInterval);
+            } else {
+                registration.interval = pollingInterval;
+            }
+        } catch (Throwable e) {
+            logger.error("Error processing filter changes", e);
+            filter.callback.onError(e);
+        }
+        registration.nextPoll = now + registration.interval;
+    }
+
+    long getPollingInterval(Filter<?> filter) {
+        for (Registration registration : registrations) {
+            if (registration.filter == filter) {
+                return registration.interval;
+            }
+        }
+        return -1L;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static final class Registration {
+
+        private final Filter<?> filter;
+        // only updated by the polling task
+        private long interval;
+        private volatile long nextPoll;
+
+        private Registration(Filter<?> filter, long interval, long nextPoll) {
+            this.filter = filter;
+            this.interval = interval;
+            this.nextPoll = nextPoll;
+        }
+    }
+}
@@ -24,11 +24,17 @@ import berith.caym.protocol.response.BerithLog;
 import berith.caym.protocol.response.BerithLog.LogObject;
 import berith.caym.protocol.response.BerithLog.LogResult;
 import berith.caym.protocol.response.Log;
+import berith.caym.protocol.response.LogNotification;
+import io.reactivex.Flowable;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
 import org.web3j.protocol.core.Request;
+import org.web3j.protocol.websocket.WebSocketService;
 
 /**
  * Log filter handler.
@@ -36,6 +42,9 @@ import org.web3j.protocol.core.Request;
 public class LogFilter extends Filter<Log> {
 
     private BerithFilterRequest berithFilter;
+    // position of the last delivered log, logs at or before it are not delivered again
+    private long lastBlockNumber = -1L;
+    private long lastLogIndex = -1L;
 
     public LogFilter(Caym caym, Callback<Log> callback, BerithFilterRequest berithFilter) {
         super(caym, callback);
@@ -44,23 +53,99 @@ public class LogFilter extends Filter<Log> {
 
     @Override
     BerithFilter sendRequest() throws IOException {
-        return caym.berith().berithNewFilter(berithFilter).send();
+        return caym.berith().berithNewFilter(resumeRequest()).send();
     }
 
     @Override
     void process(List<LogResult> logResults) {
+        deliver(logResults, false);
+    }
+
+    @Override
+    void processInitial(List<LogResult> logResults) {
+        // a reinstalled filter returns the logs of the last delivered block again
+        deliver(logResults, true);
+    }
+
+    @Override
+    void onSubscriptionEvent(Log log) {
+        if (log.isRemoved() || isAfterLastDelivered(log)) {
+            onLog(log);
+        }
+    }
+
+    @Override
+    boolean canSubscribe() {
+        // a logs subscription has no block range, so a fixed end block must be polled
+        return !(berithFilter.getToBlock() instanceof DefaultBlockParameterNumber);
+    }
+
+    private void deliver(List<LogResult> logResults, boolean skipDelivered) {
         for (LogResult logResult : logResults) {
             if (logResult instanceof LogObject) {
                 Log log = ((LogObject) logResult).get();
-                callback.onEvent(log);
+                if (!skipDelivered || log.isRemoved() || isAfterLastDelivered(log)) {
+                    onLog(log);
+                }
             } else {
                 callback.onError(new FilterException("Unexpected result type: " + logResult.get() + " required LogObject"));
             }
         }
     }
 
+    private void onLog(Log log) {
+        if (!log.isRemoved() && log.getBlockNumberRaw() != null && log.getLogIndexRaw() != null) {
+            synchronized (this) {
+                lastBlockNumber = log.getBlockNumberAsLong();
+                lastLogIndex = log.getLogIndexAsLong();
+            }
+        }
+        callback.onEvent(log);
+    }
+
+    private synchronized boolean isAfterLastDelivered(Log log) {
+        if (lastBlockNumber < 0L || log.getBlockNumberRaw() == null || log.getLogIndexRaw() == null) {
+            return true;
+        }
+        final long blockNumber = log.getBlockNumberAsLong();
+        return blockNumber > lastBlockNumber
+            || (blockNumber == lastBlockNumber && log.getLogIndexAsLong() > lastLogIndex);
+    }
+
+    /**
+     * Returns the filter request resuming at the last delivered block, or the original one if none was delivered
+     */
+    private synchronized BerithFilterRequest resumeRequest() {
+        if (lastBlockNumber < 0L) {
+            return berithFilter;
+        }
+        final BerithFilterRequest request = new BerithFilterRequest(
+            new DefaultBlockParameterNumber(lastBlockNumber), berithFilter.getToBlock(), berithFilter.getAddress());
+        request.getTopics().addAll(berithFilter.getTopics());
+        return request;
+    }
+
+    @Override
+    Flowable<Log> subscribe(WebSocketService webSocketService) {
+        // a logs subscription only takes address and topics, the block range applies to historic logs
+        final Map<String, Object> params = new HashMap<>();
+        if (berithFilter.getAddress() != null) {
+            params.put("address", berithFilter.getAddress());
+        }
+        if (!berithFilter.getTopics().isEmpty()) {
+            params.put("topics", berithFilter.getTopics());
+        }
+        return subscribe(webSocketService, LogNotification.class, "logs", params)
+            .map(notification -> notification.getParams().getResult());
+    }
+
     @Override
     protected Optional<Request<?, BerithLog>> getFilterLogs(BigInteger filterId) {
         return Optional.of(caym.berith().berithGetFilterLogs(filterId));
     }
+
+    @Override
+    protected Optional<Request<?, BerithLog>> getSubscriptionLogs() {
+        return Optional.of(caym.berith().berithGetLogs(berithFilter));
+    }
 }
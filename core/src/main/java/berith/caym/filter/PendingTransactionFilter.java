@@ -21,12 +21,15 @@ import berith.caym.Caym;
 import berith.caym.protocol.response.BerithFilter;
 import berith.caym.protocol.response.BerithLog;
 import berith.caym.protocol.response.BerithLog.LogResult;
+import io.reactivex.Flowable;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.Optional;
 import org.web3j.protocol.core.Request;
 import org.web3j.protocol.core.filters.FilterException;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.PendingTransactionNotification;
 
 /**
  * Handler for working with transaction filter requests.
@@ -54,6 +57,12 @@ public class PendingTransactionFilter extends Filter<String> {
         }
     }
 
+    @Override
+    Flowable<String> subscribe(WebSocketService webSocketService) {
+        return subscribe(webSocketService, PendingTransactionNotification.class, "newPendingTransactions")
+            .map(notification -> notification.getParams().getResult());
+    }
+
     /**
      * Since the pending transaction filter does not support historic filters,
      * the filterId is ignored and an empty optional is returned
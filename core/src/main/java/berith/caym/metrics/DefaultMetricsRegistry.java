@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.web3j.protocol.core.Response;
+
+/**
+ * {@link MetricsRegistry} which keeps counters and a latency histogram per method in memory.
+ *
+ * <p>Recording only increments {@link LongAdder}s and atomic histogram buckets.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordCall(String method, long latencyNanos, Response.Error error) {
+        final MethodMetrics metrics = getOrCreate(method);
+        metrics.calls.increment();
+        metrics.latency.record(latencyNanos);
+        if (error != null) {
+            metrics.errors.computeIfAbsent(error.getCode(), code -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void recordFailure(String method, long latencyNanos, Throwable throwable) {
+        final MethodMetrics metrics = getOrCreate(method);
+        metrics.calls.increment();
+        metrics.failures.increment();
+        metrics.latency.record(latencyNanos);
+    }
+
+    @Override
+    public void recordBytes(String method, long bytesSent, long bytesReceived) {
+        final MethodMetrics metrics = getOrCreate(method);
+        metrics.bytesSent.add(bytesSent);
+        metrics.bytesReceived.add(bytesReceived);
+    }
+
+    /**
+     * Returns the metrics of all methods called so far by method name
+     */
+    public Map<String, MethodMetrics> getMethods() {
+        return Collections.unmodifiableMap(new TreeMap<>(methods));
+    }
+
+    /**
+     * Returns the metrics of the method, or null if it was not called
+     */
+    public MethodMetrics getMethod(String method) {
+        return methods.get(method);
+    }
+
+    private MethodMetrics getOrCreate(String method) {
+        final MethodMetrics metrics = methods.get(method);
+        return metrics != null ? metrics : methods.computeIfAbsent(method, key -> new MethodMetrics());
+    }
+
+    /**
+     * Counters of a single JSON-RPC method
+     */
+    public static final class MethodMetrics {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final ConcurrentMap<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private MethodMetrics() {
+        }
+
+        public long getCallCount() {
+            return calls.sum();
+        }
+
+        /**
+         * Returns the number of calls which did not receive a response
+         */
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        /**
+         * Returns the number of responses with a JSON-RPC error
+         */
+        public long getErrorCount() {
+            long count = 0L;
+            for (LongAdder adder : errors.values()) {
+                count += adder.sum();
+            }
+            return count;
+        }
+
+        /**
+         * Returns the number of responses by JSON-RPC error code
+         */
+        public Map<Integer, Long> getErrorCounts() {
+            final Map<Integer, Long> counts = new TreeMap<>();
+            errors.forEach((code, adder) -> counts.put(code, adder.sum()));
+            return counts;
+        }
+
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.metrics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import io.reactivex.Flowable;
+
+/**
+ * {@link Web3jService} which reports the latency and the outcome of every request sent through it
+ * to a {@link MetricsRegistry}.
+ *
+ * <p>Requests of a batch are reported one by one with the latency of the whole batch.
+ * Subscriptions are passed through without measurements.
+ */
+public class InstrumentedWeb3jService implements Web3jService {
+
+    private final Web3jService web3jService;
+    private final MetricsRegistry metricsRegistry;
+
+    public InstrumentedWeb3jService(Web3jService web3jService, MetricsRegistry metricsRegistry) {
+        this.web3jService = Objects.requireNonNull(web3jService, "web3jService");
+        this.metricsRegistry = Objects.requireNonNull(metricsRegistry, "metricsRegistry");
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        final long start = System.nanoTime();
+        final T response;
+        try {
+            response = web3jService.send(request, responseType);
+        } catch (IOException | RuntimeException e) {
+            metricsRegistry.recordFailure(request.getMethod(), System.nanoTime() - start, e);
+            throw e;
+        }
+        record(request, response, System.nanoTime() - start);
+        return response;
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        final long start = System.nanoTime();
+        final CompletableFuture<T> future = web3jService.sendAsync(request, responseType);
+        future.whenComplete((response, throwable) -> {
+            final long latency = System.nanoTime() - start;
+            if (throwable != null) {
+                metricsRegistry.recordFailure(request.getMethod(), latency, unwrap(throwable));
+            } else {
+                record(request, response, latency);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        final long start = System.nanoTime();
+        final BatchResponse batchResponse;
+        try {
+            batchResponse = web3jService.sendBatch(batchRequest);
+        } catch (IOException | RuntimeException e) {
+            recordFailure(batchRequest, System.nanoTime() - start, e);
+            throw e;
+        }
+        record(batchResponse, System.nanoTime() - start);
+        return batchResponse;
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        final long start = System.nanoTime();
+        final CompletableFuture<BatchResponse> future = web3jService.sendBatchAsync(batchRequest);
+        future.whenComplete((batchResponse, throwable) -> {
+            final long latency = System.nanoTime() - start;
+            if (throwable != null) {
+                recordFailure(batchRequest, latency, unwrap(throwable));
+            } else {
+                record(batchResponse, latency);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return web3jService.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        web3jService.close();
+    }
+
+    public Web3jService getWeb3jService() {
+        return web3jService;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    private void record(Request<?, ?> request, Response<?> response, long latency) {
+        metricsRegistry.recordCall(request.getMethod(), latency, response != null ? response.getError() : null);
+    }
+
+    private void record(BatchResponse batchResponse, long latency) {
+        final List<Request<?, ? extends Response<?>>> requests = batchResponse.getRequests();
+        final List<? extends Response<?>> responses = batchResponse.getResponses();
+        for (int i = 0; i < requests.size(); i++) {
+            final Response<?> response = i < responses.size() ? responses.get(i) : null;
+            record(requests.get(i), response, latency);
+        }
+    }
+
+    private void recordFailure(BatchRequest batchRequest, long latency, Throwable throwable) {
+        for (Request<?, ?> request : batchRequest.getRequests()) {
+            metricsRegistry.recordFailure(request.getMethod(), latency, throwable);
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+               ? throwable.getCause() : throwable;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies with four buckets per power of two microseconds.
+ *
+ * <p>Percentiles are the upper bound of their bucket, so they overestimate by at most 25%.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS_PER_OCTAVE = 4;
+    // up to 2^40 microseconds
+    private static final int BUCKETS = 40 * BUCKETS_PER_OCTAVE;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    public long getCount() {
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of recorded latencies fall, or -1 if
+     * nothing was recorded
+     *
+     * @param percentile between 0 and 1, e.g. 0.95
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0.0 || percentile > 1.0) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1: " + percentile);
+        }
+
+        final long[] snapshot = new long[BUCKETS];
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0L) {
+            return -1L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(percentile * count));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return TimeUnit.MICROSECONDS.toNanos(upperBound(i));
+            }
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperBound(BUCKETS - 1));
+    }
+
+    /**
+     * Halves every bucket, so older latencies weigh half as much as the ones recorded afterwards
+     */
+    public void decay() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.getAndUpdate(i, count -> count >>> 1);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < 1L) {
+            return 0;
+        }
+        final int octave = 63 - Long.numberOfLeadingZeros(micros);
+        // the two bits below the highest one pick the quarter of the octave
+        final int quarter = octave >= 2 ? (int) (micros >>> (octave - 2)) & 0x3
+                                        : (int) (micros << (2 - octave)) & 0x3;
+        return Math.min(octave * BUCKETS_PER_OCTAVE + quarter, BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        final int octave = bucket / BUCKETS_PER_OCTAVE;
+        final int quarter = bucket % BUCKETS_PER_OCTAVE;
+        // the first value of the next bucket
+        return (1L << octave) + (((quarter + 1L) << octave) >>> 2);
+    }
+}
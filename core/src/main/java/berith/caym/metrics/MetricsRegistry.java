@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.metrics;
+
+import org.web3j.protocol.core.Response;
+
+/**
+ * Receives measurements of JSON-RPC calls, see {@link InstrumentedWeb3jService}.
+ *
+ * <p>Implementations must be thread safe and should not block, they are called on the threads
+ * which complete the requests.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Records nothing. {@link berith.caym.Caym#build(org.web3j.protocol.Web3jService, MetricsRegistry)}
+     * does not instrument the service at all with it.
+     */
+    MetricsRegistry NOOP = new MetricsRegistry() {
+        @Override
+        public void recordCall(String method, long latencyNanos, Response.Error error) {
+        }
+
+        @Override
+        public void recordFailure(String method, long latencyNanos, Throwable throwable) {
+        }
+
+        @Override
+        public void recordBytes(String method, long bytesSent, long bytesReceived) {
+        }
+    };
+
+    /**
+     * Records a call which received a response
+     *
+     * @param error the JSON-RPC error of the response, or null
+     */
+    void recordCall(String method, long latencyNanos, Response.Error error);
+
+    /**
+     * Records a call which did not receive a response, e.g. because of an I/O error
+     */
+    void recordFailure(String method, long latencyNanos, Throwable throwable);
+
+    /**
+     * Records the size of a request and its response on the wire. Transports which know the sizes
+     * report them, the method of a batch is {@code "batch"}.
+     */
+    void recordBytes(String method, long bytesSent, long bytesReceived);
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBuilder;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import berith.caym.account.Address;
+import berith.caym.account.AddressPool;
+import berith.caym.protocol.response.BSRRBlockCreators;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithBlock.TransactionResult;
+import berith.caym.protocol.response.Log;
+import berith.caym.protocol.response.Transaction;
+import berith.caym.protocol.response.TransactionReceipt;
+
+/**
+ * Jackson module which reads {@link Address} values, and pools the address strings of response
+ * models so every address is held once on the heap.
+ *
+ * <p>The string fields {@code from}, {@code to} and {@code creates} of transactions, {@code from},
+ * {@code to} and {@code contractAddress} of receipts, {@code address} of logs, {@code miner} of
+ * blocks and the block creators of bsrr responses keep their types, their values are taken from
+ * the {@link AddressPool}. Blocks and their transactions are read by the {@code BerithBlockReader},
+ * which is handed the pool.
+ *
+ * <p>Services read responses with their object mapper, by default the one of
+ * {@code ObjectMapperFactory} which all web3j services share. The module has to be registered
+ * with {@link #register(ObjectMapper, AddressPool)} before that mapper reads the first response,
+ * since Jackson caches the deserializers it has built.
+ */
+public class AddressModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Map<Class<?>, Set<String>> ADDRESS_PROPERTIES = new LinkedHashMap<>();
+
+    static {
+        ADDRESS_PROPERTIES.put(Transaction.class, properties("from", "to", "creates"));
+        ADDRESS_PROPERTIES.put(TransactionReceipt.class, properties("from", "to", "contractAddress"));
+        ADDRESS_PROPERTIES.put(Log.class, properties("address"));
+        ADDRESS_PROPERTIES.put(org.web3j.protocol.core.methods.response.Log.class, properties("address"));
+        ADDRESS_PROPERTIES.put(BerithBlock.class, properties("result"));
+        ADDRESS_PROPERTIES.put(Block.class, properties("miner", "transactions"));
+        ADDRESS_PROPERTIES.put(BSRRBlockCreators.class, properties("result"));
+    }
+
+    private final AddressPool addressPool;
+
+    public AddressModule() {
+        this(AddressPool.global());
+    }
+
+    public AddressModule(AddressPool addressPool) {
+        super("AddressModule", Version.unknownVersion());
+        this.addressPool = Objects.requireNonNull(addressPool, "addressPool");
+
+        addSerializer(Address.class, new AddressSerializer());
+        addDeserializer(Address.class, new AddressDeserializer(addressPool));
+        setDeserializerModifier(new PoolingModifier(addressPool));
+    }
+
+    /**
+     * Registers a module with the pool on the given object mapper, which must not have read any
+     * response yet
+     *
+     * @return the object mapper
+     */
+    public static ObjectMapper register(ObjectMapper objectMapper, AddressPool addressPool) {
+        return Objects.requireNonNull(objectMapper, "objectMapper").registerModule(new AddressModule(addressPool));
+    }
+
+    public AddressPool getAddressPool() {
+        return addressPool;
+    }
+
+    private static Set<String> properties(String... names) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+    }
+
+    private static Set<String> addressProperties(Class<?> beanClass) {
+        for (Map.Entry<Class<?>, Set<String>> entry : ADDRESS_PROPERTIES.entrySet()) {
+            if (entry.getKey().isAssignableFrom(beanClass)) {
+                return entry.getValue();
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    private static final class PoolingModifier extends BeanDeserializerModifier {
+
+        private final AddressPool addressPool;
+
+        private PoolingModifier(AddressPool addressPool) {
+            this.addressPool = addressPool;
+        }
+
+        @Override
+        public BeanDeserializerBuilder updateBuilder(DeserializationConfig config, BeanDescription beanDesc,
+                                                     BeanDeserializerBuilder builder) {
+            final Set<String> names = addressProperties(beanDesc.getBeanClass());
+            if (names.isEmpty()) {
+                return builder;
+            }
+
+            final List<SettableBeanProperty> replaced = new ArrayList<>();
+            for (Iterator<SettableBeanProperty> it = builder.getProperties(); it.hasNext(); ) {
+                final SettableBeanProperty property = it.next();
+                if (!names.contains(property.getName())) {
+                    continue;
+                }
+                final Class<?> type = property.getType().getRawClass();
+                if (type == String.class) {
+                    replaced.add(property.withValueDeserializer(new PooledStringDeserializer(addressPool)));
+                } else if (type == Block.class) {
+                    replaced.add(property.withValueDeserializer(new BerithBlock.ResponseDeserializer(addressPool)));
+                } else if (List.class.isAssignableFrom(type)
+                           && property.getType().getContentType().getRawClass() == TransactionResult.class) {
+                    replaced.add(property.withValueDeserializer(
+                        new BerithBlock.ResultTransactionDeserializer(addressPool)));
+                } else if (List.class.isAssignableFrom(type)) {
+                    replaced.add(property.withValueDeserializer(new PooledListDeserializer(addressPool)));
+                }
+            }
+            for (SettableBeanProperty property : replaced) {
+                builder.addOrReplaceProperty(property, true);
+            }
+            return builder;
+        }
+    }
+
+    private static final class PooledStringDeserializer extends JsonDeserializer<String> {
+
+        private final AddressPool addressPool;
+
+        private PooledStringDeserializer(AddressPool addressPool) {
+            this.addressPool = addressPool;
+        }
+
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            return addressPool.internString(p.getValueAsString());
+        }
+    }
+
+    private static final class PooledListDeserializer extends JsonDeserializer<List<String>> {
+
+        private final AddressPool addressPool;
+
+        private PooledListDeserializer(AddressPool addressPool) {
+            this.addressPool = addressPool;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<String> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartArrayToken()) {
+                return (List<String>) ctxt.handleUnexpectedToken(List.class, p);
+            }
+            final List<String> values = new ArrayList<>();
+            JsonToken token;
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                values.add(token == JsonToken.VALUE_NULL ? null : addressPool.internString(p.getValueAsString()));
+            }
+            return values;
+        }
+    }
+
+    private static final class AddressDeserializer extends JsonDeserializer<Address> {
+
+        private final AddressPool addressPool;
+
+        private AddressDeserializer(AddressPool addressPool) {
+            this.addressPool = addressPool;
+        }
+
+        @Override
+        public Address deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            final String text = p.getValueAsString();
+            try {
+                return addressPool.intern(text != null ? text : "");
+            } catch (IllegalArgumentException e) {
+                throw ctxt.weirdStringException(text, Address.class, "not an address");
+            }
+        }
+    }
+
+    private static final class AddressSerializer extends JsonSerializer<Address> {
+
+        @Override
+        public void serialize(Address value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeString(value.toString());
+        }
+    }
+}
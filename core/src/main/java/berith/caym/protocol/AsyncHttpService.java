@@ -0,0 +1,248 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+import org.web3j.protocol.http.HttpService;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+
+import berith.caym.metrics.MetricsRegistry;
+import berith.caym.util.FutureUtil;
+
+/**
+ * {@link HttpService} whose {@link #sendAsync(Request, Class)} and
+ * {@link #sendBatchAsync(BatchRequest)} enqueue the call on the OkHttp dispatcher instead of
+ * blocking a thread of the web3j executor for each request.
+ *
+ * <p>The default client keeps a larger pool of idle connections alive and lifts OkHttp's limit of
+ * five concurrent requests per host. HTTP/2 is negotiated with TLS nodes, so many requests share
+ * one connection. Plain text nodes can be reached with HTTP/2 prior knowledge if they support it.
+ * Responses are parsed on the dispatcher thread which completes the future.
+ *
+ * <p>With a {@link MetricsRegistry} set the request and response sizes are reported per call.
+ * Response bodies are then buffered before parsing, and synchronous calls are enqueued as well.
+ */
+public class AsyncHttpService extends HttpService {
+
+    public static final int DEFAULT_MAX_REQUESTS = 1024;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 32;
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final String url;
+    private final OkHttpClient httpClient;
+    private final boolean includeRawResponses;
+
+    private volatile MetricsRegistry metricsRegistry = MetricsRegistry.NOOP;
+
+    public AsyncHttpService(String url) {
+        this(url, false);
+    }
+
+    public AsyncHttpService(String url, boolean includeRawResponses) {
+        this(url, createHttpClient(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_MILLIS,
+                                   false), includeRawResponses);
+    }
+
+    public AsyncHttpService(String url, OkHttpClient httpClient, boolean includeRawResponses) {
+        super(url, httpClient, includeRawResponses);
+        this.url = Objects.requireNonNull(url, "url");
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient");
+        this.includeRawResponses = includeRawResponses;
+    }
+
+    /**
+     * Creates a client for a single node
+     *
+     * @param maxRequests         max concurrent requests, further calls wait in the dispatcher queue
+     * @param maxIdleConnections  max idle connections kept alive
+     * @param keepAliveMillis     how long an idle connection is kept alive
+     * @param http2PriorKnowledge true to speak HTTP/2 without negotiation to a plain text node
+     */
+    public static OkHttpClient createHttpClient(int maxRequests, int maxIdleConnections, long keepAliveMillis,
+                                                boolean http2PriorKnowledge) {
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        final OkHttpClient.Builder builder =
+            new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS));
+        if (http2PriorKnowledge) {
+            builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reports the bytes sent and received per call to the registry, {@link MetricsRegistry#NOOP} to stop
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = Objects.requireNonNull(metricsRegistry, "metricsRegistry");
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        if (metricsRegistry == MetricsRegistry.NOOP) {
+            return super.send(request, responseType);
+        }
+        return FutureUtil.await(sendAsync(request, responseType));
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        if (metricsRegistry == MetricsRegistry.NOOP) {
+            return super.sendBatch(batchRequest);
+        }
+        return FutureUtil.await(sendBatchAsync(batchRequest));
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        enqueue(request.getMethod(), request, future, body -> {
+            final String rawResponse = includeRawResponses ? body.string() : null;
+            final T response = rawResponse != null ? objectMapper.readValue(rawResponse, responseType)
+                                                   : objectMapper.readValue(body.byteStream(), responseType);
+            if (rawResponse != null) {
+                response.setRawResponse(rawResponse);
+            }
+            return response;
+        });
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        final CompletableFuture<BatchResponse> future = new CompletableFuture<>();
+        enqueue("batch", batchRequest.getRequests(), future, body -> toBatchResponse(batchRequest, body));
+        return future;
+    }
+
+    private BatchResponse toBatchResponse(BatchRequest batchRequest, ResponseBody body) throws IOException {
+        final List<Request<?, ? extends Response<?>>> requests = batchRequest.getRequests();
+        final JsonNode nodes = objectMapper.readTree(body.byteStream());
+        if (!nodes.isArray()) {
+            throw new IOException("Invalid batch response: " + nodes);
+        }
+
+        // nodes may answer in any order, match the responses by id
+        final Map<Long, JsonNode> nodeForId = new HashMap<>();
+        for (JsonNode node : nodes) {
+            nodeForId.put(node.path("id").asLong(), node);
+        }
+        final List<Response<?>> responses = new ArrayList<>(requests.size());
+        for (Request<?, ? extends Response<?>> request : requests) {
+            final JsonNode node = nodeForId.get(request.getId());
+            if (node == null) {
+                throw new IOException("Missing response in batch for request id: " + request.getId());
+            }
+            final Response<?> response = objectMapper.treeToValue(node, request.getResponseType());
+            if (includeRawResponses) {
+                response.setRawResponse(node.toString());
+            }
+            responses.add(response);
+        }
+        return new BatchResponse(requests, responses);
+    }
+
+    private <T> void enqueue(String method, Object payload, CompletableFuture<T> future, BodyReader<T> reader) {
+        final MetricsRegistry metricsRegistry = this.metricsRegistry;
+        final okhttp3.Request httpRequest;
+        final byte[] content;
+        try {
+            content = objectMapper.writeValueAsString(payload).getBytes(StandardCharsets.UTF_8);
+            httpRequest = new okhttp3.Request.Builder()
+                .url(url)
+                .headers(Headers.of(getHeaders()))
+                .post(RequestBody.create(content, JSON_MEDIA_TYPE))
+                .build();
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+
+        final Call call = httpClient.newCall(httpRequest);
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, okhttp3.Response response) {
+                try (ResponseBody body = response.body()) {
+                    processHeaders(response.headers());
+                    if (!response.isSuccessful() || body == null) {
+                        throw new ClientConnectionException("Invalid response received: " + response.code() + "; "
+                                                            + (body == null ? "N/A" : body.string()));
+                    }
+                    if (metricsRegistry == MetricsRegistry.NOOP) {
+                        future.complete(reader.read(body));
+                    } else {
+                        final byte[] bytes = body.bytes();
+                        metricsRegistry.recordBytes(method, content.length, bytes.length);
+                        future.complete(reader.read(ResponseBody.create(bytes, body.contentType())));
+                    }
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+
+        T read(ResponseBody body) throws IOException;
+    }
+}
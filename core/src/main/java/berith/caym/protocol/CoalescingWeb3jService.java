@@ -0,0 +1,343 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.reactivex.Flowable;
+
+import berith.caym.util.FutureUtil;
+
+/**
+ * {@link Web3jService} decorator which coalesces individual requests into JSON-RPC batches.
+ *
+ * <p>Requests sent through {@link #send(Request, Class)} or {@link #sendAsync(Request, Class)} are
+ * held for at most {@code windowMillis} or until {@code maxBatchSize} requests are pending, then
+ * sent to the delegate as one {@link BatchRequest}. Each caller receives its own typed response.
+ *
+ * <p>Responses are matched to requests by id, so the node may answer a batch in any order. A batch
+ * mixing response types is requested as raw JSON and each response is converted once it is matched,
+ * since the delegate deserializes the i-th response with the type of the i-th request.
+ *
+ * <p>Requests sent after {@link #close()} fail with an {@link IOException}.
+ */
+public class CoalescingWeb3jService implements Web3jService {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_WINDOW_MILLIS = 2L;
+
+    private final Web3jService web3jService;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final boolean ownsScheduledExecutorService;
+
+    private final Object lock = new Object();
+    private List<PendingRequest<?>> pendingRequests = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    public CoalescingWeb3jService(Web3jService web3jService) {
+        this(web3jService, DEFAULT_MAX_BATCH_SIZE, DEFAULT_WINDOW_MILLIS);
+    }
+
+    public CoalescingWeb3jService(Web3jService web3jService, int maxBatchSize, long windowMillis) {
+        this(web3jService, maxBatchSize, windowMillis, newFlushExecutorService(), true);
+    }
+
+    public CoalescingWeb3jService(Web3jService web3jService, int maxBatchSize, long windowMillis,
+                                  ScheduledExecutorService scheduledExecutorService) {
+        this(web3jService, maxBatchSize, windowMillis, scheduledExecutorService, false);
+    }
+
+    private CoalescingWeb3jService(Web3jService web3jService, int maxBatchSize, long windowMillis,
+                                   ScheduledExecutorService scheduledExecutorService,
+                                   boolean ownsScheduledExecutorService) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("windowMillis must not be negative");
+        }
+
+        this.web3jService = Objects.requireNonNull(web3jService, "web3jService");
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.scheduledExecutorService = Objects.requireNonNull(scheduledExecutorService,
+                                                               "scheduledExecutorService");
+        this.ownsScheduledExecutorService = ownsScheduledExecutorService;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        return FutureUtil.await(sendAsync(request, responseType));
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        final PendingRequest<T> pendingRequest = new PendingRequest<>(request, responseType);
+        List<PendingRequest<?>> ready = null;
+
+        synchronized (lock) {
+            if (closed) {
+                pendingRequest.future.completeExceptionally(new IOException("CoalescingWeb3jService is closed"));
+                return pendingRequest.future;
+            }
+            pendingRequests.add(pendingRequest);
+
+            if (pendingRequests.size() >= maxBatchSize) {
+                ready = drain();
+            } else if (scheduledFlush == null) {
+                try {
+                    scheduledFlush = scheduledExecutorService.schedule(this::flush, windowMillis,
+                                                                       TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // a shared executor has been shut down, nothing would flush the window
+                    ready = drain();
+                }
+            }
+        }
+
+        if (ready != null) {
+            dispatch(ready);
+        }
+
+        return pendingRequest.future;
+    }
+
+    /**
+     * Sends all pending requests immediately without waiting for the window to elapse.
+     */
+    public void flush() {
+        final List<PendingRequest<?>> ready;
+        synchronized (lock) {
+            ready = drain();
+        }
+
+        if (!ready.isEmpty()) {
+            dispatch(ready);
+        }
+    }
+
+    /**
+     * Returns the number of requests waiting for the next batch.
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingRequests.size();
+        }
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        return web3jService.sendBatch(batchRequest);
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return web3jService.sendBatchAsync(batchRequest);
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return web3jService.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+        }
+        flush();
+        if (ownsScheduledExecutorService) {
+            scheduledExecutorService.shutdown();
+        }
+        web3jService.close();
+    }
+
+    private static ScheduledExecutorService newFlushExecutorService() {
+        // flushes must not queue behind the blocking tasks of web3j's shared executor
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "caym-coalescing-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private List<PendingRequest<?>> drain() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        final List<PendingRequest<?>> ready = pendingRequests;
+        pendingRequests = new ArrayList<>();
+        return ready;
+    }
+
+    private void dispatch(List<PendingRequest<?>> ready) {
+        // a single request does not need the batch envelope
+        if (ready.size() == 1) {
+            final PendingRequest<?> pendingRequest = ready.get(0);
+            try {
+                web3jService.sendAsync(pendingRequest.request, pendingRequest.responseType)
+                            .whenComplete(pendingRequest::complete);
+            } catch (RuntimeException e) {
+                pendingRequest.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        final Class<?> responseType = ready.get(0).responseType;
+        final boolean mixed = ready.stream().anyMatch(pendingRequest -> pendingRequest.responseType != responseType);
+        final BatchRequest batchRequest = new BatchRequest(web3jService);
+        for (PendingRequest<?> pendingRequest : ready) {
+            batchRequest.add(mixed ? pendingRequest.rawRequest(web3jService) : pendingRequest.typedRequest());
+        }
+
+        try {
+            web3jService.sendBatchAsync(batchRequest).whenComplete((batchResponse, throwable) -> {
+                if (throwable != null) {
+                    ready.forEach(pendingRequest -> pendingRequest.future.completeExceptionally(throwable));
+                } else {
+                    complete(ready, batchResponse, mixed);
+                }
+            });
+        } catch (RuntimeException e) {
+            ready.forEach(pendingRequest -> pendingRequest.future.completeExceptionally(e));
+        }
+    }
+
+    private static void complete(List<PendingRequest<?>> ready, BatchResponse batchResponse, boolean raw) {
+        final List<? extends Response<?>> responses = batchResponse.getResponses();
+        Map<Long, Response<?>> responseForId = null;
+
+        for (int i = 0; i < ready.size(); i++) {
+            final PendingRequest<?> pendingRequest = ready.get(i);
+            final long id = pendingRequest.request.getId();
+
+            // nodes normally answer in request order, fall back to id lookup otherwise
+            Response<?> response = i < responses.size() ? responses.get(i) : null;
+            if (response == null || response.getId() != id) {
+                if (responseForId == null) {
+                    responseForId = new HashMap<>();
+                    for (Response<?> each : responses) {
+                        responseForId.put(each.getId(), each);
+                    }
+                }
+                response = responseForId.get(id);
+            }
+
+            if (response == null) {
+                pendingRequest.future.completeExceptionally(
+                        new IOException("Missing response in batch for request id: " + id));
+            } else if (raw) {
+                pendingRequest.completeRaw(response);
+            } else {
+                pendingRequest.complete(response, null);
+            }
+        }
+    }
+
+    /**
+     * Response of a mixed batch, which keeps the result as JSON until it is matched to its request.
+     */
+    static final class RawResponse extends Response<JsonNode> {
+    }
+
+    private static final class PendingRequest<T extends Response> {
+
+        private static final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+        private final Request<?, ?> request;
+        private final Class<T> responseType;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private PendingRequest(Request request, Class<T> responseType) {
+            this.request = Objects.requireNonNull(request, "request");
+            this.responseType = Objects.requireNonNull(responseType, "responseType");
+        }
+
+        @SuppressWarnings("unchecked")
+        private Request<?, ? extends Response<?>> typedRequest() {
+            return (Request<?, ? extends Response<?>>) request;
+        }
+
+        private Request<?, RawResponse> rawRequest(Web3jService web3jService) {
+            final Request<?, RawResponse> rawRequest =
+                    new Request<>(request.getMethod(), request.getParams(), web3jService, RawResponse.class);
+            rawRequest.setId(request.getId());
+            rawRequest.setJsonrpc(request.getJsonrpc());
+            return rawRequest;
+        }
+
+        private void completeRaw(Response<?> response) {
+            final ObjectNode node = objectMapper.createObjectNode();
+            node.put("id", response.getId());
+            node.put("jsonrpc", response.getJsonrpc());
+            if (response.getError() != null) {
+                node.set("error", objectMapper.valueToTree(response.getError()));
+            } else {
+                node.set("result", objectMapper.valueToTree(response.getResult()));
+            }
+
+            try {
+                future.complete(objectMapper.treeToValue(node, responseType));
+            } catch (IOException e) {
+                future.completeExceptionally(new IOException("Invalid response for request id "
+                                                             + response.getId() + ": " + e.getMessage(), e));
+            }
+        }
+
+        private void complete(Object response, Throwable throwable) {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+                return;
+            }
+
+            try {
+                future.complete(responseType.cast(response));
+            } catch (ClassCastException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import berith.caym.metrics.LatencyHistogram;
+
+/**
+ * When {@link LoadBalancingWeb3jService} sends a second copy of a read request to another node.
+ *
+ * <p>A hedge is sent when the first response has not arrived after the given percentile of the
+ * method's recent latencies, clamped to the min and max delay. Until enough latencies are
+ * recorded the max delay is used. Only idempotent methods may be hedged.
+ *
+ * <p>The latencies decay: every {@value #DECAY_SAMPLES} responses of a method its histogram is
+ * halved, so the delay follows a node which becomes slower or faster.
+ */
+public class HedgingPolicy {
+
+    public static final Set<String> DEFAULT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "berith_getBlockByNumber", "berith_getTransactionReceipt", "berith_call", "berith_getBalance")));
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final long DEFAULT_MIN_DELAY_MILLIS = 5L;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1000L;
+
+    private static final long MIN_SAMPLES = 100L;
+    static final long DECAY_SAMPLES = 1000L;
+
+    private final Set<String> methods;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private final ConcurrentMap<String, RecentLatencies> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    public HedgingPolicy(ScheduledExecutorService scheduledExecutorService) {
+        this(DEFAULT_METHODS, DEFAULT_PERCENTILE, DEFAULT_MIN_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+             scheduledExecutorService);
+    }
+
+    public HedgingPolicy(Set<String> methods, double percentile, long minDelayMillis, long maxDelayMillis,
+                         ScheduledExecutorService scheduledExecutorService) {
+        if (percentile <= 0.0 || percentile >= 1.0) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1: " + percentile);
+        }
+        if (minDelayMillis < 0 || maxDelayMillis < minDelayMillis) {
+            throw new IllegalArgumentException("Invalid delay range [" + minDelayMillis + ", " + maxDelayMillis + "]");
+        }
+
+        this.methods = Collections.unmodifiableSet(new HashSet<>(Objects.requireNonNull(methods, "methods")));
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.scheduledExecutorService = Objects.requireNonNull(scheduledExecutorService,
+                                                               "scheduledExecutorService");
+    }
+
+    public boolean isHedged(String method) {
+        return methods.contains(method);
+    }
+
+    /**
+     * Returns how long to wait for the first response of the method before hedging
+     */
+    public long getDelayNanos(String method) {
+        final LatencyHistogram histogram = getHistogram(method);
+        if (histogram == null || histogram.getCount() < MIN_SAMPLES) {
+            return maxDelayNanos;
+        }
+        return Math.max(minDelayNanos, Math.min(maxDelayNanos, histogram.getPercentileNanos(percentile)));
+    }
+
+    /**
+     * Returns the decaying latencies of the method's responses, or null if none were recorded
+     */
+    public LatencyHistogram getHistogram(String method) {
+        final RecentLatencies recentLatencies = latencies.get(method);
+        return recentLatencies == null ? null : recentLatencies.histogram;
+    }
+
+    /**
+     * Returns the number of hedges sent
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * Returns the number of hedges which answered before the first request
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    ScheduledExecutorService getScheduledExecutorService() {
+        return scheduledExecutorService;
+    }
+
+    void record(String method, long nanos) {
+        latencies.computeIfAbsent(method, key -> new RecentLatencies()).record(nanos);
+    }
+
+    void onHedge() {
+        hedgeCount.incrementAndGet();
+    }
+
+    void onHedgeWin() {
+        hedgeWinCount.incrementAndGet();
+    }
+
+    private static final class RecentLatencies {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicLong samples = new AtomicLong();
+
+        private void record(long nanos) {
+            histogram.record(nanos);
+            if (samples.incrementAndGet() % DECAY_SAMPLES == 0L) {
+                histogram.decay();
+            }
+        }
+    }
+}
@@ -0,0 +1,688 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import io.reactivex.Flowable;
+
+import berith.caym.Berith;
+import berith.caym.Caym;
+import berith.caym.protocol.response.Quantity;
+import berith.caym.util.FutureUtil;
+import berith.caym.util.NumericUtil;
+
+/**
+ * {@link Web3jService} which spreads requests over several nodes.
+ *
+ * <p>Each request goes to the available node with the fewest outstanding requests, or with
+ * {@link Routing#LATENCY_WEIGHTED} to the node with the lowest average latency weighted by its
+ * outstanding requests. A request which fails with an {@link IOException} is retried once on
+ * another node. A node is ejected for a while after consecutive failures, and health checks mark
+ * nodes unhealthy which lag behind the highest block number or have no peers.
+ *
+ * <p>Filters only exist on the node which installed them, so berith_getFilterChanges,
+ * berith_getFilterLogs and berith_uninstallFilter are sent to the node which answered the
+ * berith_newXXXFilter request of the filter id. Batches are split by node when they contain
+ * requests for filters of different nodes.
+ *
+ * <p>With a {@link HedgingPolicy} slow read requests are sent to a second node as well, the first
+ * response wins and the other request is cancelled.
+ */
+public class LoadBalancingWeb3jService implements Web3jService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadBalancingWeb3jService.class);
+
+    public static final int DEFAULT_MAX_FAILURES = 3;
+    public static final long DEFAULT_EJECT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final long DEFAULT_MAX_BLOCK_LAG = 5L;
+
+    private static final List<String> NEW_FILTER_METHODS =
+        Arrays.asList("berith_newFilter", "berith_newBlockFilter", "berith_newPendingTransactionFilter");
+    private static final List<String> FILTER_METHODS =
+        Arrays.asList("berith_getFilterChanges", "berith_getFilterLogs", "berith_uninstallFilter");
+
+    /**
+     * How a node is chosen for a request
+     */
+    public enum Routing {
+        LEAST_OUTSTANDING,
+        LATENCY_WEIGHTED
+    }
+
+    private final List<Node> nodes;
+    private final Routing routing;
+    private final int maxFailures;
+    private final long ejectMillis;
+    private final long maxBlockLag;
+
+    private final ConcurrentMap<BigInteger, Node> filterOwners = new ConcurrentHashMap<>();
+    private final AtomicInteger nextNode = new AtomicInteger();
+    private volatile HedgingPolicy hedgingPolicy;
+    private ScheduledFuture<?> healthCheck;
+
+    public LoadBalancingWeb3jService(List<? extends Web3jService> web3jServices) {
+        this(web3jServices, Routing.LEAST_OUTSTANDING, DEFAULT_MAX_FAILURES, DEFAULT_EJECT_MILLIS,
+             DEFAULT_MAX_BLOCK_LAG);
+    }
+
+    public LoadBalancingWeb3jService(List<? extends Web3jService> web3jServices, Routing routing, int maxFailures,
+                                     long ejectMillis, long maxBlockLag) {
+        if (web3jServices.isEmpty()) {
+            throw new IllegalArgumentException("web3jServices must not be empty");
+        }
+        if (maxFailures < 1) {
+            throw new IllegalArgumentException("maxFailures must be positive");
+        }
+
+        final List<Node> nodes = new ArrayList<>(web3jServices.size());
+        for (int i = 0; i < web3jServices.size(); i++) {
+            nodes.add(new Node(i, Objects.requireNonNull(web3jServices.get(i), "web3jService")));
+        }
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.routing = Objects.requireNonNull(routing, "routing");
+        this.maxFailures = maxFailures;
+        this.ejectMillis = ejectMillis;
+        this.maxBlockLag = maxBlockLag;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        if (isHedged(hedgingPolicy, request)) {
+            return FutureUtil.await(sendAsync(request, responseType));
+        }
+
+        final Node owner = filterOwner(request);
+        final Node node = owner != null ? owner : select(null);
+        try {
+            return observe(request, node.send(request, responseType), node);
+        } catch (IOException e) {
+            final Node retry = owner == null ? select(node) : null;
+            if (retry == null) {
+                throw e;
+            }
+            logger.debug("Retrying {} on node {}", request.getMethod(), retry.index, e);
+            return observe(request, retry.send(request, responseType), retry);
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        final HedgingPolicy hedgingPolicy = this.hedgingPolicy;
+        if (isHedged(hedgingPolicy, request)) {
+            return new Hedge<>(request, responseType, hedgingPolicy).send();
+        }
+
+        final Node owner = filterOwner(request);
+        final Node node = owner != null ? owner : select(null);
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        node.sendAsync(request, responseType).whenComplete((response, throwable) -> {
+            final Node retry = throwable != null && owner == null && isIOException(throwable) ? select(node) : null;
+            if (retry != null) {
+                logger.debug("Retrying {} on node {}", request.getMethod(), retry.index, throwable);
+                retry.sendAsync(request, responseType).whenComplete((retried, retryThrowable) -> {
+                    complete(future, request, retried, retryThrowable, retry);
+                });
+            } else {
+                complete(future, request, response, throwable, node);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        return FutureUtil.await(sendBatchAsync(batchRequest));
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        final List<Request<?, ? extends Response<?>>> requests = batchRequest.getRequests();
+
+        // requests for filters go to their owner, all others to one selected node
+        Node selected = null;
+        final Map<Node, BatchRequest> batches = new LinkedHashMap<>();
+        for (Request<?, ? extends Response<?>> request : requests) {
+            Node node = filterOwner(request);
+            if (node == null) {
+                if (selected == null) {
+                    selected = select(null);
+                }
+                node = selected;
+            }
+            batches.computeIfAbsent(node, key -> new BatchRequest(key.web3jService)).add(request);
+        }
+
+        final List<CompletableFuture<BatchResponse>> futures = new ArrayList<>(batches.size());
+        final List<Node> batchNodes = new ArrayList<>(batches.keySet());
+        for (Map.Entry<Node, BatchRequest> batch : batches.entrySet()) {
+            futures.add(batch.getKey().sendBatchAsync(batch.getValue()));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            final Map<Long, Response<?>> responseForId = new HashMap<>();
+            for (int i = 0; i < futures.size(); i++) {
+                final BatchResponse batchResponse = futures.get(i).join();
+                for (int j = 0; j < batchResponse.getResponses().size(); j++) {
+                    final Response<?> response = batchResponse.getResponses().get(j);
+                    observe(batchResponse.getRequests().get(j), response, batchNodes.get(i));
+                    responseForId.put(response.getId(), response);
+                }
+            }
+
+            final List<Response<?>> responses = new ArrayList<>(requests.size());
+            for (Request<?, ? extends Response<?>> request : requests) {
+                final Response<?> response = responseForId.get(request.getId());
+                if (response == null) {
+                    // a shorter response list would shift every later response onto the wrong request
+                    throw new CompletionException(
+                        new IOException("Missing response in batch for request id: " + request.getId()));
+                }
+                responses.add(response);
+            }
+            return new BatchResponse(requests, responses);
+        });
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return select(null).web3jService.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopHealthChecks();
+        IOException exception = null;
+        for (Node node : nodes) {
+            try {
+                node.web3jService.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Checks the block number and peer count of every node now and then every {@code intervalMillis}
+     */
+    public synchronized void runHealthChecks(ScheduledExecutorService scheduledExecutorService, long intervalMillis) {
+        if (healthCheck != null) {
+            throw new IllegalStateException("Health checks are already running");
+        }
+        healthCheck = scheduledExecutorService.scheduleWithFixedDelay(() -> {
+            try {
+                checkHealth();
+            } catch (Throwable e) {
+                logger.error("Error checking node health", e);
+            }
+        }, 0L, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopHealthChecks() {
+        if (healthCheck != null) {
+            healthCheck.cancel(false);
+            healthCheck = null;
+        }
+    }
+
+    /**
+     * Fetches berith_blockNumber and net_peerCount of all nodes and marks nodes unhealthy which
+     * fail, have no peers or lag more than the max block lag behind the highest block number
+     */
+    public void checkHealth() {
+        final List<CompletableFuture<Quantity>> blockNumbers = new ArrayList<>(nodes.size());
+        final List<CompletableFuture<Quantity>> peerCounts = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            blockNumbers.add(node.berith.berithBlockNumber().sendAsync());
+            peerCounts.add(node.berith.netPeerCount().sendAsync());
+        }
+
+        long highest = -1L;
+        for (int i = 0; i < nodes.size(); i++) {
+            final Node node = nodes.get(i);
+            try {
+                node.blockNumber = value(FutureUtil.await(blockNumbers.get(i)));
+                node.peerCount = value(FutureUtil.await(peerCounts.get(i)));
+                highest = Math.max(highest, node.blockNumber);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Health check of node {} failed", node.index, e);
+                node.blockNumber = -1L;
+                node.peerCount = -1L;
+            }
+        }
+
+        for (Node node : nodes) {
+            final boolean healthy = node.blockNumber >= 0 && node.peerCount > 0
+                                    && highest - node.blockNumber <= maxBlockLag;
+            if (healthy != node.healthy) {
+                logger.info("Node {} is {}, block number {} of {}, {} peers", node.index,
+                            healthy ? "healthy" : "unhealthy", node.blockNumber, highest, node.peerCount);
+            }
+            node.healthy = healthy;
+            if (healthy) {
+                node.failures.set(0);
+                node.ejectedUntil = 0L;
+            }
+        }
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Sends a second copy of slow read requests to another node, null disables hedging
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    private boolean isHedged(HedgingPolicy hedgingPolicy, Request<?, ?> request) {
+        return hedgingPolicy != null && nodes.size() > 1 && hedgingPolicy.isHedged(request.getMethod());
+    }
+
+    /**
+     * Returns the available node with the best score, excluding the given node, or null if there
+     * is no other node. If no node is available all nodes are considered.
+     */
+    Node select(Node excluded) {
+        final long now = now();
+        Node best = select(excluded, now, true);
+        if (best == null) {
+            best = select(excluded, now, false);
+        }
+        if (best == null && excluded == null) {
+            throw new IllegalStateException("No node to send the request to");
+        }
+        return best;
+    }
+
+    private Node select(Node excluded, long now, boolean availableOnly) {
+        // start at a rotating offset so ties are spread over the nodes
+        final int offset = Math.floorMod(nextNode.getAndIncrement(), nodes.size());
+        Node best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < nodes.size(); i++) {
+            final Node node = nodes.get((offset + i) % nodes.size());
+            if (node == excluded || (availableOnly && !node.isAvailable(now))) {
+                continue;
+            }
+            final double score = score(node);
+            if (score < bestScore) {
+                best = node;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private double score(Node node) {
+        final int outstanding = node.outstanding.get();
+        if (routing == Routing.LATENCY_WEIGHTED) {
+            return (outstanding + 1) * (double) Math.max(node.latencyNanos.get(), 1L);
+        }
+        return outstanding;
+    }
+
+    private Node filterOwner(Request<?, ?> request) {
+        if (!FILTER_METHODS.contains(request.getMethod()) || request.getParams().isEmpty()) {
+            return null;
+        }
+        final Node owner = filterOwners.get(filterId(request.getParams().get(0)));
+        if (owner != null && "berith_uninstallFilter".equals(request.getMethod())) {
+            filterOwners.remove(filterId(request.getParams().get(0)));
+        }
+        return owner;
+    }
+
+    private <T extends Response> T observe(Request<?, ?> request, T response, Node node) {
+        if (response != null && !response.hasError() && response.getResult() instanceof String
+            && NEW_FILTER_METHODS.contains(request.getMethod())) {
+            filterOwners.put(filterId(response.getResult()), node);
+        }
+        return response;
+    }
+
+    private <T extends Response> void complete(CompletableFuture<T> future, Request<?, ?> request, T response,
+                                               Throwable throwable, Node node) {
+        if (throwable != null) {
+            future.completeExceptionally(throwable);
+        } else {
+            future.complete(observe(request, response, node));
+        }
+    }
+
+    private static BigInteger filterId(Object value) {
+        return value instanceof BigInteger ? (BigInteger) value : NumericUtil.toBigInt(value.toString());
+    }
+
+    private static long value(Quantity quantity) throws IOException {
+        if (quantity.hasError()) {
+            throw new IOException(quantity.getError().getMessage());
+        }
+        return NumericUtil.decodeQuantityAsLong(quantity.getResult());
+    }
+
+    private static boolean isIOException(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * A read request sent to one node, and to a second one if the first does not answer in time.
+     * The first response wins and the other request is cancelled. A failed request is hedged
+     * immediately.
+     */
+    private final class Hedge<T extends Response> {
+
+        private final Request<?, ?> request;
+        private final Class<T> responseType;
+        private final HedgingPolicy hedgingPolicy;
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<CompletableFuture<T>> attempts = new ArrayList<>(2);
+        private Node primary;
+        private boolean hedged;
+        private int pending;
+
+        private Hedge(Request<?, ?> request, Class<T> responseType, HedgingPolicy hedgingPolicy) {
+            this.request = request;
+            this.responseType = responseType;
+            this.hedgingPolicy = hedgingPolicy;
+        }
+
+        private CompletableFuture<T> send() {
+            final Node node = select(null);
+            synchronized (this) {
+                primary = node;
+                pending++;
+            }
+            attempt(node, false);
+
+            final ScheduledFuture<?> timer = hedgingPolicy.getScheduledExecutorService().schedule(
+                this::hedge, hedgingPolicy.getDelayNanos(request.getMethod()), TimeUnit.NANOSECONDS);
+            result.whenComplete((response, throwable) -> {
+                timer.cancel(false);
+                cancelAttempts();
+            });
+            return result;
+        }
+
+        private void hedge() {
+            final Node node;
+            synchronized (this) {
+                if (hedged || result.isDone()) {
+                    return;
+                }
+                hedged = true;
+                node = select(primary);
+                if (node == null) {
+                    return;
+                }
+                // counted with hedged, so a failing first attempt does not complete the result first
+                pending++;
+            }
+            hedgingPolicy.onHedge();
+            attempt(node, true);
+        }
+
+        /**
+         * Sends the request to the node, the caller has counted the attempt in pending
+         */
+        private void attempt(Node node, boolean hedge) {
+            final long start = System.nanoTime();
+            final CompletableFuture<T> attempt;
+            try {
+                attempt = node.sendAsync(request, responseType);
+            } catch (RuntimeException e) {
+                onFailure(e, hedge);
+                return;
+            }
+            synchronized (this) {
+                attempts.add(attempt);
+            }
+            if (result.isDone()) {
+                attempt.cancel(true);
+            }
+
+            attempt.whenComplete((response, throwable) -> {
+                if (throwable == null) {
+                    // error responses do not tell how long a result takes
+                    if (!response.hasError()) {
+                        hedgingPolicy.record(request.getMethod(), System.nanoTime() - start);
+                    }
+                    complete(response, node, hedge);
+                } else if (throwable instanceof CancellationException) {
+                    // a primary which lost to its hedge took at least until now, without it the
+                    // slow tail would never reach the histogram and the delay would keep shrinking
+                    if (!hedge) {
+                        hedgingPolicy.record(request.getMethod(), System.nanoTime() - start);
+                    }
+                } else {
+                    onFailure(throwable, hedge);
+                }
+            });
+        }
+
+        private synchronized void complete(T response, Node node, boolean hedge) {
+            // counted before the caller sees the response
+            if (!result.isDone()) {
+                if (hedge) {
+                    hedgingPolicy.onHedgeWin();
+                }
+                result.complete(observe(request, response, node));
+            }
+        }
+
+        private void onFailure(Throwable throwable, boolean hedge) {
+            final boolean retry;
+            synchronized (this) {
+                retry = --pending == 0 && !hedge && !hedged;
+            }
+            if (retry) {
+                hedge();
+            }
+            synchronized (this) {
+                if (pending == 0) {
+                    result.completeExceptionally(throwable);
+                }
+            }
+        }
+
+        private void cancelAttempts() {
+            final List<CompletableFuture<T>> attempts;
+            synchronized (this) {
+                attempts = new ArrayList<>(this.attempts);
+            }
+            for (CompletableFuture<T> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * A node behind the load balancer and its current state
+     */
+    public final class Node {
+
+        private static final double LATENCY_WEIGHT = 0.2;
+
+        private final int index;
+        private final Web3jService web3jService;
+        private final Berith berith;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong latencyNanos = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long ejectedUntil;
+        private volatile boolean healthy = true;
+        private volatile long blockNumber = -1L;
+        private volatile long peerCount = -1L;
+
+        private Node(int index, Web3jService web3jService) {
+            this.index = index;
+            this.web3jService = web3jService;
+            this.berith = Caym.build(web3jService).berith();
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Web3jService getWeb3jService() {
+            return web3jService;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * Returns the moving average of the response time in nanoseconds
+         */
+        public long getLatencyNanos() {
+            return latencyNanos.get();
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public boolean isEjected() {
+            return now() < ejectedUntil;
+        }
+
+        /**
+         * Returns the block number of the last health check, or -1 if unknown
+         */
+        public long getBlockNumber() {
+            return blockNumber;
+        }
+
+        /**
+         * Returns the peer count of the last health check, or -1 if unknown
+         */
+        public long getPeerCount() {
+            return peerCount;
+        }
+
+        private boolean isAvailable(long now) {
+            return healthy && now >= ejectedUntil;
+        }
+
+        private <T extends Response> T send(Request<?, ?> request, Class<T> responseType) throws IOException {
+            final long start = begin();
+            try {
+                final T response = web3jService.send(request, responseType);
+                end(start, null);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                end(start, e);
+                throw e;
+            }
+        }
+
+        private <T extends Response> CompletableFuture<T> sendAsync(Request<?, ?> request, Class<T> responseType) {
+            final long start = begin();
+            final CompletableFuture<T> future;
+            try {
+                future = web3jService.sendAsync(request, responseType);
+            } catch (RuntimeException e) {
+                end(start, e);
+                throw e;
+            }
+            // the caller gets the future of the service, so cancelling it cancels the call
+            future.whenComplete((response, throwable) -> end(start, throwable));
+            return future;
+        }
+
+        private CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            final long start = begin();
+            return web3jService.sendBatchAsync(batchRequest)
+                               .whenComplete((response, throwable) -> end(start, throwable));
+        }
+
+        private long begin() {
+            outstanding.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void end(long start, Throwable throwable) {
+            outstanding.decrementAndGet();
+            if (throwable instanceof CancellationException) {
+                return;
+            }
+            if (throwable != null && isIOException(throwable)) {
+                if (failures.incrementAndGet() >= maxFailures) {
+                    logger.warn("Ejecting node {} after {} failures", index, failures.get());
+                    ejectedUntil = now() + ejectMillis;
+                    failures.set(0);
+                }
+                return;
+            }
+
+            failures.set(0);
+            final long latency = System.nanoTime() - start;
+            latencyNanos.accumulateAndGet(latency, (average, sample) -> average == 0L
+                ? sample : (long) (average + LATENCY_WEIGHT * (sample - average)));
+        }
+    }
+}
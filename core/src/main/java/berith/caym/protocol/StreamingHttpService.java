@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.http.HttpService;
+
+import okhttp3.OkHttpClient;
+
+import berith.caym.account.AddressPool;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlockReader;
+import berith.caym.protocol.response.BlockVisitor;
+
+/**
+ * {@link HttpService} which can stream block responses into a {@link BlockVisitor}.
+ *
+ * <p>Transactions are decoded straight from the HTTP response body and handed to the visitor one by
+ * one, so the full transaction list of a block is never held in memory.
+ */
+public class StreamingHttpService extends HttpService {
+
+    public StreamingHttpService(String url) {
+        super(url);
+    }
+
+    public StreamingHttpService(String url, OkHttpClient httpClient) {
+        super(url, httpClient);
+    }
+
+    public StreamingHttpService(OkHttpClient httpClient) {
+        super(httpClient);
+    }
+
+    /**
+     * Sends a berith_getBlockByXXX request and streams the full transaction objects to the visitor.
+     *
+     * @return the response with the block header, transactions are not included
+     */
+    public BerithBlock streamBlock(Request<?, BerithBlock> request, BlockVisitor visitor) throws IOException {
+        return streamBlock(request, visitor, null);
+    }
+
+    /**
+     * Sends a berith_getBlockByXXX request and streams the full transaction objects to the visitor,
+     * the addresses of the block and the transactions are taken from the pool if not null.
+     *
+     * @return the response with the block header, transactions are not included
+     */
+    public BerithBlock streamBlock(Request<?, BerithBlock> request, BlockVisitor visitor, AddressPool addressPool)
+            throws IOException {
+
+        final String payload = objectMapper.writeValueAsString(request);
+        try (InputStream inputStream = performIO(payload)) {
+            return BerithBlockReader.read(inputStream, visitor, addressPool);
+        }
+    }
+}
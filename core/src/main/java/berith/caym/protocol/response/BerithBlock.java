@@ -18,21 +18,18 @@ package berith.caym.protocol.response;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 
-import org.web3j.protocol.ObjectMapperFactory;
 import org.web3j.protocol.core.Response;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
+import berith.caym.account.AddressPool;
 import berith.caym.protocol.response.BerithBlock.Block;
 import berith.caym.util.NumericUtil;
 
@@ -133,6 +130,21 @@ public class BerithBlock extends Response<Block> {
          */
         private List<String> sealFields;
 
+        // decoded quantities, cached on first access
+        private BigInteger numberValue;
+        private BigInteger nonceValue;
+        private BigInteger difficultyValue;
+        private BigInteger totalDifficultyValue;
+        private BigInteger sizeValue;
+        private BigInteger gasLimitValue;
+        private BigInteger gasUsedValue;
+        private BigInteger timestampValue;
+        private long numberLong = -1;
+        private long sizeLong = -1;
+        private long gasLimitLong = -1;
+        private long gasUsedLong = -1;
+        private long timestampLong = -1;
+
         public Block() {
         }
 
@@ -165,7 +177,20 @@ public class BerithBlock extends Response<Block> {
         }
 
         public BigInteger getNumber() {
-            return NumericUtil.decodeQuantity(number);
+            if (numberValue == null) {
+                numberValue = NumericUtil.decodeQuantity(number);
+            }
+            return numberValue;
+        }
+
+        /**
+         * Returns the block number as long without allocating a {@link BigInteger}, or -1 if absent
+         */
+        public long getNumberAsLong() {
+            if (numberLong < 0 && number != null) {
+                numberLong = NumericUtil.decodeQuantityAsLong(number);
+            }
+            return numberLong;
         }
 
         public String getNumberRaw() {
@@ -174,6 +199,8 @@ public class BerithBlock extends Response<Block> {
 
         public void setNumber(String number) {
             this.number = number;
+            numberValue = null;
+            numberLong = -1;
         }
 
         public String getHash() {
@@ -193,7 +220,10 @@ public class BerithBlock extends Response<Block> {
         }
 
         public BigInteger getNonce() {
-            return NumericUtil.decodeQuantity(nonce);
+            if (nonceValue == null) {
+                nonceValue = NumericUtil.decodeQuantity(nonce);
+            }
+            return nonceValue;
         }
 
         public String getNonceRaw() {
@@ -202,6 +232,7 @@ public class BerithBlock extends Response<Block> {
 
         public void setNonce(String nonce) {
             this.nonce = nonce;
+            nonceValue = null;
         }
 
         public String getSha3Uncles() {
@@ -261,7 +292,10 @@ public class BerithBlock extends Response<Block> {
         }
 
         public BigInteger getDifficulty() {
-            return NumericUtil.decodeQuantity(difficulty);
+            if (difficultyValue == null) {
+                difficultyValue = NumericUtil.decodeQuantity(difficulty);
+            }
+            return difficultyValue;
         }
 
         public String getDifficultyRaw() {
@@ -270,10 +304,14 @@ public class BerithBlock extends Response<Block> {
 
         public void setDifficulty(String difficulty) {
             this.difficulty = difficulty;
+            difficultyValue = null;
         }
 
         public BigInteger getTotalDifficulty() {
-            return NumericUtil.decodeQuantity(totalDifficulty);
+            if (totalDifficultyValue == null) {
+                totalDifficultyValue = NumericUtil.decodeQuantity(totalDifficulty);
+            }
+            return totalDifficultyValue;
         }
 
         public String getTotalDifficultyRaw() {
@@ -282,6 +320,7 @@ public class BerithBlock extends Response<Block> {
 
         public void setTotalDifficulty(String totalDifficulty) {
             this.totalDifficulty = totalDifficulty;
+            totalDifficultyValue = null;
         }
 
         public String getExtraData() {
@@ -293,7 +332,20 @@ public class BerithBlock extends Response<Block> {
         }
 
         public BigInteger getSize() {
-            return NumericUtil.decodeQuantity(size);
+            if (sizeValue == null) {
+                sizeValue = NumericUtil.decodeQuantity(size);
+            }
+            return sizeValue;
+        }
+
+        /**
+         * Returns the block size as long without allocating a {@link BigInteger}, or -1 if absent
+         */
+        public long getSizeAsLong() {
+            if (sizeLong < 0 && size != null) {
+                sizeLong = NumericUtil.decodeQuantityAsLong(size);
+            }
+            return sizeLong;
         }
 
         public String getSizeRaw() {
@@ -302,10 +354,25 @@ public class BerithBlock extends Response<Block> {
 
         public void setSize(String size) {
             this.size = size;
+            sizeValue = null;
+            sizeLong = -1;
         }
 
         public BigInteger getGasLimit() {
-            return NumericUtil.decodeQuantity(gasLimit);
+            if (gasLimitValue == null) {
+                gasLimitValue = NumericUtil.decodeQuantity(gasLimit);
+            }
+            return gasLimitValue;
+        }
+
+        /**
+         * Returns the gas limit as long without allocating a {@link BigInteger}, or -1 if absent
+         */
+        public long getGasLimitAsLong() {
+            if (gasLimitLong < 0 && gasLimit != null) {
+                gasLimitLong = NumericUtil.decodeQuantityAsLong(gasLimit);
+            }
+            return gasLimitLong;
         }
 
         public String getGasLimitRaw() {
@@ -314,10 +381,25 @@ public class BerithBlock extends Response<Block> {
 
         public void setGasLimit(String gasLimit) {
             this.gasLimit = gasLimit;
+            gasLimitValue = null;
+            gasLimitLong = -1;
         }
 
         public BigInteger getGasUsed() {
-            return NumericUtil.decodeQuantity(gasUsed);
+            if (gasUsedValue == null) {
+                gasUsedValue = NumericUtil.decodeQuantity(gasUsed);
+            }
+            return gasUsedValue;
+        }
+
+        /**
+         * Returns the gas used as long without allocating a {@link BigInteger}, or -1 if absent
+         */
+        public long getGasUsedAsLong() {
+            if (gasUsedLong < 0 && gasUsed != null) {
+                gasUsedLong = NumericUtil.decodeQuantityAsLong(gasUsed);
+            }
+            return gasUsedLong;
         }
 
         public String getGasUsedRaw() {
@@ -326,10 +408,25 @@ public class BerithBlock extends Response<Block> {
 
         public void setGasUsed(String gasUsed) {
             this.gasUsed = gasUsed;
+            gasUsedValue = null;
+            gasUsedLong = -1;
         }
 
         public BigInteger getTimestamp() {
-            return NumericUtil.decodeQuantity(timestamp);
+            if (timestampValue == null) {
+                timestampValue = NumericUtil.decodeQuantity(timestamp);
+            }
+            return timestampValue;
+        }
+
+        /**
+         * Returns the timestamp as long without allocating a {@link BigInteger}, or -1 if absent
+         */
+        public long getTimestampAsLong() {
+            if (timestampLong < 0 && timestamp != null) {
+                timestampLong = NumericUtil.decodeQuantityAsLong(timestamp);
+            }
+            return timestampLong;
         }
 
         public String getTimestampRaw() {
@@ -338,6 +435,8 @@ public class BerithBlock extends Response<Block> {
 
         public void setTimestamp(String timestamp) {
             this.timestamp = timestamp;
+            timestampValue = null;
+            timestampLong = -1;
         }
 
         public List<TransactionResult> getTransactions() {
@@ -571,41 +670,47 @@ public class BerithBlock extends Response<Block> {
 
     public static class ResultTransactionDeserializer extends JsonDeserializer<List<TransactionResult>> {
 
-        private ObjectReader objectReader = ObjectMapperFactory.getObjectReader();
+        private final AddressPool addressPool;
+
+        public ResultTransactionDeserializer() {
+            this(null);
+        }
+
+        /**
+         * @param addressPool pool of the transaction addresses, or null
+         */
+        public ResultTransactionDeserializer(AddressPool addressPool) {
+            this.addressPool = addressPool;
+        }
 
         @Override
         public List<TransactionResult> deserialize(JsonParser jsonParser,
             DeserializationContext deserializationContext) throws IOException {
 
-            List<TransactionResult> transactionResults = new ArrayList<>();
-            JsonToken nextToken = jsonParser.nextToken();
-
-            if (nextToken == JsonToken.START_OBJECT) {
-                Iterator<TransactionObject> transactionObjectIterator = objectReader.readValues(jsonParser, TransactionObject.class);
-                while (transactionObjectIterator.hasNext()) {
-                    transactionResults.add(transactionObjectIterator.next());
-                }
-            } else if (nextToken == JsonToken.VALUE_STRING) {
-                jsonParser.getValueAsString();
-
-                Iterator<TransactionHash> transactionHashIterator = objectReader.readValues(jsonParser, TransactionHash.class);
-                while (transactionHashIterator.hasNext()) {
-                    transactionResults.add(transactionHashIterator.next());
-                }
-            }
-
-            return transactionResults;
+            // decodes transaction objects token by token instead of binding each through the ObjectReader
+            return BerithBlockReader.readTransactions(jsonParser, null, addressPool);
         }
     }
 
     public static class ResponseDeserializer extends JsonDeserializer<Block> {
 
-        private ObjectReader objectReader = ObjectMapperFactory.getObjectReader();
+        private final AddressPool addressPool;
+
+        public ResponseDeserializer() {
+            this(null);
+        }
+
+        /**
+         * @param addressPool pool of the block and transaction addresses, or null
+         */
+        public ResponseDeserializer(AddressPool addressPool) {
+            this.addressPool = addressPool;
+        }
 
         @Override
         public Block deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
             if (jsonParser.getCurrentToken() != JsonToken.VALUE_NULL) {
-                return objectReader.readValue(jsonParser, Block.class);
+                return BerithBlockReader.readBlock(jsonParser, null, addressPool);
             } else {
                 return null;  // null is wrapped by Optional in above getter
             }
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol.response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.Response;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import berith.caym.account.AddressPool;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithBlock.TransactionHash;
+import berith.caym.protocol.response.BerithBlock.TransactionObject;
+import berith.caym.protocol.response.BerithBlock.TransactionResult;
+
+/**
+ * Token level reader of block and transaction objects.
+ *
+ * <p>Fields are decoded directly from the {@link JsonParser} without building an intermediate tree
+ * or going through bean introspection. Unknown fields are skipped.
+ *
+ * <p>Methods which take an {@link AddressPool} take the {@code miner} of blocks and the
+ * {@code from}, {@code to} and {@code creates} of transactions from the pool, a {@code null} pool
+ * keeps the strings as they are read.
+ */
+public final class BerithBlockReader {
+
+    private static final ObjectReader objectReader = ObjectMapperFactory.getObjectReader();
+    private static final JsonFactory jsonFactory = ObjectMapperFactory.getObjectMapper().getFactory();
+
+    /**
+     * Reads a JSON-RPC response of berith_getBlockByXXX from the input stream.
+     * Full transaction objects are passed to the visitor instead of being collected in the block.
+     */
+    public static BerithBlock read(InputStream inputStream, BlockVisitor visitor) throws IOException {
+        return read(inputStream, visitor, null);
+    }
+
+    /**
+     * Reads a JSON-RPC response of berith_getBlockByXXX from the input stream and pools the
+     * addresses if the pool is not null.
+     */
+    public static BerithBlock read(InputStream inputStream, BlockVisitor visitor, AddressPool addressPool)
+            throws IOException {
+
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            final BerithBlock berithBlock = new BerithBlock();
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+
+                switch (field) {
+                    case "jsonrpc":
+                        berithBlock.setJsonrpc(parser.getValueAsString());
+                        break;
+                    case "id":
+                        berithBlock.setId(parser.getValueAsLong());
+                        break;
+                    case "result":
+                        if (token == JsonToken.START_OBJECT) {
+                            final Block block = readBlock(parser, visitor, addressPool);
+                            berithBlock.setResult(block);
+                            visitor.onBlock(block);
+                        }
+                        break;
+                    case "error":
+                        if (token == JsonToken.START_OBJECT) {
+                            berithBlock.setError(objectReader.readValue(parser, Response.Error.class));
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            return berithBlock;
+        }
+    }
+
+    /**
+     * Reads a block object including its transactions. The parser must be positioned at the
+     * {@link JsonToken#START_OBJECT} of the block.
+     */
+    public static Block readBlock(JsonParser parser) throws IOException {
+        return readBlock(parser, null, null);
+    }
+
+    /**
+     * Reads a block object and passes full transaction objects to the visitor if not null.
+     * The parser must be positioned at the {@link JsonToken#START_OBJECT} of the block.
+     */
+    public static Block readBlock(JsonParser parser, BlockVisitor visitor) throws IOException {
+        return readBlock(parser, visitor, null);
+    }
+
+    /**
+     * Reads a block object, passes full transaction objects to the visitor if not null and pools
+     * the addresses if the pool is not null.
+     * The parser must be positioned at the {@link JsonToken#START_OBJECT} of the block.
+     */
+    public static Block readBlock(JsonParser parser, BlockVisitor visitor, AddressPool addressPool)
+            throws IOException {
+
+        expect(parser, parser.getCurrentToken(), JsonToken.START_OBJECT);
+        final Block block = new Block();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "number":
+                    block.setNumber(parser.getValueAsString());
+                    break;
+                case "hash":
+                    block.setHash(parser.getValueAsString());
+                    break;
+                case "parentHash":
+                    block.setParentHash(parser.getValueAsString());
+                    break;
+                case "nonce":
+                    block.setNonce(parser.getValueAsString());
+                    break;
+                case "sha3Uncles":
+                    block.setSha3Uncles(parser.getValueAsString());
+                    break;
+                case "logsBloom":
+                    block.setLogsBloom(parser.getValueAsString());
+                    break;
+                case "transactionsRoot":
+                    block.setTransactionsRoot(parser.getValueAsString());
+                    break;
+                case "stateRoot":
+                    block.setStateRoot(parser.getValueAsString());
+                    break;
+                case "receiptsRoot":
+                    block.setReceiptsRoot(parser.getValueAsString());
+                    break;
+                case "miner":
+                    block.setMiner(readAddress(parser, addressPool));
+                    break;
+                case "mixHash":
+                    block.setMixHash(parser.getValueAsString());
+                    break;
+                case "difficulty":
+                    block.setDifficulty(parser.getValueAsString());
+                    break;
+                case "totalDifficulty":
+                    block.setTotalDifficulty(parser.getValueAsString());
+                    break;
+                case "extraData":
+                    block.setExtraData(parser.getValueAsString());
+                    break;
+                case "size":
+                    block.setSize(parser.getValueAsString());
+                    break;
+                case "gasLimit":
+                    block.setGasLimit(parser.getValueAsString());
+                    break;
+                case "gasUsed":
+                    block.setGasUsed(parser.getValueAsString());
+                    break;
+                case "timestamp":
+                    block.setTimestamp(parser.getValueAsString());
+                    break;
+                case "transactions":
+                    block.setTransactions(readTransactions(parser, visitor, addressPool));
+                    break;
+                case "uncles":
+                    block.setUncles(readStrings(parser));
+                    break;
+                case "sealFields":
+                    block.setSealFields(readStrings(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Reads the elements of a transactions array. The parser must be positioned at the
+     * {@link JsonToken#START_ARRAY}. Full transaction objects are passed to the visitor if not null.
+     */
+    public static List<TransactionResult> readTransactions(JsonParser parser, BlockVisitor visitor)
+            throws IOException {
+
+        return readTransactions(parser, visitor, null);
+    }
+
+    /**
+     * Reads the elements of a transactions array and pools the addresses if the pool is not null.
+     * The parser must be positioned at the {@link JsonToken#START_ARRAY}.
+     */
+    public static List<TransactionResult> readTransactions(JsonParser parser, BlockVisitor visitor,
+                                                           AddressPool addressPool) throws IOException {
+
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, parser.getCurrentToken(), JsonToken.START_ARRAY);
+
+        final List<TransactionResult> transactionResults = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                final TransactionObject transaction = readTransaction(parser, addressPool);
+                if (visitor != null) {
+                    visitor.onTransaction(transaction);
+                } else {
+                    transactionResults.add(transaction);
+                }
+            } else if (token == JsonToken.VALUE_STRING) {
+                transactionResults.add(new TransactionHash(parser.getText()));
+            } else {
+                throw JsonMappingException.from(parser, "Unexpected transaction token: " + token);
+            }
+        }
+        return transactionResults;
+    }
+
+    /**
+     * Reads a single transaction object. The parser must be positioned at the
+     * {@link JsonToken#START_OBJECT} of the transaction.
+     */
+    public static TransactionObject readTransaction(JsonParser parser) throws IOException {
+        return readTransaction(parser, null);
+    }
+
+    /**
+     * Reads a single transaction object and pools the addresses if the pool is not null.
+     * The parser must be positioned at the {@link JsonToken#START_OBJECT} of the transaction.
+     */
+    public static TransactionObject readTransaction(JsonParser parser, AddressPool addressPool) throws IOException {
+        expect(parser, parser.getCurrentToken(), JsonToken.START_OBJECT);
+        final TransactionObject transaction = new TransactionObject();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            switch (field) {
+                case "hash":
+                    transaction.setHash(parser.getValueAsString());
+                    break;
+                case "nonce":
+                    transaction.setNonce(parser.getValueAsString());
+                    break;
+                case "blockHash":
+                    transaction.setBlockHash(parser.getValueAsString());
+                    break;
+                case "blockNumber":
+                    transaction.setBlockNumber(parser.getValueAsString());
+                    break;
+                case "transactionIndex":
+                    transaction.setTransactionIndex(parser.getValueAsString());
+                    break;
+                case "from":
+                    transaction.setFrom(readAddress(parser, addressPool));
+                    break;
+                case "to":
+                    transaction.setTo(readAddress(parser, addressPool));
+                    break;
+                case "value":
+                    transaction.setValue(parser.getValueAsString());
+                    break;
+                case "gasPrice":
+                    transaction.setGasPrice(parser.getValueAsString());
+                    break;
+                case "gas":
+                    transaction.setGas(parser.getValueAsString());
+                    break;
+                case "input":
+                    transaction.setInput(parser.getValueAsString());
+                    break;
+                case "r":
+                    transaction.setR(parser.getValueAsString());
+                    break;
+                case "s":
+                    transaction.setS(parser.getValueAsString());
+                    break;
+                case "v":
+                    if (token == JsonToken.VALUE_STRING) {
+                        transaction.setV(parser.getText());
+                    } else if (token == JsonToken.VALUE_NUMBER_INT) {
+                        transaction.setV(parser.getLongValue());
+                    }
+                    break;
+                case "base":
+                    transaction.setBase(parser.getValueAsInt());
+                    break;
+                case "target":
+                    transaction.setTarget(parser.getValueAsInt());
+                    break;
+                case "creates":
+                    transaction.setCreates(readAddress(parser, addressPool));
+                    break;
+                case "publicKey":
+                    transaction.setPublicKey(parser.getValueAsString());
+                    break;
+                case "raw":
+                    transaction.setRaw(parser.getValueAsString());
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return transaction;
+    }
+
+    private static String readAddress(JsonParser parser, AddressPool addressPool) throws IOException {
+        final String value = parser.getValueAsString();
+        return addressPool != null ? addressPool.internString(value) : value;
+    }
+
+    private static List<String> readStrings(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, parser.getCurrentToken(), JsonToken.START_ARRAY);
+
+        final List<String> values = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            values.add(parser.getValueAsString());
+        }
+        return values;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw JsonMappingException.from(parser, "Expected " + expected + " but was " + actual);
+        }
+    }
+
+    private BerithBlockReader() {
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol.response;
+
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithBlock.TransactionObject;
+
+/**
+ * Callback interface for streaming a block without holding its transaction list in memory.
+ *
+ * @see BerithBlockReader#readBlock(com.fasterxml.jackson.core.JsonParser, BlockVisitor)
+ */
+public interface BlockVisitor {
+
+    /**
+     * Called for each full transaction object in the order they appear in the block
+     */
+    void onTransaction(TransactionObject transaction);
+
+    /**
+     * Called once after the block has been read. Full transaction objects have already been passed
+     * to {@link #onTransaction(TransactionObject)} and are not included in the block.
+     */
+    void onBlock(Block block);
+}
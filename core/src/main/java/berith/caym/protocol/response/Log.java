@@ -62,6 +62,14 @@ public class Log {
      */
     private List<String> topics;
 
+    // decoded quantities, cached on first access
+    private BigInteger logIndexValue;
+    private BigInteger transactionIndexValue;
+    private BigInteger blockNumberValue;
+    private long logIndexLong = -1;
+    private long transactionIndexLong = -1;
+    private long blockNumberLong = -1;
+
     public Log() {
     }
 
@@ -89,7 +97,20 @@ public class Log {
     }
 
     public BigInteger getLogIndex() {
-        return convert(logIndex);
+        if (logIndexValue == null) {
+            logIndexValue = convert(logIndex);
+        }
+        return logIndexValue;
+    }
+
+    /**
+     * Returns the log index as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getLogIndexAsLong() {
+        if (logIndexLong < 0 && logIndex != null) {
+            logIndexLong = NumericUtil.decodeQuantityAsLong(logIndex);
+        }
+        return logIndexLong;
     }
 
     public String getLogIndexRaw() {
@@ -98,10 +119,25 @@ public class Log {
 
     public void setLogIndex(String logIndex) {
         this.logIndex = logIndex;
+        logIndexValue = null;
+        logIndexLong = -1;
     }
 
     public BigInteger getTransactionIndex() {
-        return convert(transactionIndex);
+        if (transactionIndexValue == null) {
+            transactionIndexValue = convert(transactionIndex);
+        }
+        return transactionIndexValue;
+    }
+
+    /**
+     * Returns the transaction index as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getTransactionIndexAsLong() {
+        if (transactionIndexLong < 0 && transactionIndex != null) {
+            transactionIndexLong = NumericUtil.decodeQuantityAsLong(transactionIndex);
+        }
+        return transactionIndexLong;
     }
 
     public String getTransactionIndexRaw() {
@@ -110,6 +146,8 @@ public class Log {
 
     public void setTransactionIndex(String transactionIndex) {
         this.transactionIndex = transactionIndex;
+        transactionIndexValue = null;
+        transactionIndexLong = -1;
     }
 
     public String getTransactionHash() {
@@ -129,7 +167,20 @@ public class Log {
     }
 
     public BigInteger getBlockNumber() {
-        return convert(blockNumber);
+        if (blockNumberValue == null) {
+            blockNumberValue = convert(blockNumber);
+        }
+        return blockNumberValue;
+    }
+
+    /**
+     * Returns the block number as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getBlockNumberAsLong() {
+        if (blockNumberLong < 0 && blockNumber != null) {
+            blockNumberLong = NumericUtil.decodeQuantityAsLong(blockNumber);
+        }
+        return blockNumberLong;
     }
 
     public String getBlockNumberRaw() {
@@ -138,6 +189,8 @@ public class Log {
 
     public void setBlockNumber(String blockNumber) {
         this.blockNumber = blockNumber;
+        blockNumberValue = null;
+        blockNumberLong = -1;
     }
 
     public String getAddress() {
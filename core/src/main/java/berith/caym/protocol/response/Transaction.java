@@ -95,6 +95,18 @@ public class Transaction {
     private String publicKey;
     private String raw;
 
+    // decoded quantities, cached on first access
+    private BigInteger nonceValue;
+    private BigInteger blockNumberValue;
+    private BigInteger transactionIndexValue;
+    private BigInteger valueValue;
+    private BigInteger gasPriceValue;
+    private BigInteger gasValue;
+    private long nonceLong = -1;
+    private long blockNumberLong = -1;
+    private long transactionIndexLong = -1;
+    private long gasLong = -1;
+
     public Transaction() {
     }
 
@@ -131,7 +143,20 @@ public class Transaction {
     }
 
     public BigInteger getNonce() {
-        return NumericUtil.decodeQuantity(nonce);
+        if (nonceValue == null) {
+            nonceValue = NumericUtil.decodeQuantity(nonce);
+        }
+        return nonceValue;
+    }
+
+    /**
+     * Returns the nonce as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getNonceAsLong() {
+        if (nonceLong < 0 && nonce != null) {
+            nonceLong = NumericUtil.decodeQuantityAsLong(nonce);
+        }
+        return nonceLong;
     }
 
     public String getNonceRaw() {
@@ -140,6 +165,8 @@ public class Transaction {
 
     public void setNonce(String nonce) {
         this.nonce = nonce;
+        nonceValue = null;
+        nonceLong = -1;
     }
 
     public String getBlockHash() {
@@ -151,7 +178,20 @@ public class Transaction {
     }
 
     public BigInteger getBlockNumber() {
-        return NumericUtil.decodeQuantity(blockNumber);
+        if (blockNumberValue == null) {
+            blockNumberValue = NumericUtil.decodeQuantity(blockNumber);
+        }
+        return blockNumberValue;
+    }
+
+    /**
+     * Returns the block number as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getBlockNumberAsLong() {
+        if (blockNumberLong < 0 && blockNumber != null) {
+            blockNumberLong = NumericUtil.decodeQuantityAsLong(blockNumber);
+        }
+        return blockNumberLong;
     }
 
     public String getBlockNumberRaw() {
@@ -160,10 +200,25 @@ public class Transaction {
 
     public void setBlockNumber(String blockNumber) {
         this.blockNumber = blockNumber;
+        blockNumberValue = null;
+        blockNumberLong = -1;
     }
 
     public BigInteger getTransactionIndex() {
-        return NumericUtil.decodeQuantity(transactionIndex);
+        if (transactionIndexValue == null) {
+            transactionIndexValue = NumericUtil.decodeQuantity(transactionIndex);
+        }
+        return transactionIndexValue;
+    }
+
+    /**
+     * Returns the transaction index as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getTransactionIndexAsLong() {
+        if (transactionIndexLong < 0 && transactionIndex != null) {
+            transactionIndexLong = NumericUtil.decodeQuantityAsLong(transactionIndex);
+        }
+        return transactionIndexLong;
     }
 
     public String getTransactionIndexRaw() {
@@ -172,6 +227,8 @@ public class Transaction {
 
     public void setTransactionIndex(String transactionIndex) {
         this.transactionIndex = transactionIndex;
+        transactionIndexValue = null;
+        transactionIndexLong = -1;
     }
 
     public String getFrom() {
@@ -191,7 +248,10 @@ public class Transaction {
     }
 
     public BigInteger getValue() {
-        return NumericUtil.decodeQuantity(value);
+        if (valueValue == null) {
+            valueValue = NumericUtil.decodeQuantity(value);
+        }
+        return valueValue;
     }
 
     public String getValueRaw() {
@@ -200,10 +260,14 @@ public class Transaction {
 
     public void setValue(String value) {
         this.value = value;
+        valueValue = null;
     }
 
     public BigInteger getGasPrice() {
-        return NumericUtil.decodeQuantity(gasPrice);
+        if (gasPriceValue == null) {
+            gasPriceValue = NumericUtil.decodeQuantity(gasPrice);
+        }
+        return gasPriceValue;
     }
 
     public String getGasPriceRaw() {
@@ -212,10 +276,24 @@ public class Transaction {
 
     public void setGasPrice(String gasPrice) {
         this.gasPrice = gasPrice;
+        gasPriceValue = null;
     }
 
     public BigInteger getGas() {
-        return NumericUtil.decodeQuantity(gas);
+        if (gasValue == null) {
+            gasValue = NumericUtil.decodeQuantity(gas);
+        }
+        return gasValue;
+    }
+
+    /**
+     * Returns the gas limit as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getGasAsLong() {
+        if (gasLong < 0 && gas != null) {
+            gasLong = NumericUtil.decodeQuantityAsLong(gas);
+        }
+        return gasLong;
     }
 
     public String getGasRaw() {
@@ -224,6 +302,8 @@ public class Transaction {
 
     public void setGas(String gas) {
         this.gas = gas;
+        gasValue = null;
+        gasLong = -1;
     }
 
     public String getInput() {
@@ -74,6 +74,16 @@ public class TransactionReceipt {
      */
     private String logsBloom;
 
+    // decoded quantities, cached on first access
+    private BigInteger transactionIndexValue;
+    private BigInteger blockNumberValue;
+    private BigInteger cumulativeGasUsedValue;
+    private BigInteger gasUsedValue;
+    private long transactionIndexLong = -1;
+    private long blockNumberLong = -1;
+    private long cumulativeGasUsedLong = -1;
+    private long gasUsedLong = -1;
+
     public TransactionReceipt() {
     }
 
@@ -104,7 +114,20 @@ public class TransactionReceipt {
     }
 
     public BigInteger getTransactionIndex() {
-        return NumericUtil.decodeQuantity(transactionIndex);
+        if (transactionIndexValue == null) {
+            transactionIndexValue = NumericUtil.decodeQuantity(transactionIndex);
+        }
+        return transactionIndexValue;
+    }
+
+    /**
+     * Returns the transaction index as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getTransactionIndexAsLong() {
+        if (transactionIndexLong < 0 && transactionIndex != null) {
+            transactionIndexLong = NumericUtil.decodeQuantityAsLong(transactionIndex);
+        }
+        return transactionIndexLong;
     }
 
     public String getTransactionIndexRaw() {
@@ -113,6 +136,8 @@ public class TransactionReceipt {
 
     public void setTransactionIndex(String transactionIndex) {
         this.transactionIndex = transactionIndex;
+        transactionIndexValue = null;
+        transactionIndexLong = -1;
     }
 
     public String getBlockHash() {
@@ -124,7 +149,20 @@ public class TransactionReceipt {
     }
 
     public BigInteger getBlockNumber() {
-        return NumericUtil.decodeQuantity(blockNumber);
+        if (blockNumberValue == null) {
+            blockNumberValue = NumericUtil.decodeQuantity(blockNumber);
+        }
+        return blockNumberValue;
+    }
+
+    /**
+     * Returns the block number as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getBlockNumberAsLong() {
+        if (blockNumberLong < 0 && blockNumber != null) {
+            blockNumberLong = NumericUtil.decodeQuantityAsLong(blockNumber);
+        }
+        return blockNumberLong;
     }
 
     public String getBlockNumberRaw() {
@@ -133,10 +171,25 @@ public class TransactionReceipt {
 
     public void setBlockNumber(String blockNumber) {
         this.blockNumber = blockNumber;
+        blockNumberValue = null;
+        blockNumberLong = -1;
     }
 
     public BigInteger getCumulativeGasUsed() {
-        return NumericUtil.decodeQuantity(cumulativeGasUsed);
+        if (cumulativeGasUsedValue == null) {
+            cumulativeGasUsedValue = NumericUtil.decodeQuantity(cumulativeGasUsed);
+        }
+        return cumulativeGasUsedValue;
+    }
+
+    /**
+     * Returns the cumulative gas used as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getCumulativeGasUsedAsLong() {
+        if (cumulativeGasUsedLong < 0 && cumulativeGasUsed != null) {
+            cumulativeGasUsedLong = NumericUtil.decodeQuantityAsLong(cumulativeGasUsed);
+        }
+        return cumulativeGasUsedLong;
     }
 
     public String getCumulativeGasUsedRaw() {
@@ -145,10 +198,25 @@ public class TransactionReceipt {
 
     public void setCumulativeGasUsed(String cumulativeGasUsed) {
         this.cumulativeGasUsed = cumulativeGasUsed;
+        cumulativeGasUsedValue = null;
+        cumulativeGasUsedLong = -1;
     }
 
     public BigInteger getGasUsed() {
-        return NumericUtil.decodeQuantity(gasUsed);
+        if (gasUsedValue == null) {
+            gasUsedValue = NumericUtil.decodeQuantity(gasUsed);
+        }
+        return gasUsedValue;
+    }
+
+    /**
+     * Returns the gas used as long without allocating a {@link BigInteger}, or -1 if absent
+     */
+    public long getGasUsedAsLong() {
+        if (gasUsedLong < 0 && gasUsed != null) {
+            gasUsedLong = NumericUtil.decodeQuantityAsLong(gasUsed);
+        }
+        return gasUsedLong;
     }
 
     public String getGasUsedRaw() {
@@ -157,6 +225,8 @@ public class TransactionReceipt {
 
     public void setGasUsed(String gasUsed) {
         this.gasUsed = gasUsed;
+        gasUsedValue = null;
+        gasUsedLong = -1;
     }
 
     public String getContractAddress() {
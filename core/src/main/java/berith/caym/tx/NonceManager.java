@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.tx;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Berith;
+import berith.caym.protocol.response.BerithSendTransaction;
+import berith.caym.protocol.response.Quantity;
+
+/**
+ * Hands out transaction nonces per sender address without a berith_getTransactionCount call per
+ * transaction.
+ *
+ * <p>The pending nonce of an address is fetched on first use, after that nonces are reserved from
+ * a local counter with a compare-and-set. When a node rejects a transaction because its nonce is
+ * too low or too high the counter is dropped, and the next reservation fetches the pending nonce
+ * again.
+ */
+public class NonceManager {
+
+    private static final long UNSYNCED = -1L;
+
+    private final Berith berith;
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public NonceManager(Berith berith) {
+        this.berith = Objects.requireNonNull(berith, "berith");
+    }
+
+    /**
+     * Reserves the next nonce of the address
+     *
+     * @throws IOException if the pending nonce could not be fetched
+     */
+    public BigInteger reserve(String address) throws IOException {
+        return BigInteger.valueOf(reserveAsLong(address));
+    }
+
+    /**
+     * Reserves the next nonce of the address
+     *
+     * @throws IOException if the pending nonce could not be fetched
+     */
+    public long reserveAsLong(String address) throws IOException {
+        final Counter counter = counters.computeIfAbsent(key(address), k -> new Counter());
+
+        while (true) {
+            final long current = counter.next.get();
+            if (current == UNSYNCED) {
+                counter.sync(address);
+            } else if (counter.next.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Forgets the local counter of the address, the next reservation fetches the pending nonce again
+     */
+    public void resync(String address) {
+        final Counter counter = counters.get(key(address));
+        if (counter != null) {
+            counter.next.set(UNSYNCED);
+        }
+    }
+
+    /**
+     * Sends a signed raw transaction of the address with berith_sendRawTransaction and resyncs the
+     * address if the node rejects the nonce
+     */
+    public BerithSendTransaction sendRawTransaction(String address, String rawTransaction) throws IOException {
+        final BerithSendTransaction response = berith.berithSendRawTransaction(rawTransaction).send();
+        onResponse(address, response);
+        return response;
+    }
+
+    /**
+     * Inspects the response of a transaction sent by the address, and resyncs the address if the
+     * node rejected the nonce
+     *
+     * @return true if the address was resynced
+     */
+    public boolean onResponse(String address, Response<?> response) {
+        if (response.hasError() && isNonceError(response.getError().getMessage())) {
+            resync(address);
+            return true;
+        }
+        return false;
+    }
+
+    static boolean isNonceError(String message) {
+        if (message == null) {
+            return false;
+        }
+        final String lowerCase = message.toLowerCase(Locale.ROOT);
+        return lowerCase.contains("nonce too low") || lowerCase.contains("nonce too high");
+    }
+
+    private static String key(String address) {
+        final String key = Objects.requireNonNull(address, "address").toLowerCase(Locale.ROOT);
+        // the same account may be given with the 0x or the Bx prefix
+        return key.startsWith("0x") ? "bx" + key.substring(2) : key;
+    }
+
+    private final class Counter {
+
+        private final AtomicLong next = new AtomicLong(UNSYNCED);
+
+        /**
+         * Fetches the pending nonce unless another thread already did
+         */
+        private synchronized void sync(String address) throws IOException {
+            if (next.get() != UNSYNCED) {
+                return;
+            }
+
+            final Quantity quantity = berith.berithGetTransactionCount(address, DefaultBlockParameterName.PENDING)
+                                            .send();
+            if (quantity.hasError()) {
+                throw new IOException("Invalid response for transaction count of " + address + ": "
+                                      + quantity.getError().getMessage());
+            }
+            next.set(quantity.getValue().longValueExact());
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.tx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+
+import berith.caym.Caym;
+import berith.caym.block.ChainHeadTracker;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithGetTransactionReceipt;
+import berith.caym.protocol.response.TransactionReceipt;
+
+/**
+ * Waits for the receipts of many transactions with one batch of berith_getTransactionReceipt
+ * requests per new block, instead of a polling loop per transaction.
+ *
+ * <p>New blocks are reported by a {@link ChainHeadTracker} this tracker listens to, or with
+ * {@link #onBlock(long)}. A transaction is looked up on every block until it is mined, and once
+ * more when its block has the required number of confirmations. Receipts of blocks removed by a
+ * reorg are forgotten. The future of a transaction completes with its receipt once confirmed, or
+ * with a {@link TimeoutException} on the first block after its deadline, or on {@link #expire()}.
+ * Given a {@link ScheduledExecutorService}, each transaction also expires at its deadline when no
+ * block arrives, e.g. while the node stalls.
+ *
+ * <p>Lookups are sent asynchronously and at most one poll is in flight, blocks arriving meanwhile
+ * are merged into the next poll.
+ */
+public class ReceiptTracker implements ChainHeadTracker.Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptTracker.class);
+
+    public static final int DEFAULT_CONFIRMATIONS = 1;
+    public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private final Caym caym;
+    private final int confirmations;
+    private final long timeoutNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong latestBlock = new AtomicLong(-1L);
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    public ReceiptTracker(Caym caym) {
+        this(caym, DEFAULT_CONFIRMATIONS, DEFAULT_TIMEOUT_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param confirmations number of blocks including the block of the transaction, 1 completes on the first receipt
+     * @param timeoutMillis how long a transaction may take to be confirmed
+     * @param maxBatchSize  max requests per batch, larger polls are split into several batches
+     */
+    public ReceiptTracker(Caym caym, int confirmations, long timeoutMillis, int maxBatchSize) {
+        this(caym, confirmations, timeoutMillis, maxBatchSize, null);
+    }
+
+    /**
+     * @param confirmations            number of blocks including the block of the transaction, 1 completes on the
+     *                                 first receipt
+     * @param timeoutMillis            how long a transaction may take to be confirmed
+     * @param maxBatchSize             max requests per batch, larger polls are split into several batches
+     * @param scheduledExecutorService expires each transaction at its deadline, or null to expire only on new
+     *                                 blocks and {@link #expire()}
+     */
+    public ReceiptTracker(Caym caym, int confirmations, long timeoutMillis, int maxBatchSize,
+                          ScheduledExecutorService scheduledExecutorService) {
+        if (confirmations < 1) {
+            throw new IllegalArgumentException("confirmations must be positive");
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+
+        this.caym = Objects.requireNonNull(caym, "caym");
+        this.confirmations = confirmations;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.scheduledExecutorService = scheduledExecutorService;
+    }
+
+    /**
+     * Returns a future which completes with the receipt of the transaction once it is confirmed.
+     * Tracking the same hash twice returns the same future, cancelling it stops tracking.
+     */
+    public CompletableFuture<TransactionReceipt> track(String transactionHash) {
+        return entries.computeIfAbsent(key(transactionHash), key -> {
+            final Entry entry = new Entry(transactionHash, System.nanoTime() + timeoutNanos);
+            final ScheduledFuture<?> timer = scheduledExecutorService != null
+                ? scheduledExecutorService.schedule(() -> expire(entry), timeoutNanos, TimeUnit.NANOSECONDS)
+                : null;
+            entry.future.whenComplete((receipt, throwable) -> {
+                entries.remove(key, entry);
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            });
+            return entry;
+        }).future;
+    }
+
+    @Override
+    public void onBlockAdded(Block block) {
+        onBlock(block.getNumberAsLong());
+    }
+
+    @Override
+    public void onBlockRemoved(Block block) {
+        for (Entry entry : entries.values()) {
+            final TransactionReceipt receipt = entry.receipt;
+            if (receipt != null && block.getHash().equalsIgnoreCase(receipt.getBlockHash())) {
+                entry.receipt = null;
+            }
+        }
+    }
+
+    /**
+     * Looks up the receipts of the tracked transactions which are due at the new block
+     */
+    public void onBlock(long blockNumber) {
+        latestBlock.accumulateAndGet(blockNumber, Math::max);
+        if (polling.compareAndSet(false, true)) {
+            poll(latestBlock.get());
+        }
+    }
+
+    /**
+     * Completes the futures of transactions past their deadline
+     *
+     * @return the number of expired transactions
+     */
+    public int expire() {
+        final long now = System.nanoTime();
+        int expired = 0;
+        for (Entry entry : entries.values()) {
+            if (now - entry.deadline >= 0L && expire(entry)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the number of tracked transactions which are not confirmed yet
+     */
+    public int getPendingCount() {
+        return entries.size();
+    }
+
+    public int getConfirmations() {
+        return confirmations;
+    }
+
+    private void poll(long head) {
+        expire();
+
+        final List<Entry> due = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            final TransactionReceipt receipt = entry.receipt;
+            if (receipt == null || isConfirmed(receipt, head)) {
+                due.add(entry);
+            }
+        }
+
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            sendBatches(due, head, futures);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to look up transaction receipts at block {}", head, e);
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, throwable) -> {
+            polling.set(false);
+            // blocks which arrived during the poll
+            if (latestBlock.get() > head && polling.compareAndSet(false, true)) {
+                poll(latestBlock.get());
+            }
+        });
+    }
+
+    private void sendBatches(List<Entry> due, long head, List<CompletableFuture<Void>> futures) {
+        for (int from = 0; from < due.size(); from += maxBatchSize) {
+            final List<Entry> chunk = due.subList(from, Math.min(from + maxBatchSize, due.size()));
+            final BatchRequest batch = caym.newBatch();
+            for (Entry entry : chunk) {
+                batch.add(caym.berith().berithGetTransactionReceipt(entry.transactionHash));
+            }
+            futures.add(batch.sendAsync().handle((batchResponse, throwable) -> {
+                if (throwable != null) {
+                    logger.warn("Failed to look up {} transaction receipts at block {}", chunk.size(), head, throwable);
+                } else {
+                    process(chunk, batchResponse, head);
+                }
+                return null;
+            }));
+        }
+    }
+
+    private void process(List<Entry> chunk, BatchResponse batchResponse, long head) {
+        if (batchResponse.getResponses().size() != chunk.size()) {
+            logger.warn("Expected {} receipts but received {}", chunk.size(), batchResponse.getResponses().size());
+            return;
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            final Entry entry = chunk.get(i);
+            final BerithGetTransactionReceipt response =
+                (BerithGetTransactionReceipt) batchResponse.getResponses().get(i);
+            if (response.hasError()) {
+                logger.debug("Invalid response for receipt of {}: {}", entry.transactionHash,
+                             response.getError().getMessage());
+                continue;
+            }
+
+            final TransactionReceipt receipt = response.getTransactionReceipt().orElse(null);
+            if (receipt != null && receipt.getBlockNumberRaw() != null && isConfirmed(receipt, head)) {
+                entry.future.complete(receipt);
+            } else {
+                entry.receipt = receipt != null && receipt.getBlockNumberRaw() != null ? receipt : null;
+            }
+        }
+    }
+
+    private static boolean expire(Entry entry) {
+        return entry.future.completeExceptionally(new TimeoutException(
+            "Transaction receipt not confirmed in time: " + entry.transactionHash));
+    }
+
+    private boolean isConfirmed(TransactionReceipt receipt, long head) {
+        return head - receipt.getBlockNumberAsLong() + 1 >= confirmations;
+    }
+
+    private static String key(String transactionHash) {
+        return Objects.requireNonNull(transactionHash, "transactionHash").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+
+        private final String transactionHash;
+        private final long deadline;
+        private final CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+        // last receipt seen, not confirmed yet
+        private volatile TransactionReceipt receipt;
+
+        private Entry(String transactionHash, long deadline) {
+            this.transactionHash = transactionHash;
+            this.deadline = deadline;
+        }
+    }
+}
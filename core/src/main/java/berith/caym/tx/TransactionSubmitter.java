@@ -0,0 +1,405 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.tx;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+
+import berith.caym.Caym;
+import berith.caym.crypto.BulkSigner;
+import berith.caym.crypto.RawTransaction;
+import berith.caym.crypto.Signer;
+import berith.caym.protocol.response.BerithSendTransaction;
+
+/**
+ * Signs and sends transactions of one key pair in JSON-RPC batches of berith_sendRawTransaction.
+ *
+ * <p>Submitted transactions wait in a bounded queue, {@link #submit(RawTransaction)} blocks while
+ * it is full. A sender thread drains up to {@code maxBatchSize} of them, signs them with a
+ * {@link BulkSigner} on the signing pool and sends the batch asynchronously, with at most
+ * {@code maxInFlight} batches outstanding. The future of each transaction completes with its
+ * response, which may hold an error, or exceptionally if the batch could not be sent.
+ *
+ * <p>When the node answers that its transaction pool is full, the transaction is sent again in a
+ * later batch and the sender pauses, twice as long on every further push back. The queue fills
+ * meanwhile and slows down the submitters. Pushed back transactions are sent again in nonce order,
+ * but after higher nonces of batches which were in flight at the same time. Nonces are taken from
+ * the transactions as they are, see {@link NonceManager}.
+ *
+ * <p>After {@link #close()} submitted and pushed back transactions fail with an {@link IOException}.
+ */
+public class TransactionSubmitter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionSubmitter.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final long DEFAULT_BACKOFF_MILLIS = 100L;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final Caym caym;
+    private final ECKeyPair keyPair;
+    private final BulkSigner bulkSigner;
+    private final int maxBatchSize;
+    private final BlockingQueue<Submission> queue;
+    // signed transactions pushed back by the node, sent before the queue in nonce order
+    private final Queue<Submission> retries = new PriorityBlockingQueue<>(
+        11, Comparator.comparing(submission -> submission.rawTransaction.getNonce()));
+    private final Semaphore inFlight;
+    private final AtomicLong resumeAt = new AtomicLong(System.nanoTime());
+    private final AtomicLong backoffMillis = new AtomicLong(DEFAULT_BACKOFF_MILLIS);
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder pushedBack = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private volatile boolean running;
+    private volatile boolean closed;
+    private Thread sender;
+
+    public TransactionSubmitter(Caym caym, ECKeyPair keyPair) {
+        this(caym, keyPair, Signer.BERITH_CHAIN_ID, ForkJoinPool.commonPool(), DEFAULT_QUEUE_CAPACITY,
+             DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public TransactionSubmitter(Caym caym, ECKeyPair keyPair, long chainId, ForkJoinPool signingPool,
+                                int queueCapacity, int maxBatchSize, int maxInFlight) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+
+        this.caym = Objects.requireNonNull(caym, "caym");
+        this.keyPair = Objects.requireNonNull(keyPair, "keyPair");
+        this.bulkSigner = new BulkSigner(chainId, signingPool);
+        this.maxBatchSize = maxBatchSize;
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Starts the sender thread
+     */
+    public synchronized void start() {
+        if (sender != null) {
+            throw new IllegalStateException("TransactionSubmitter is already running");
+        }
+
+        running = true;
+        sender = new Thread(this::run, "caym-transaction-submitter");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Queues an unsigned transaction, waiting while the queue is full
+     *
+     * @return the future of the node's response
+     */
+    public CompletableFuture<BerithSendTransaction> submit(RawTransaction rawTransaction) throws InterruptedException {
+        final Submission submission = new Submission(Objects.requireNonNull(rawTransaction, "rawTransaction"));
+        if (closed) {
+            submission.future.completeExceptionally(closedException());
+            return submission.future;
+        }
+        queue.put(submission);
+        submitted.increment();
+        failIfClosed(queue, submission);
+        return submission.future;
+    }
+
+    /**
+     * Queues an unsigned transaction without waiting, the future fails with a
+     * {@link RejectedExecutionException} if the queue is full
+     */
+    public CompletableFuture<BerithSendTransaction> trySubmit(RawTransaction rawTransaction) {
+        final Submission submission = new Submission(Objects.requireNonNull(rawTransaction, "rawTransaction"));
+        if (closed) {
+            submission.future.completeExceptionally(closedException());
+        } else if (!queue.offer(submission)) {
+            submission.future.completeExceptionally(new RejectedExecutionException("Transaction queue is full"));
+        } else {
+            submitted.increment();
+            failIfClosed(queue, submission);
+        }
+        return submission.future;
+    }
+
+    /**
+     * Stops the sender thread, transactions which were not sent yet fail with an {@link IOException}
+     */
+    @Override
+    public void close() {
+        final Thread thread;
+        synchronized (this) {
+            closed = true;
+            running = false;
+            thread = sender;
+            sender = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        final IOException exception = closedException();
+        Submission submission;
+        while ((submission = retries.poll()) != null || (submission = queue.poll()) != null) {
+            submission.future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Returns the number of transactions waiting to be sent
+     */
+    public int getQueueDepth() {
+        return queue.size() + retries.size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Returns the number of transactions the node accepted
+     */
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * Returns the number of transactions the node answered with an error other than a full pool
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of transactions which could not be signed or sent
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns how often a transaction was pushed back because the node's pool was full
+     */
+    public long getPushedBackCount() {
+        return pushedBack.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                final long pause = resumeAt.get() - System.nanoTime();
+                if (pause > 0L) {
+                    TimeUnit.NANOSECONDS.sleep(pause);
+                }
+
+                inFlight.acquire();
+                final List<Submission> batch = nextBatch();
+                if (batch.isEmpty()) {
+                    inFlight.release();
+                    continue;
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                // the sender must not terminate, failures are reported to the futures in send
+                logger.error("Error sending transactions", e);
+            }
+        }
+    }
+
+    private List<Submission> nextBatch() throws InterruptedException {
+        final List<Submission> batch = new ArrayList<>(maxBatchSize);
+        Submission submission;
+        while (batch.size() < maxBatchSize && (submission = retries.poll()) != null) {
+            batch.add(submission);
+        }
+        if (batch.isEmpty()) {
+            submission = queue.poll(100L, TimeUnit.MILLISECONDS);
+            if (submission == null) {
+                return batch;
+            }
+            batch.add(submission);
+        }
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        return batch;
+    }
+
+    private void send(List<Submission> submissions) {
+        final List<Submission> unsigned = new ArrayList<>(submissions.size());
+        for (Submission submission : submissions) {
+            if (submission.signedTransaction == null) {
+                unsigned.add(submission);
+            }
+        }
+
+        if (!unsigned.isEmpty()) {
+            final List<RawTransaction> rawTransactions = new ArrayList<>(unsigned.size());
+            for (Submission submission : unsigned) {
+                rawTransactions.add(submission.rawTransaction);
+            }
+            try {
+                final List<String> signed = bulkSigner.sign(rawTransactions, keyPair);
+                for (int i = 0; i < unsigned.size(); i++) {
+                    unsigned.get(i).signedTransaction = signed.get(i);
+                }
+            } catch (RuntimeException e) {
+                inFlight.release();
+                fail(submissions, e);
+                return;
+            }
+        }
+
+        final CompletableFuture<BatchResponse> future;
+        try {
+            final BatchRequest batch = caym.newBatch();
+            for (Submission submission : submissions) {
+                batch.add(caym.berith().berithSendRawTransaction(submission.signedTransaction));
+            }
+            future = batch.sendAsync();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            fail(submissions, e);
+            return;
+        }
+        batches.increment();
+        future.whenComplete((batchResponse, throwable) -> {
+            inFlight.release();
+            if (throwable != null) {
+                fail(submissions, throwable instanceof CompletionException && throwable.getCause() != null
+                                  ? throwable.getCause() : throwable);
+            } else {
+                complete(submissions, batchResponse);
+            }
+        });
+    }
+
+    private void complete(List<Submission> submissions, BatchResponse batchResponse) {
+        if (batchResponse.getResponses().size() != submissions.size()) {
+            fail(submissions, new IOException("Expected " + submissions.size() + " responses but received "
+                                              + batchResponse.getResponses().size()));
+            return;
+        }
+
+        boolean full = false;
+        for (int i = 0; i < submissions.size(); i++) {
+            final Submission submission = submissions.get(i);
+            final BerithSendTransaction response = (BerithSendTransaction) batchResponse.getResponses().get(i);
+            if (response.hasError() && isPoolFull(response.getError().getMessage())) {
+                pushedBack.increment();
+                retries.add(submission);
+                failIfClosed(retries, submission);
+                full = true;
+            } else {
+                (response.hasError() ? rejected : accepted).increment();
+                submission.future.complete(response);
+            }
+        }
+
+        if (full) {
+            final long backoff = backoffMillis.getAndUpdate(value -> Math.min(value * 2, DEFAULT_MAX_BACKOFF_MILLIS));
+            resumeAt.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff));
+            logger.debug("Transaction pool is full, pausing for {} ms", backoff);
+        } else {
+            backoffMillis.set(DEFAULT_BACKOFF_MILLIS);
+        }
+    }
+
+    private void fail(List<Submission> submissions, Throwable throwable) {
+        for (Submission submission : submissions) {
+            failed.increment();
+            submission.future.completeExceptionally(throwable);
+        }
+    }
+
+    /**
+     * Fails a submission which was queued while close drained the queues
+     */
+    private void failIfClosed(Queue<Submission> pending, Submission submission) {
+        if (closed && pending.remove(submission)) {
+            submission.future.completeExceptionally(closedException());
+        }
+    }
+
+    private static IOException closedException() {
+        return new IOException("TransactionSubmitter is closed");
+    }
+
+    static boolean isPoolFull(String message) {
+        if (message == null) {
+            return false;
+        }
+        final String lowerCase = message.toLowerCase(Locale.ROOT);
+        return lowerCase.contains("txpool is full") || lowerCase.contains("transaction pool is full");
+    }
+
+    private static final class Submission {
+
+        private final RawTransaction rawTransaction;
+        private final CompletableFuture<BerithSendTransaction> future = new CompletableFuture<>();
+        // set by the sender thread before the first send
+        private volatile String signedTransaction;
+
+        private Submission(RawTransaction rawTransaction) {
+            this.rawTransaction = rawTransaction;
+        }
+    }
+}
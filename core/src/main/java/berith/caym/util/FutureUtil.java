@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.util;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers for blocking on {@link CompletableFuture}s with the exception contract of
+ * {@link org.web3j.protocol.core.Request#send()}.
+ */
+public final class FutureUtil {
+
+    /**
+     * Waits for the future and rethrows its failure as {@link IOException} or {@link RuntimeException}
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for response", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = unwrap(e.getCause());
+            rethrowUnchecked(cause);
+            throw toIOException(cause);
+        }
+    }
+
+    /**
+     * Returns the cause of {@link CompletionException}s and {@link ExecutionException}s wrapping the throwable
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+               && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Throws the unwrapped throwable if it is a {@link RuntimeException} or an {@link Error}, returns otherwise
+     */
+    public static void rethrowUnchecked(Throwable throwable) {
+        final Throwable cause = unwrap(throwable);
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Returns the unwrapped throwable if it is an {@link IOException}, or an {@link IOException} caused by it
+     */
+    public static IOException toIOException(Throwable throwable) {
+        final Throwable cause = unwrap(throwable);
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException("Error sending request", cause);
+    }
+
+    private FutureUtil() {}
+}
@@ -38,6 +38,21 @@ public final class NumericUtil {
     private static final String HEX_PREFIX = "0x";
     private static final String ADDRESS_PREFIX = "Bx";
 
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    /** nibble value of an ascii hex character, -1 if the character is not a hex digit */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
     public static String encodeQuantity(BigInteger value) {
         if (value.signum() != -1) {
             return HEX_PREFIX + value.toString(16);
@@ -57,6 +72,25 @@ public final class NumericUtil {
         }
     }
 
+    /**
+     * Decodes a quantity which fits in 63 bits without allocating a {@link BigInteger}
+     */
+    public static long decodeQuantityAsLong(String value) {
+        if (!isValidHexQuantity(value)) {
+            throw new MessageDecodingException("Value must be in format 0x[1-9]+[0-9]* or 0x0");
+        }
+
+        long result = 0;
+        for (int i = 2; i < value.length(); i++) {
+            final int digit = hexValue(value, i);
+            if ((result >>> 59) != 0) {
+                throw new MessageDecodingException("Value does not fit in a long: " + value);
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
     private static boolean isValidHexQuantity(String value) {
         if (value == null) {
             return false;
@@ -216,50 +250,109 @@ public final class NumericUtil {
     }
 
     public static byte[] hexStringToByteArray(String input) {
-        String cleanInput = cleanHexPrefix(input);
+        final int offset = containsHexPrefix(input) ? HEX_PREFIX.length() : 0;
+        return hexStringToByteArray(input, offset, input.length() - offset);
+    }
+
+    /**
+     * Decodes {@code length} hex characters of the input starting at {@code offset}.
+     * The characters must not contain a prefix, an odd length is padded with a leading zero.
+     */
+    public static byte[] hexStringToByteArray(CharSequence input, int offset, int length) {
+        final byte[] data = new byte[(length + 1) / 2];
+        decodeHex(input, offset, length, data, 0);
+        return data;
+    }
 
-        int len = cleanInput.length();
+    /**
+     * Decodes {@code length} hex characters of the input into {@code out} starting at
+     * {@code outOffset}. The characters must not contain a prefix, an odd length is padded with a
+     * leading zero.
+     *
+     * @return the number of bytes written
+     */
+    public static int decodeHex(CharSequence input, int offset, int length, byte[] out, int outOffset) {
+        int in = offset;
+        int pos = outOffset;
+
+        if ((length & 1) != 0) {
+            out[pos++] = (byte) hexValue(input, in++);
+        }
 
-        if (len == 0) {
-            return new byte[] {};
+        final int end = offset + length;
+        while (in < end) {
+            final char high = input.charAt(in);
+            final char low = input.charAt(in + 1);
+            // an invalid nibble is -1 and turns the whole value negative
+            final int value = (high | low) < HEX_VALUES.length ? (HEX_VALUES[high] << 4) | HEX_VALUES[low] : -1;
+            if (value < 0) {
+                // throws with the offending character
+                hexValue(input, in);
+                hexValue(input, in + 1);
+            }
+            out[pos++] = (byte) value;
+            in += 2;
         }
+        return pos - outOffset;
+    }
 
-        byte[] data;
-        int startIdx;
-        if (len % 2 != 0) {
-            data = new byte[(len / 2) + 1];
-            data[0] = (byte) Character.digit(cleanInput.charAt(0), 16);
-            startIdx = 1;
-        } else {
-            data = new byte[len / 2];
-            startIdx = 0;
+    /**
+     * Decodes at most 16 hex characters of the input starting at {@code offset} as an unsigned
+     * long. The characters must not contain a prefix.
+     */
+    public static long decodeHexAsLong(CharSequence input, int offset, int length) {
+        if (length > 16) {
+            throw new IllegalArgumentException("Hex value does not fit in a long: " + length + " characters");
         }
+        long value = 0L;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 4) | hexValue(input, i);
+        }
+        return value;
+    }
 
-        for (int i = startIdx; i < len; i += 2) {
-            data[(i + 1) / 2] =
-                    (byte)
-                            ((Character.digit(cleanInput.charAt(i), 16) << 4)
-                             + Character.digit(cleanInput.charAt(i + 1), 16));
+    /**
+     * Encodes {@code length} bytes of the input starting at {@code offset} as lower case hex
+     * characters into {@code out} starting at {@code outOffset}.
+     *
+     * @return the number of characters written
+     */
+    public static int encodeHex(byte[] input, int offset, int length, char[] out, int outOffset) {
+        int pos = outOffset;
+        for (int i = offset; i < offset + length; i++) {
+            final int value = input[i] & 0xFF;
+            out[pos++] = HEX_CHARS[value >>> 4];
+            out[pos++] = HEX_CHARS[value & 0x0F];
         }
-        return data;
+        return pos - outOffset;
     }
 
     public static String toHexString(byte[] input, int offset, int length, boolean withPrefix) {
-        StringBuilder stringBuilder = new StringBuilder();
+        final int prefixLength = withPrefix ? HEX_PREFIX.length() : 0;
+        final char[] chars = new char[prefixLength + length * 2];
+
         if (withPrefix) {
-            stringBuilder.append("0x");
-        }
-        for (int i = offset; i < offset + length; i++) {
-            stringBuilder.append(String.format("%02x", input[i] & 0xFF));
+            chars[0] = '0';
+            chars[1] = 'x';
         }
+        encodeHex(input, offset, length, chars, prefixLength);
 
-        return stringBuilder.toString();
+        return new String(chars);
     }
 
     public static String toHexString(byte[] input) {
         return toHexString(input, 0, input.length, true);
     }
 
+    private static int hexValue(CharSequence input, int index) {
+        final char c = input.charAt(index);
+        final int value = c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+        if (value < 0) {
+            throw new MessageDecodingException("Invalid hex character '" + c + "' at index " + index);
+        }
+        return value;
+    }
+
     public static byte asByte(int m, int n) {
         return (byte) ((m << 4) | n);
     }
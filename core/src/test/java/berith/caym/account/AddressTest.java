@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.account;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import berith.caym.util.NumericUtil;
+
+public class AddressTest {
+
+    private static final String ADDRESS = "Bx8b1d2e0c6b7f5c4a3e2d1f0a9b8c7d6e5f4a3b2c";
+
+    @Test
+    public void testParseAndFormat() {
+        Address address = Address.of(ADDRESS);
+
+        assertThat(address.toString()).isEqualTo(ADDRESS);
+        assertThat(address.toHexStringNoPrefix()).isEqualTo(ADDRESS.substring(2));
+        assertThat(Address.of("0x8B1D2E0C6B7F5C4A3E2D1F0A9B8C7D6E5F4A3B2C")).isEqualTo(address);
+        assertThat(Address.of(ADDRESS.substring(2))).isEqualTo(address);
+        assertThat(Address.of(address.toBytes(), 0)).isEqualTo(address);
+        assertThat(address.toBytes()).isEqualTo(NumericUtil.hexStringToByteArray(ADDRESS.substring(2)));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertThat(Address.parse("Bx8b1d")).isNull();
+        assertThat(Address.parse("Ax8b1d2e0c6b7f5c4a3e2d1f0a9b8c7d6e5f4a3b2c")).isNull();
+        assertThat(Address.parse("Bx8b1d2e0c6b7f5c4a3e2d1f0a9b8c7d6e5f4a3b2g")).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfInvalid() {
+        Address.of("");
+    }
+
+    @Test
+    public void testMapKeyAndOrder() {
+        Address low = Address.of("Bx0000000000000000000000000000000000000001");
+        Address high = Address.of("Bxff00000000000000000000000000000000000000");
+        Map<Address, Integer> map = new HashMap<>();
+        map.put(low, 1);
+        map.put(high, 2);
+
+        assertThat(map.get(Address.of("0x0000000000000000000000000000000000000001"))).isEqualTo(1);
+        assertThat(low.compareTo(high)).isNegative();
+        assertThat(high.compareTo(Address.of(high.toString()))).isZero();
+    }
+
+    @Test
+    public void testPool() {
+        AddressPool pool = new AddressPool();
+
+        String first = pool.internString(new String(ADDRESS));
+        assertThat(pool.internString(new String(ADDRESS))).isSameAs(first);
+        assertThat(pool.intern(ADDRESS.toUpperCase().replace("BX", "0x"))).isSameAs(pool.intern(Address.of(ADDRESS)));
+        // another spelling is equal but not replaced
+        String upperCase = "Bx" + ADDRESS.substring(2).toUpperCase();
+        assertThat(pool.internString(upperCase)).isSameAs(upperCase);
+        assertThat(pool.internString("0x")).isEqualTo("0x");
+        assertThat(pool.size()).isEqualTo(1);
+    }
+}
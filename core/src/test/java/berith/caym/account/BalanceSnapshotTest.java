@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.account;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.account.BalanceSnapshot.AccountBalance;
+import berith.caym.protocol.response.Quantity;
+
+public class BalanceSnapshotTest {
+
+    private static final BigInteger LARGE = new BigInteger("1000000000000000000000000000");
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    private Web3jService web3jService;
+    private Caym caym;
+
+    @Before
+    public void setUp() {
+        web3jService = mock(Web3jService.class);
+        caym = Caym.build(web3jService);
+
+        // address "BxN" has a main balance of N and a stake of LARGE, "Bxbad" has an invalid stake
+        when(web3jService.sendBatchAsync(any(BatchRequest.class))).thenAnswer(invocation -> {
+            BatchRequest batch = (BatchRequest) invocation.getArguments()[0];
+            batchSizes.add(batch.getRequests().size());
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ?> request : batch.getRequests()) {
+                String address = (String) request.getParams().get(0);
+                Quantity quantity = new Quantity();
+                if (request.getMethod().equals("berith_getBalance")) {
+                    quantity.setResult("0x" + address.substring(2));
+                } else if (address.equals("Bxbad")) {
+                    quantity.setError(new Response.Error(-32000, "missing trie node"));
+                } else {
+                    quantity.setResult("0x" + LARGE.toString(16));
+                }
+                responses.add(quantity);
+            }
+            return CompletableFuture.completedFuture(new BatchResponse(batch.getRequests(), responses));
+        });
+    }
+
+    @Test
+    public void testTakeInOrder() throws Exception {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            addresses.add("Bx" + i);
+        }
+        List<AccountBalance> balances = new ArrayList<>();
+
+        long count = new BalanceSnapshot(caym, 3, 2)
+            .take(addresses.iterator(), new DefaultBlockParameterNumber(100L), balances::add);
+
+        assertThat(count).isEqualTo(10L);
+        assertThat(batchSizes).containsExactly(6, 6, 6, 2);
+        for (int i = 0; i < 10; i++) {
+            assertThat(balances.get(i).getAddress()).isEqualTo("Bx" + i);
+            assertThat(balances.get(i).getMainAsLong()).isEqualTo(i);
+            assertThat(balances.get(i).getStake()).isEqualTo(LARGE);
+        }
+    }
+
+    @Test
+    public void testInvalidBalance() {
+        List<String> addresses = new ArrayList<>();
+        addresses.add("Bx1");
+        addresses.add("Bxbad");
+
+        try {
+            new BalanceSnapshot(caym).take(addresses.iterator(), new DefaultBlockParameterNumber(100L), balance -> {
+            });
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("Invalid response for balance of Bxbad: missing trie node");
+        }
+    }
+
+    @Test
+    public void testDecode128Bits() throws Exception {
+        BigInteger max = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+        long[] out = new long[2];
+        Quantity quantity = new Quantity();
+
+        quantity.setResult("0x" + max.toString(16));
+        BalanceSnapshot.decode("Bx1", quantity, out);
+        AccountBalance balance = new AccountBalance("Bx1", out[0], out[1], 0L, 0L);
+        assertThat(balance.getMain()).isEqualTo(max);
+        assertThat(balance.getStake()).isEqualTo(BigInteger.ZERO);
+
+        quantity.setResult("0x" + max.add(BigInteger.ONE).toString(16));
+        try {
+            BalanceSnapshot.decode("Bx1", quantity, out);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).startsWith("Balance of Bx1 exceeds 128 bits");
+        }
+    }
+
+    @Test
+    public void testDecodeInvalidHex() {
+        Quantity quantity = new Quantity();
+        quantity.setResult("0x12g4");
+        try {
+            BalanceSnapshot.decode("Bx1", quantity, new long[2]);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("Invalid balance of Bx1: 0x12g4");
+        }
+    }
+
+    @Test
+    public void testDecodeEmptyQuantity() {
+        Quantity quantity = new Quantity();
+        quantity.setResult("0x");
+        try {
+            BalanceSnapshot.decode("Bx1", quantity, new long[2]);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("Invalid balance of Bx1: 0x");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.block;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.util.NumericUtil;
+
+public class BlockRangeFetcherTest {
+
+    private Web3jService web3jService;
+    private Caym caym;
+    private ExecutorService executorService;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxObservedInFlight = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        web3jService = mock(Web3jService.class);
+        caym = Caym.build(web3jService);
+        executorService = Executors.newFixedThreadPool(8);
+
+        // completes every block request after a random delay so responses arrive out of order
+        when(web3jService.sendAsync(any(Request.class), eq(BerithBlock.class))).thenAnswer(invocation -> {
+            Request<?, ?> request = (Request<?, ?>) invocation.getArguments()[0];
+            BigInteger height = ((DefaultBlockParameterNumber) request.getParams().get(0)).getBlockNumber();
+            maxObservedInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextInt(5));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+
+                Block block = new Block();
+                block.setNumber(NumericUtil.encodeQuantity(height));
+                BerithBlock berithBlock = new BerithBlock();
+                berithBlock.setResult(block);
+                return berithBlock;
+            }, executorService);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testFetchInOrder() throws Exception {
+        List<BigInteger> heights = new ArrayList<>();
+
+        long fetched = caym.newBlockRangeFetcher(4, true)
+                           .fetch(10L, 49L, block -> heights.add(block.getNumber()));
+
+        assertThat(fetched).isEqualTo(40L);
+        assertThat(heights).hasSize(40);
+        for (int i = 0; i < heights.size(); i++) {
+            assertThat(heights.get(i)).isEqualTo(BigInteger.valueOf(10L + i));
+        }
+        assertThat(maxObservedInFlight.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    public void testFetchMissingBlock() throws Exception {
+        BerithBlock empty = new BerithBlock();
+        when(web3jService.sendAsync(any(Request.class), eq(BerithBlock.class)))
+                .thenReturn(CompletableFuture.completedFuture(empty));
+
+        try {
+            new BlockRangeFetcher(caym).fetch(0L, 3L, block -> fail("unexpected block"));
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("Block 0 not found");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.block;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.Request;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.util.NumericUtil;
+
+public class ChainHeadTrackerTest {
+
+    private final Map<String, Block> blocks = new HashMap<>();
+    private final List<String> events = new ArrayList<>();
+
+    private Web3jService web3jService;
+    private ChainHeadTracker tracker;
+
+    @Before
+    public void setUp() throws Exception {
+        web3jService = mock(Web3jService.class);
+        when(web3jService.send(any(Request.class), eq(BerithBlock.class))).thenAnswer(invocation -> {
+            Request<?, ?> request = (Request<?, ?>) invocation.getArguments()[0];
+            BerithBlock berithBlock = new BerithBlock();
+            berithBlock.setResult(blocks.get((String) request.getParams().get(0)));
+            return berithBlock;
+        });
+
+        tracker = new ChainHeadTracker(Caym.build(web3jService), 4, false);
+        tracker.addListener(new ChainHeadTracker.Listener() {
+            @Override
+            public void onBlockAdded(Block block) {
+                events.add("+" + block.getHash());
+            }
+
+            @Override
+            public void onBlockRemoved(Block block) {
+                events.add("-" + block.getHash());
+            }
+        });
+    }
+
+    @Test
+    public void testFollowChainAndFillGaps() {
+        block(1, "a1", "a0");
+        block(2, "a2", "a1");
+        block(3, "a3", "a2");
+        block(4, "a4", "a3");
+
+        tracker.onBlockHash("a1");
+        tracker.onBlockHash("a1");
+        tracker.onBlockHash("a4");
+
+        assertThat(events).containsExactly("+a1", "+a2", "+a3", "+a4");
+        assertThat(tracker.getHead().getHash()).isEqualTo("a4");
+        assertThat(tracker.getBlock(2L).getHash()).isEqualTo("a2");
+        assertThat(tracker.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void testReorg() {
+        block(1, "a1", "a0");
+        block(2, "a2", "a1");
+        block(3, "a3", "a2");
+        block(2, "b2", "a1");
+        block(3, "b3", "b2");
+        block(4, "b4", "b3");
+
+        tracker.onBlockHash("a1");
+        tracker.onBlockHash("a2");
+        tracker.onBlockHash("a3");
+        tracker.onBlockHash("b4");
+
+        assertThat(events).containsExactly("+a1", "+a2", "+a3", "-a3", "-a2", "+b2", "+b3", "+b4");
+        assertThat(tracker.getBlock(2L).getHash()).isEqualTo("b2");
+        assertThat(tracker.getBlock(1L).getHash()).isEqualTo("a1");
+    }
+
+    @Test
+    public void testReorgToShorterChain() {
+        block(1, "a1", "a0");
+        block(2, "a2", "a1");
+        block(3, "a3", "a2");
+        block(2, "b2", "a1");
+
+        tracker.onBlockHash("a1");
+        tracker.onBlockHash("a3");
+        tracker.onBlockHash("b2");
+
+        assertThat(events).containsExactly("+a1", "+a2", "+a3", "-a3", "-a2", "+b2");
+        assertThat(tracker.getHead().getHash()).isEqualTo("b2");
+        assertThat(tracker.getBlock(3L)).isNull();
+    }
+
+    @Test
+    public void testReorgDeeperThanRing() {
+        for (int i = 1; i <= 6; i++) {
+            block(i, "a" + i, "a" + (i - 1));
+            block(i, "b" + i, "b" + (i - 1));
+        }
+        tracker.onBlockHash("a1");
+        tracker.onBlockHash("a6");
+        events.clear();
+
+        tracker.onBlockHash("b6");
+
+        assertThat(events).containsExactly("-a6", "-a5", "-a4", "-a3", "+b3", "+b4", "+b5", "+b6");
+        assertThat(tracker.getBlock(3L).getHash()).isEqualTo("b3");
+    }
+
+    private void block(long number, String hash, String parentHash) {
+        Block block = new Block();
+        block.setNumber(NumericUtil.encodeQuantity(BigInteger.valueOf(number)));
+        block.setHash(hash);
+        block.setParentHash(parentHash);
+        blocks.put(hash, block);
+    }
+}
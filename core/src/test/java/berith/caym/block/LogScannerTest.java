@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.block;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.protocol.request.BerithFilterRequest;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithBlock.TransactionHash;
+import berith.caym.protocol.response.BerithBlock.TransactionResult;
+import berith.caym.protocol.response.BerithGetTransactionReceipt;
+import berith.caym.protocol.response.Log;
+import berith.caym.protocol.response.TransactionReceipt;
+import berith.caym.util.NumericUtil;
+
+public class LogScannerTest {
+
+    private static final String ADDRESS = "Bx8b1d2e0c6b7f5c4a3e2d1f0a9b8c7d6e5f4a3b2c";
+    private static final String OTHER_ADDRESS = "Bx0000000000000000000000000000000000000001";
+    private static final String TRANSFER =
+        "0xddf252ad1be2c89b69c2b068fc378daa952ba7f163c4a11628f55a4df523b3ef";
+    private static final String APPROVAL =
+        "0x8c5be1e5ebec7d5bd14f71427d1e84f3dd0314c0f7b2291e5b200ac8c7c3b925";
+
+    private Web3jService web3jService;
+    private Caym caym;
+
+    @Before
+    public void setUp() throws Exception {
+        web3jService = mock(Web3jService.class);
+        caym = Caym.build(web3jService);
+
+        // block 1 has a transfer log, block 2 only an approval log of the same address, block 3 no logs
+        when(web3jService.sendAsync(any(Request.class), eq(BerithBlock.class))).thenAnswer(invocation -> {
+            Request<?, ?> request = (Request<?, ?>) invocation.getArguments()[0];
+            long height = ((DefaultBlockParameterNumber) request.getParams().get(0)).getBlockNumber().longValue();
+
+            Block block = new Block();
+            block.setNumber(NumericUtil.encodeQuantity(BigInteger.valueOf(height)));
+            long[] bloom = new long[LogsBloom.WORDS];
+            if (height == 1L || height == 2L) {
+                LogsBloom.add(bloom, NumericUtil.hexStringToByteArray(ADDRESS.substring(2)));
+                LogsBloom.add(bloom, NumericUtil.hexStringToByteArray(height == 1L ? TRANSFER : APPROVAL));
+            }
+            block.setLogsBloom(LogsBloom.toHexString(bloom));
+            block.setTransactions(Collections.<TransactionResult>singletonList(new TransactionHash("0x0" + height)));
+
+            BerithBlock berithBlock = new BerithBlock();
+            berithBlock.setResult(block);
+            return CompletableFuture.completedFuture(berithBlock);
+        });
+
+        when(web3jService.sendBatch(any(BatchRequest.class))).thenAnswer(invocation -> {
+            BatchRequest batch = (BatchRequest) invocation.getArguments()[0];
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ?> request : batch.getRequests()) {
+                String hash = (String) request.getParams().get(0);
+                TransactionReceipt receipt = new TransactionReceipt();
+                receipt.setLogs(Arrays.asList(receiptLog(hash, OTHER_ADDRESS, TRANSFER),
+                                              receiptLog(hash, ADDRESS, TRANSFER)));
+                BerithGetTransactionReceipt response = new BerithGetTransactionReceipt();
+                response.setResult(receipt);
+                responses.add(response);
+            }
+            return new BatchResponse(batch.getRequests(), responses);
+        });
+    }
+
+    @Test
+    public void testScanFetchesReceiptsOfCandidateBlocksOnly() throws Exception {
+        BerithFilterRequest filterRequest = new BerithFilterRequest(null, null, Collections.singletonList(
+            "0x" + ADDRESS.substring(2).toUpperCase()));
+        filterRequest.addSingleTopic(TRANSFER);
+        List<Log> logs = new ArrayList<>();
+
+        long matched = caym.newLogScanner(2).scan(0L, 3L, filterRequest, logs::add);
+
+        assertThat(matched).isEqualTo(1L);
+        assertThat(logs).hasSize(1);
+        assertThat(logs.get(0).getTransactionHash()).isEqualTo("0x01");
+        assertThat(logs.get(0).getAddress()).isEqualTo(ADDRESS);
+        verify(web3jService, times(1)).sendBatch(any(BatchRequest.class));
+    }
+
+    @Test
+    public void testOptionalTopics() throws Exception {
+        BerithFilterRequest filterRequest = new BerithFilterRequest();
+        filterRequest.addOptionalTopics(APPROVAL, TRANSFER);
+
+        LogMatcher matcher = new LogMatcher(filterRequest);
+        long[] bloom = new long[LogsBloom.WORDS];
+
+        assertThat(matcher.mightMatch(bloom)).isFalse();
+        LogsBloom.add(bloom, NumericUtil.hexStringToByteArray(APPROVAL));
+        assertThat(matcher.mightMatch(LogsBloom.decode(LogsBloom.toHexString(bloom), new long[LogsBloom.WORDS])))
+            .isTrue();
+        assertThat(matcher.matches(log("0x01", OTHER_ADDRESS, TRANSFER))).isTrue();
+        assertThat(matcher.matches(log("0x01", OTHER_ADDRESS))).isFalse();
+    }
+
+    @Test
+    public void testWildcardTopic() {
+        BerithFilterRequest filterRequest = new BerithFilterRequest();
+        filterRequest.addNullTopic().addSingleTopic(TRANSFER);
+
+        LogMatcher matcher = new LogMatcher(filterRequest);
+
+        assertThat(matcher.matches(log("0x01", ADDRESS, APPROVAL, TRANSFER))).isTrue();
+        assertThat(matcher.matches(log("0x01", ADDRESS, TRANSFER, APPROVAL))).isFalse();
+        assertThat(matcher.matches(log("0x01", ADDRESS, TRANSFER))).isFalse();
+    }
+
+    private static org.web3j.protocol.core.methods.response.Log receiptLog(String transactionHash, String address,
+                                                                           String topic) {
+        org.web3j.protocol.core.methods.response.Log log = new org.web3j.protocol.core.methods.response.Log();
+        log.setTransactionHash(transactionHash);
+        log.setAddress(address);
+        log.setTopics(Collections.singletonList(topic));
+        return log;
+    }
+
+    private static Log log(String transactionHash, String address, String... topics) {
+        Log log = new Log();
+        log.setTransactionHash(transactionHash);
+        log.setAddress(address);
+        log.setTopics(Arrays.asList(topics));
+        return log;
+    }
+}
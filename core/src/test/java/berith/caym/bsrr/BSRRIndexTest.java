@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.bsrr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BSRRBlockCreators;
+import berith.caym.protocol.response.BSRRJoinRatio;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.Quantity;
+
+public class BSRRIndexTest {
+
+    private static final String FIRST = "Bxaa00000000000000000000000000000000000001";
+    private static final String SECOND = "Bxbb00000000000000000000000000000000000002";
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    private Web3jService web3jService;
+    private Caym caym;
+    private Quantity blockNumber;
+
+    @Before
+    public void setUp() throws Exception {
+        web3jService = mock(Web3jService.class);
+        caym = Caym.build(web3jService);
+
+        blockNumber = new Quantity();
+        blockNumber.setResult("0x14");
+        when(web3jService.send(any(Request.class), eq(Quantity.class))).thenAnswer(invocation -> blockNumber);
+
+        // FIRST is a creator at every height and SECOND at odd ones, FIRST mines even blocks and SECOND odd ones,
+        // the join ratio is height / 100
+        when(web3jService.sendBatch(any(BatchRequest.class))).thenAnswer(invocation -> {
+            BatchRequest batch = (BatchRequest) invocation.getArguments()[0];
+            batchSizes.add(batch.getRequests().size());
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ?> request : batch.getRequests()) {
+                if (request.getMethod().equals("bsrr_getBlockCreatorsByNumber")) {
+                    long height = height(request.getParams().get(0));
+                    BSRRBlockCreators blockCreators = new BSRRBlockCreators();
+                    blockCreators.setResult(height % 2 == 0 ? Collections.singletonList(FIRST)
+                                                            : Arrays.asList(FIRST, SECOND));
+                    responses.add(blockCreators);
+                } else if (request.getMethod().equals("berith_getBlockByNumber")) {
+                    long height = height(request.getParams().get(0));
+                    Block block = new Block();
+                    block.setMiner(height % 2 == 0 ? FIRST : "0x" + SECOND.substring(2));
+                    BerithBlock berithBlock = new BerithBlock();
+                    berithBlock.setResult(block);
+                    responses.add(berithBlock);
+                } else {
+                    BSRRJoinRatio joinRatio = new BSRRJoinRatio();
+                    joinRatio.setResult(height(request.getParams().get(1)) / 100.0);
+                    responses.add(joinRatio);
+                }
+            }
+            return new BatchResponse(batch.getRequests(), responses);
+        });
+    }
+
+    @Test
+    public void testSyncAndQuery() throws Exception {
+        BSRRIndex index = new BSRRIndex(caym, 1L, 10, 4, true);
+
+        // head 20 with 10 confirmations
+        assertThat(index.sync()).isEqualTo(10L);
+
+        assertThat(index.getNextHeight()).isEqualTo(11L);
+        assertThat(index.getAddressCount()).isEqualTo(2);
+        assertThat(index.getBlockCreators(3L)).containsExactly(FIRST, SECOND);
+        assertThat(index.getBlockCreators(11L)).isNull();
+        assertThat(index.countBlockCreatorHeights(FIRST, 1L, 10L)).isEqualTo(10);
+        assertThat(index.countBlockCreatorHeights(SECOND.toLowerCase(), 2L, 7L)).isEqualTo(3);
+        assertThat(index.countBlockCreatorHeights(SECOND, 0L, 100L)).isEqualTo(5);
+        assertThat(index.countBlockCreatorHeights("Bx00", 1L, 10L)).isZero();
+        assertThat(index.getBlockMiner(3L)).isEqualTo(SECOND);
+        assertThat(index.countBlocksCreated(FIRST, 1L, 10L)).isEqualTo(5);
+        assertThat(index.countBlocksCreated(SECOND, 2L, 7L)).isEqualTo(3);
+        assertThat(index.getJoinRatio(SECOND, 5L)).isEqualTo(0.05);
+        // per 2 heights one batch of creators and blocks, then their 3 join ratios
+        assertThat(batchSizes).containsExactly(4, 3, 4, 3, 4, 3, 4, 3, 4, 3);
+
+        blockNumber.setResult("0x16");
+        assertThat(index.sync()).isEqualTo(2L);
+        assertThat(index.countBlockCreatorHeights(SECOND, 0L, 100L)).isEqualTo(6);
+        assertThat(index.countBlocksCreated(SECOND, 0L, 100L)).isEqualTo(6);
+    }
+
+    @Test
+    public void testWithoutJoinRatios() throws Exception {
+        BSRRIndex index = new BSRRIndex(caym, 5L);
+        blockNumber.setResult("0x16");
+
+        // head 22 with 12 confirmations
+        assertThat(index.sync()).isEqualTo(6L);
+        assertThat(batchSizes).containsExactly(12);
+        assertThat(index.countBlockCreatorHeights(SECOND, 0L, 100L)).isEqualTo(3);
+    }
+
+    private static long height(Object defaultBlockParameter) {
+        return ((DefaultBlockParameterNumber) defaultBlockParameter).getBlockNumber().longValue();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.Quantity;
+import berith.caym.util.NumericUtil;
+
+public class CachingBerithTest {
+
+    private static final String BLOCK_HASH = "0x31c2342b1e0b8ffda1507fbffddf213c4b3c1e819ff6a84b943faabb0ebf2403";
+
+    private Web3jService web3jService;
+    private LruChainDataCache cache;
+    private CachingBerith berith;
+
+    @Before
+    public void setUp() throws Exception {
+        web3jService = mock(Web3jService.class);
+        cache = new LruChainDataCache();
+        berith = new CachingBerith(Caym.build(web3jService).berith(), cache, 12);
+
+        // blocks by number have the requested number, blocks by hash number 10
+        when(web3jService.send(any(Request.class), eq(BerithBlock.class))).thenAnswer(invocation -> {
+            Object param = ((Request<?, ?>) invocation.getArguments()[0]).getParams().get(0);
+            BigInteger number = param instanceof DefaultBlockParameterNumber
+                                ? ((DefaultBlockParameterNumber) param).getBlockNumber() : BigInteger.TEN;
+            Block block = new Block();
+            block.setNumber(NumericUtil.encodeQuantity(number));
+            BerithBlock berithBlock = new BerithBlock();
+            berithBlock.setResult(block);
+            return berithBlock;
+        });
+
+        Quantity blockNumber = new Quantity();
+        blockNumber.setResult("0x64");
+        when(web3jService.send(any(Request.class), eq(Quantity.class))).thenReturn(blockNumber);
+    }
+
+    @Test
+    public void testCacheBlockByHash() throws Exception {
+        BerithBlock first = berith.berithGetBlockByHash(BLOCK_HASH, false).send();
+        BerithBlock second = berith.berithGetBlockByHash(BLOCK_HASH.toUpperCase().replace("0X", "0x"), false)
+                                   .sendAsync().get();
+        berith.berithGetBlockByHash(BLOCK_HASH, true).send();
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getHitCount()).isEqualTo(1L);
+        assertThat(cache.getMissCount()).isEqualTo(2L);
+        verify(web3jService, times(2)).send(any(Request.class), eq(BerithBlock.class));
+    }
+
+    @Test
+    public void testCacheBlockByNumberOnceConfirmed() throws Exception {
+        send(number(50L));
+        send(number(50L));
+        send(number(95L));
+        send(number(95L));
+
+        // head 100 was fetched once, block 95 has only 5 confirmations
+        assertThat(berith.getHead()).isEqualTo(100L);
+        assertThat(cache.size()).isEqualTo(1);
+        verify(web3jService, times(3)).send(any(Request.class), eq(BerithBlock.class));
+        verify(web3jService, times(1)).send(any(Request.class), eq(Quantity.class));
+    }
+
+    @Test
+    public void testRefreshHeadAsynchronously() throws Exception {
+        Block block = new Block();
+        block.setNumber("0x32");
+        BerithBlock berithBlock = new BerithBlock();
+        berithBlock.setResult(block);
+        Quantity blockNumber = new Quantity();
+        blockNumber.setResult("0x64");
+        CompletableFuture<Quantity> head = new CompletableFuture<>();
+        when(web3jService.sendAsync(any(Request.class), eq(BerithBlock.class)))
+            .thenReturn(CompletableFuture.completedFuture(berithBlock));
+        when(web3jService.sendAsync(any(Request.class), eq(Quantity.class))).thenReturn(head);
+
+        CompletableFuture<BerithBlock> future = berith.berithGetBlockByNumber(number(50L), false).sendAsync();
+
+        // the response waits for the head instead of blocking the completing thread on it
+        assertThat(future.isDone()).isFalse();
+        head.complete(blockNumber);
+        assertThat(future.get(1L, TimeUnit.SECONDS)).isSameAs(berithBlock);
+        assertThat(cache.size()).isEqualTo(1);
+        verify(web3jService, never()).send(any(Request.class), eq(Quantity.class));
+    }
+
+    @Test
+    public void testBypassLatestAndPending() throws Exception {
+        send(DefaultBlockParameterName.LATEST);
+        send(DefaultBlockParameterName.LATEST);
+        send(DefaultBlockParameterName.PENDING);
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getMissCount()).isZero();
+        verify(web3jService, times(3)).send(any(Request.class), eq(BerithBlock.class));
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        LruChainDataCache lru = new LruChainDataCache(2, Long.MAX_VALUE);
+        lru.put("a", new Quantity());
+        lru.put("b", new Quantity());
+        lru.get("a", Quantity.class);
+        lru.put("c", new Quantity());
+
+        assertThat(lru.get("b", Quantity.class)).isNull();
+        assertThat(lru.get("a", Quantity.class)).isNotNull();
+        assertThat(lru.getEvictionCount()).isEqualTo(1L);
+
+        LruChainDataCache small = new LruChainDataCache(100, 3 * 1024L);
+        small.put("block-1", new BerithBlock());
+        small.put("block-2", new BerithBlock());
+        small.put("block-3", new BerithBlock());
+        small.put("block-4", new BerithBlock());
+
+        assertThat(small.size()).isEqualTo(3);
+        assertThat(small.getBytes()).isEqualTo(3 * 1024L);
+    }
+
+    @Test
+    public void testReadsAreAppliedToTheOrder() {
+        LruChainDataCache lru = new LruChainDataCache(2, Long.MAX_VALUE);
+        lru.put("a", new Quantity());
+        lru.put("b", new Quantity());
+        // more hits than the read buffer holds
+        for (int i = 0; i < 1000; i++) {
+            lru.get(i % 2 == 0 ? "b" : "a", Quantity.class);
+        }
+        lru.get("b", Quantity.class);
+        lru.put("c", new Quantity());
+
+        assertThat(lru.get("a", Quantity.class)).isNull();
+        assertThat(lru.get("b", Quantity.class)).isNotNull();
+        assertThat(lru.getHitCount()).isEqualTo(1002L);
+        assertThat(lru.getMissCount()).isEqualTo(1L);
+    }
+
+    private void send(DefaultBlockParameter defaultBlockParameter) throws Exception {
+        berith.berithGetBlockByNumber(defaultBlockParameter, false).send();
+    }
+
+    private static DefaultBlockParameter number(long number) {
+        return new DefaultBlockParameterNumber(number);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.Response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithGetTransactionReceipt;
+
+public class MappedChainDataCacheTest {
+
+    private static final String BLOCK = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{"
+        + "\"number\":\"0x1a4c3f\","
+        + "\"hash\":\"0x4d3c5b0cd8f0b4d9e52bf6a1eb2c0b8a5f76d0c2a4a0e5a3f8cbd7e2f1a96c3b\","
+        + "\"gasLimit\":\"0x7a1200\","
+        + "\"transactions\":[\"0x8d2f4a6c8e0b1d3f5a7c9e0b2d4f6a8c0e1b3d5f7a9c0e2b4d6f8a0c1e3b5d7f\"]}}";
+    private static final String RECEIPT = "{\"jsonrpc\":\"2.0\",\"id\":2,\"result\":{"
+        + "\"transactionHash\":\"0x8d2f4a6c8e0b1d3f5a7c9e0b2d4f6a8c0e1b3d5f7a9c0e2b4d6f8a0c1e3b5d7f\","
+        + "\"blockNumber\":\"0x1a4c3f\",\"gasUsed\":\"0x5208\",\"logs\":[]}}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    @Test
+    public void testReadAfterReopen() throws Exception {
+        Path directory = temporaryFolder.newFolder().toPath();
+        BerithBlock block = read(BLOCK, BerithBlock.class);
+
+        try (MappedChainDataCache cache = new MappedChainDataCache(directory, 4096)) {
+            cache.put("block", block);
+            cache.put("receipt", read(RECEIPT, BerithGetTransactionReceipt.class));
+            // without a raw response there is nothing to store
+            cache.put("copy", objectMapper.readValue(BLOCK, BerithBlock.class));
+
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(cache.get("block", BerithBlock.class).getBlock()).isEqualTo(block.getBlock());
+        }
+
+        try (MappedChainDataCache cache = new MappedChainDataCache(directory, 4096)) {
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(cache.get("block", BerithBlock.class).getBlock().getNumberAsLong()).isEqualTo(0x1a4c3fL);
+            assertThat(cache.get("receipt", BerithGetTransactionReceipt.class).getResult().getGasUsedAsLong())
+                .isEqualTo(21000L);
+            assertThat(cache.get("copy", BerithBlock.class)).isNull();
+            assertThat(cache.getHitCount()).isEqualTo(2L);
+            assertThat(cache.getMissCount()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void testRollOverSegments() throws Exception {
+        Path directory = temporaryFolder.newFolder().toPath();
+        BerithBlock block = read(BLOCK, BerithBlock.class);
+
+        try (MappedChainDataCache cache = new MappedChainDataCache(directory, 1024)) {
+            for (int i = 0; i < 10; i++) {
+                cache.put("block-" + i, block);
+            }
+        }
+
+        // a record takes about 250 bytes, so four fit in a segment
+        File[] segments = directory.toFile().listFiles();
+        assertThat(segments).hasSize(3);
+        try (MappedChainDataCache cache = new MappedChainDataCache(directory, 1024)) {
+            assertThat(cache.size()).isEqualTo(10);
+            assertThat(cache.get("block-9", BerithBlock.class).getBlock().getHash())
+                .isEqualTo(block.getBlock().getHash());
+
+            cache.put("block-10", block);
+            assertThat(cache.get("block-10", BerithBlock.class)).isNotNull();
+        }
+    }
+
+    @Test
+    public void testPromoteFromSecondTier() throws Exception {
+        LruChainDataCache memory = new LruChainDataCache();
+        try (MappedChainDataCache disk = new MappedChainDataCache(temporaryFolder.newFolder().toPath(), 4096)) {
+            disk.put("block", read(BLOCK, BerithBlock.class));
+            TieredChainDataCache cache = new TieredChainDataCache(memory, disk);
+
+            BerithBlock first = cache.get("block", BerithBlock.class);
+            BerithBlock second = cache.get("block", BerithBlock.class);
+
+            assertThat(second).isSameAs(first);
+            assertThat(disk.getHitCount()).isEqualTo(1L);
+            assertThat(memory.getHitCount()).isEqualTo(1L);
+        }
+    }
+
+    private <T extends Response<?>> T read(String json, Class<T> responseType)
+            throws Exception {
+        T response = objectMapper.readValue(json, responseType);
+        response.setRawResponse(json);
+        return response;
+    }
+}
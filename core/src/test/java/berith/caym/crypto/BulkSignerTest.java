@@ -0,0 +1,61 @@
+package berith.caym.crypto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.rlp.RlpEncoder;
+import org.web3j.rlp.RlpList;
+
+import berith.caym.util.NumericUtil;
+
+public class BulkSignerTest {
+
+    private final ECKeyPair keyPair = ECKeyPair.create(BigInteger.valueOf(3360));
+
+    @Test
+    public void testSignInOrder() {
+        List<RawTransaction> transactions = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            transactions.add(newTransaction(i));
+
+            RawTransaction tx = newTransaction(i);
+            Signer.signTransaction(Signer.BERITH_TESTNET_CHAIN_ID, tx, keyPair);
+            expected.add(NumericUtil.toHexString(RlpEncoder.encode(new RlpList(tx.encodeRLP()))));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> result = new BulkSigner(Signer.BERITH_TESTNET_CHAIN_ID, pool, 8)
+                    .sign(transactions, keyPair);
+
+            assertThat(result).containsExactlyElementsOf(expected);
+            assertThat(transactions.get(149).getV()).isNotNull();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSignStream() {
+        RawTransaction tx = newTransaction(1);
+        Signer.signTransaction(tx, keyPair);
+
+        List<String> result = new BulkSigner().sign(Stream.of(newTransaction(1)), keyPair);
+
+        assertThat(result).containsExactly(tx.getRawHash());
+    }
+
+    private static RawTransaction newTransaction(int nonce) {
+        return RawTransaction.createTransferTransaction(
+                BigInteger.valueOf(nonce), BigInteger.valueOf(1000000000L), BigInteger.valueOf(21000),
+                "Bx1234567890123456789012345678901234567890", BigInteger.valueOf(1234567890L + nonce));
+    }
+}
@@ -0,0 +1,92 @@
+package berith.caym.crypto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.web3j.crypto.ECKeyPair;
+
+import berith.caym.crypto.RawTransaction.Type;
+import berith.caym.util.NumericUtil;
+
+public class RawTransactionDecoderTest {
+
+    @Test
+    public void testDecodeFromDirectBufferSlice() {
+        // given
+        String to = "00004e6259984a857d43406efa1d6528f4055a69";
+        RawTransaction rawTransaction = RawTransaction.createFunctionCallTransaction(
+                BigInteger.valueOf(0x11a), BigInteger.valueOf(1000000000L), BigInteger.valueOf(100000L), to,
+                new BigInteger("100000000000000000000"), "0xa9059cbb00");
+        Signer.signTransaction(rawTransaction, ECKeyPair.create(BigInteger.valueOf(3360)));
+        byte[] encoded = RawTransactionEncoder.encode(rawTransaction);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 4);
+        buffer.putShort((short) 0x7fff).put(encoded).putShort((short) 0x7fff);
+        buffer.position(2).limit(2 + encoded.length);
+
+        // when
+        RawTransactionDecoder decoder = new RawTransactionDecoder().wrap(buffer);
+
+        // then
+        assertThat(buffer.position()).isEqualTo(2);
+        assertThat(decoder.getNonceAsLong()).isEqualTo(0x11aL);
+        assertThat(decoder.getGasPrice()).isEqualTo(BigInteger.valueOf(1000000000L));
+        assertThat(decoder.getGasLimitAsLong()).isEqualTo(100000L);
+        assertThat(decoder.getTo()).isEqualTo(to);
+        assertThat(decoder.getValue()).isEqualTo(new BigInteger("100000000000000000000"));
+        assertThat(decoder.getData()).isEqualTo("0xa9059cbb00");
+        assertThat(decoder.getDataLength()).isEqualTo(5);
+        assertThat(decoder.getBase()).isEqualTo(Type.MAIN.getValue());
+        assertThat(decoder.isSigned()).isTrue();
+        assertThat(decoder.getV()).isEqualTo(rawTransaction.getV());
+        assertThat(decoder.getR()).isEqualTo(rawTransaction.getR());
+        assertThat(decoder.getS()).isEqualTo(rawTransaction.getS());
+        assertThat(RawTransactionEncoder.encode(decoder.toRawTransaction())).isEqualTo(encoded);
+    }
+
+    @Test
+    public void testReuseDecoder() {
+        // given
+        RawTransaction contract = RawTransaction.createContractTransaction(
+                BigInteger.ZERO, BigInteger.ONE, BigInteger.TEN, BigInteger.ZERO, NumericUtil.toHexString(new byte[100]));
+        RawTransaction stake = RawTransaction.createStakeTransaction(
+                BigInteger.ONE, BigInteger.ONE, BigInteger.TEN, "af304e6259984a857d43406efa1d6528f4055a69",
+                BigInteger.ONE);
+        RawTransactionDecoder decoder = new RawTransactionDecoder();
+
+        // when then
+        decoder.wrap(RawTransactionEncoder.encode(contract));
+        assertThat(decoder.getTo()).isNull();
+        assertThat(decoder.getDataLength()).isEqualTo(100);
+        assertThat(decoder.isSigned()).isFalse();
+        assertThat(decoder.getV()).isNull();
+
+        decoder.wrap(RawTransactionEncoder.encode(stake));
+        assertThat(decoder.getTo()).isEqualTo("af304e6259984a857d43406efa1d6528f4055a69");
+        assertThat(decoder.getData()).isEqualTo("0x");
+        assertThat(decoder.getTarget()).isEqualTo(Type.STAKE.getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeTruncated() {
+        byte[] encoded = RawTransactionEncoder.encode(RawTransaction.createTransferTransaction(
+                BigInteger.ONE, BigInteger.ONE, BigInteger.TEN, "af304e6259984a857d43406efa1d6528f4055a69",
+                BigInteger.ONE));
+
+        new RawTransactionDecoder().wrap(encoded, 0, encoded.length - 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeNotAList() {
+        new RawTransactionDecoder().wrap(new byte[] {(byte) 0x82, 0x01, 0x02});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeStringLengthOverflow() {
+        // the third field claims 0x7fffffff bytes, its end overflows an int
+        new RawTransactionDecoder().wrap(NumericUtil.hexStringToByteArray("0xc880bb7fffffff0000"));
+    }
+}
@@ -0,0 +1,75 @@
+package berith.caym.crypto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.web3j.rlp.RlpEncoder;
+import org.web3j.rlp.RlpList;
+
+import berith.caym.util.NumericUtil;
+
+public class RawTransactionEncoderTest {
+
+    @Test
+    public void testEncodeMatchesRlpEncoder() {
+        for (RawTransaction tx : transactions()) {
+            assertThat(RawTransactionEncoder.encode(tx))
+                    .isEqualTo(RlpEncoder.encode(new RlpList(tx.encodeRLP())));
+            assertThat(RawTransactionEncoder.encodeForSigning(tx, Signer.BERITH_CHAIN_ID))
+                    .isEqualTo(RlpEncoder.encode(new RlpList(tx.encodeRlpToSign(Signer.BERITH_CHAIN_ID))));
+        }
+    }
+
+    @Test
+    public void testEncodeSignedMatchesRlpEncoder() {
+        for (RawTransaction tx : transactions()) {
+            tx.setV(BigInteger.valueOf(247));
+            tx.setR(new BigInteger("79bd31403163eecc3badbe97013ba313b11414273cc757730fa30af8311e5b9b", 16));
+            tx.setS(new BigInteger("5f8878cf0661ff3d5c0309facc3c501caf8a291ab1800b7cbc9ef7b8973d5776", 16));
+
+            assertThat(RawTransactionEncoder.encode(tx))
+                    .isEqualTo(RlpEncoder.encode(new RlpList(tx.encodeRLP())));
+        }
+    }
+
+    @Test
+    public void testEncodeIntoBuffers() {
+        RawTransaction tx = transactions().get(0);
+        byte[] expected = RlpEncoder.encode(new RlpList(tx.encodeRLP()));
+
+        byte[] out = new byte[expected.length + 3];
+        assertThat(RawTransactionEncoder.encode(tx, out, 3)).isEqualTo(expected.length);
+        assertThat(Arrays.copyOfRange(out, 3, out.length)).isEqualTo(expected);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(expected.length + 1);
+        buffer.put((byte) 1);
+        RawTransactionEncoder.encode(tx, buffer);
+        assertThat(buffer.position()).isEqualTo(expected.length + 1);
+    }
+
+    private static List<RawTransaction> transactions() {
+        return Arrays.asList(
+                new RawTransaction(BigInteger.ONE, BigInteger.valueOf(1000000000L), BigInteger.valueOf(21000),
+                                   "1234567890123456789012345678901234567890", BigInteger.valueOf(1234567890L),
+                                   "", 1, 1),
+                RawTransaction.createStakeTransaction(
+                        BigInteger.ZERO, BigInteger.valueOf(0x7f), BigInteger.valueOf(0x80),
+                        "Bxd8a25ff31c6174ce7bce74ca4a91c2e816dbf91e", new BigInteger("100000000000000000000000")),
+                RawTransaction.createContractTransaction(
+                        BigInteger.valueOf(Long.MAX_VALUE), BigInteger.ONE.shiftLeft(64), BigInteger.TEN,
+                        BigInteger.ZERO, NumericUtil.toHexString(new byte[300])),
+                RawTransaction.createFunctionCallTransaction(
+                        BigInteger.valueOf(255), BigInteger.ONE, BigInteger.ONE,
+                        "0x0000000000000000000000000000000000000001", BigInteger.ONE, "0x7f"),
+                RawTransaction.createFunctionCallTransaction(
+                        BigInteger.valueOf(256), BigInteger.ONE, BigInteger.ONE, "Bx01", BigInteger.ONE, "0x80"),
+                RawTransaction.createFunctionCallTransaction(
+                        BigInteger.ONE, BigInteger.ONE, BigInteger.ONE, "Bx90865e6e6737fe766dd08f39cc2cf1550b5f3875",
+                        BigInteger.ONE, "0xa9059cbb00000000000000000000000090865e6e6737fe766dd08f39cc2cf1550b5"));
+    }
+}
@@ -16,11 +16,14 @@
 
 package berith.caym.filter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import berith.caym.Caym;
@@ -28,7 +31,11 @@ import berith.caym.protocol.response.BerithFilter;
 import berith.caym.protocol.response.BerithLog;
 import berith.caym.protocol.response.BerithUninstallFilter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Flowable;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -41,6 +48,8 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.web3j.protocol.ObjectMapperFactory;
 import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.core.Request;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.NewHeadsNotification;
 
 @RunWith(MockitoJUnitRunner.class)
 public class BlockFilterTest {
@@ -104,4 +113,68 @@ public class BlockFilterTest {
         assertTrue(actual.contains("0x31c2342b1e0b8ffda1507fbffddf213c4b3c1e819ff6a84b943faabb0ebf2403"));
         assertTrue(actual.contains("0xccc0d2e07c1febcaca0c3341c4e1268204b06fefa4bb0c8c0d693d8e581c82da"));
     }
+
+    @Test
+    public void runSubscriptionTest() throws Exception {
+        WebSocketService webSocketService = mock(WebSocketService.class);
+        NewHeadsNotification notification = objectMapper.readValue(
+            "{\"jsonrpc\":\"2.0\",\"method\":\"berith_subscription\",\"params\":{"
+                + "\"subscription\":\"0x9ce59a13059e417087c02d3236a0b1cc\","
+                + "\"result\":{\"hash\":\"0x31c2342b1e0b8ffda1507fbffddf213c4b3c1e819ff6a84b943faabb0ebf2403\"}}}",
+            NewHeadsNotification.class);
+        when(webSocketService.subscribe(any(Request.class), eq("berith_unsubscribe"), eq(NewHeadsNotification.class)))
+            .thenReturn(Flowable.just(notification));
+
+        final List<String> actual = new ArrayList<>();
+        BlockFilter filter = new BlockFilter(Caym.build(webSocketService), new Callback<String>() {
+            @Override
+            public void onEvent(String event) {
+                actual.add(event);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.getMessage());
+            }
+        });
+
+        // when
+        filter.run(scheduledExecutorService, 500L);
+
+        // then
+        assertEquals(1, actual.size());
+        assertEquals("0x31c2342b1e0b8ffda1507fbffddf213c4b3c1e819ff6a84b943faabb0ebf2403", actual.get(0));
+        verify(webSocketService, never()).send(any(Request.class), eq(BerithFilter.class));
+    }
+
+    @Test
+    public void runSubscriptionFallbackTest() throws Exception {
+        WebSocketService webSocketService = mock(WebSocketService.class);
+        when(webSocketService.subscribe(any(Request.class), eq("berith_unsubscribe"), eq(NewHeadsNotification.class)))
+            .thenReturn(Flowable.error(new IOException("Subscription request failed with error: not supported")));
+        when(webSocketService.send(any(Request.class), eq(BerithFilter.class))).thenReturn(
+            objectMapper.readValue("{\"id\":1,\"jsonrpc\": \"2.0\",\"result\": \"0x1\"}", BerithFilter.class));
+        when(webSocketService.send(any(Request.class), eq(BerithLog.class))).thenReturn(
+            objectMapper.readValue("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":["
+                + "\"0xccc0d2e07c1febcaca0c3341c4e1268204b06fefa4bb0c8c0d693d8e581c82da\"]}", BerithLog.class));
+
+        final CountDownLatch blockHashLatch = new CountDownLatch(1);
+        BlockFilter filter = new BlockFilter(Caym.build(webSocketService), new Callback<String>() {
+            @Override
+            public void onEvent(String event) {
+                blockHashLatch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.getMessage());
+            }
+        });
+
+        // when
+        filter.run(scheduledExecutorService, 500L);
+
+        // then
+        assertTrue(blockHashLatch.await(1L, TimeUnit.SECONDS));
+    }
 }
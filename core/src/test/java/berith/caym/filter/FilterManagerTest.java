@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithFilter;
+import berith.caym.protocol.response.BerithLog;
+import berith.caym.util.NumericUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+public class FilterManagerTest {
+
+    private static final String BLOCK_HASH = "0x31c2342b1e0b8ffda1507fbffddf213c4b3c1e819ff6a84b943faabb0ebf2403";
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    private Web3jService web3jService;
+    private Caym caym;
+    private final List<String> activeEvents = new ArrayList<>();
+    private final List<String> idleEvents = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        web3jService = mock(Web3jService.class);
+        caym = Caym.build(web3jService);
+
+        when(web3jService.send(any(Request.class), eq(BerithFilter.class))).thenReturn(
+            objectMapper.readValue("{\"id\":1,\"jsonrpc\":\"2.0\",\"result\":\"0x1\"}", BerithFilter.class),
+            objectMapper.readValue("{\"id\":1,\"jsonrpc\":\"2.0\",\"result\":\"0x2\"}", BerithFilter.class));
+
+        // filter 0x1 always has a new block, filter 0x2 never
+        when(web3jService.sendBatch(any(BatchRequest.class))).thenAnswer(invocation -> {
+            BatchRequest batch = (BatchRequest) invocation.getArguments()[0];
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ?> request : batch.getRequests()) {
+                boolean active = NumericUtil.toBigInt((String) request.getParams().get(0)).intValue() == 1;
+                String result = active ? "[\"" + BLOCK_HASH + "\"]" : "[]";
+                responses.add(objectMapper.readValue(
+                    "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":" + result + "}", BerithLog.class));
+            }
+            return new BatchResponse(batch.getRequests(), responses);
+        });
+    }
+
+    @Test
+    public void testPollInOneBatchWithBackoff() throws Exception {
+        FilterManager filterManager = new FilterManager(caym, 100L, 1000L);
+        BlockFilter active = new BlockFilter(caym, callback(activeEvents));
+        BlockFilter idle = new BlockFilter(caym, callback(idleEvents));
+        filterManager.install(active);
+        filterManager.install(idle);
+
+        long now = System.nanoTime() / 1_000_000L + 100L;
+        for (int i = 0; i < 5; i++) {
+            filterManager.poll(now + i * 100L);
+        }
+
+        assertEquals(5, activeEvents.size());
+        assertTrue(idleEvents.isEmpty());
+        assertEquals(100L, filterManager.getPollingInterval(active));
+        // idle filter was polled at +0 and +200, next at +600
+        assertEquals(400L, filterManager.getPollingInterval(idle));
+        verify(web3jService, times(5)).sendBatch(any(BatchRequest.class));
+
+        for (int i = 0; i < 10; i++) {
+            filterManager.poll(now + 10_000L + i * 1000L);
+        }
+        assertEquals(1000L, filterManager.getPollingInterval(idle));
+    }
+
+    @Test
+    public void testReinstallFilterNotFound() throws Exception {
+        doAnswer(invocation -> {
+            BatchRequest batch = (BatchRequest) invocation.getArguments()[0];
+            List<Response<?>> responses = new ArrayList<>();
+            responses.add(objectMapper.readValue(
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":-32000,\"message\":\"filter not found\"}}",
+                BerithLog.class));
+            return new BatchResponse(batch.getRequests(), responses);
+        }).when(web3jService).sendBatch(any(BatchRequest.class));
+
+        FilterManager filterManager = new FilterManager(caym, 100L);
+        BlockFilter filter = new BlockFilter(caym, callback(activeEvents));
+        filterManager.install(filter);
+
+        filterManager.poll(Long.MAX_VALUE);
+
+        assertEquals("2", filter.getFilterId().toString());
+        assertEquals(1, filterManager.getFilterCount());
+    }
+
+    private static Callback<String> callback(List<String> events) {
+        return new Callback<String>() {
+            @Override
+            public void onEvent(String event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.getMessage());
+            }
+        };
+    }
+}
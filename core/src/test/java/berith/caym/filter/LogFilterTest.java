@@ -17,12 +17,15 @@
 package berith.caym.filter;
 
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import berith.caym.Caym;
@@ -31,7 +34,11 @@ import berith.caym.protocol.response.BerithFilter;
 import berith.caym.protocol.response.BerithLog;
 import berith.caym.protocol.response.BerithUninstallFilter;
 import berith.caym.protocol.response.Log;
+import berith.caym.protocol.response.LogNotification;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -40,9 +47,13 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.web3j.protocol.ObjectMapperFactory;
 import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
 import org.web3j.protocol.core.Request;
+import org.web3j.protocol.websocket.WebSocketService;
 
 public class LogFilterTest {
 
@@ -180,4 +191,148 @@ public class LogFilterTest {
         filter.cancel();
         assertTrue(actuals.size() == 5);
     }
+
+    @Test
+    public void runSubscriptionTest() throws Exception {
+        WebSocketService webSocketService = mock(WebSocketService.class);
+        // pushed before the historic logs are delivered, the first one is also a historic log
+        when(webSocketService.subscribe(any(Request.class), eq("berith_unsubscribe"), eq(LogNotification.class)))
+            .thenReturn(Flowable.just(logNotification("0x10", "0x1"), logNotification("0x11", "0x0")));
+        when(webSocketService.send(any(Request.class), eq(BerithLog.class)))
+            .thenReturn(berithLog(logJson("0x10", "0x0"), logJson("0x10", "0x1")));
+
+        List<String> actuals = new ArrayList<>();
+        LogFilter filter = new LogFilter(Caym.build(webSocketService), positionCallback(actuals),
+            new BerithFilterRequest().addSingleTopic("test"));
+
+        // when
+        filter.run(scheduledExecutorService, 500L);
+
+        // then
+        assertEquals(3, actuals.size());
+        assertEquals("0x10/0x0", actuals.get(0));
+        assertEquals("0x10/0x1", actuals.get(1));
+        assertEquals("0x11/0x0", actuals.get(2));
+        verify(webSocketService, never()).send(any(Request.class), eq(BerithFilter.class));
+    }
+
+    @Test
+    public void runSubscriptionWithToBlockTest() throws Exception {
+        WebSocketService webSocketService = mock(WebSocketService.class);
+        when(webSocketService.send(any(Request.class), eq(BerithFilter.class))).thenReturn(
+            objectMapper.readValue("{\"id\":1,\"jsonrpc\": \"2.0\",\"result\": \"0x1\"}", BerithFilter.class));
+        when(webSocketService.send(any(Request.class), eq(BerithUninstallFilter.class))).thenReturn(
+            objectMapper.readValue("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":true}", BerithUninstallFilter.class));
+        when(webSocketService.send(any(Request.class), eq(BerithLog.class)))
+            .thenReturn(berithLog(logJson("0x10", "0x0")));
+
+        final CountDownLatch logLatch = new CountDownLatch(1);
+        BerithFilterRequest filterRequest = new BerithFilterRequest(DefaultBlockParameterName.EARLIEST,
+            new DefaultBlockParameterNumber(0x20L), null);
+        LogFilter filter = new LogFilter(Caym.build(webSocketService), new Callback<Log>() {
+            @Override
+            public void onEvent(Log event) {
+                logLatch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.getMessage());
+            }
+        }, filterRequest);
+
+        // when
+        filter.run(scheduledExecutorService, 500L);
+
+        // then
+        assertTrue(logLatch.await(1L, TimeUnit.SECONDS));
+        filter.cancel();
+        verify(webSocketService, never()).subscribe(any(Request.class), any(String.class), eq(LogNotification.class));
+    }
+
+    @Test
+    public void runSubscriptionFallbackTest() throws Exception {
+        WebSocketService webSocketService = mock(WebSocketService.class);
+        PublishProcessor<LogNotification> notifications = PublishProcessor.create();
+        when(webSocketService.subscribe(any(Request.class), eq("berith_unsubscribe"), eq(LogNotification.class)))
+            .thenReturn(notifications);
+        when(webSocketService.send(any(Request.class), eq(BerithFilter.class))).thenReturn(
+            objectMapper.readValue("{\"id\":1,\"jsonrpc\": \"2.0\",\"result\": \"0x1\"}", BerithFilter.class));
+        when(webSocketService.send(any(Request.class), eq(BerithUninstallFilter.class))).thenReturn(
+            objectMapper.readValue("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":true}", BerithUninstallFilter.class));
+        // historic logs, then the logs of the reinstalled filter
+        when(webSocketService.send(any(Request.class), eq(BerithLog.class)))
+            .thenReturn(berithLog(logJson("0x10", "0x0")))
+            .thenReturn(berithLog(logJson("0x11", "0x0"), logJson("0x11", "0x1"), logJson("0x12", "0x0")))
+            .thenReturn(berithLog());
+
+        final CountDownLatch logLatch = new CountDownLatch(4);
+        List<String> actuals = new ArrayList<>();
+        Callback<Log> callback = positionCallback(actuals);
+        LogFilter filter = new LogFilter(Caym.build(webSocketService), new Callback<Log>() {
+            @Override
+            public void onEvent(Log event) {
+                callback.onEvent(event);
+                logLatch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                callback.onError(throwable);
+            }
+        }, new BerithFilterRequest().addSingleTopic("test"));
+
+        // when
+        filter.run(scheduledExecutorService, 500L);
+        notifications.onNext(logNotification("0x11", "0x0"));
+        notifications.onError(new IOException("connection closed"));
+
+        // then
+        assertTrue(logLatch.await(1L, TimeUnit.SECONDS));
+        filter.cancel();
+        assertEquals(4, actuals.size());
+        assertEquals("0x10/0x0", actuals.get(0));
+        assertEquals("0x11/0x0", actuals.get(1));
+        assertEquals("0x11/0x1", actuals.get(2));
+        assertEquals("0x12/0x0", actuals.get(3));
+
+        ArgumentCaptor<Request> newFilter = ArgumentCaptor.forClass(Request.class);
+        verify(webSocketService).send(newFilter.capture(), eq(BerithFilter.class));
+        BerithFilterRequest resumed = (BerithFilterRequest) newFilter.getValue().getParams().get(0);
+        assertEquals("0x11", resumed.getFromBlock().getValue());
+    }
+
+    private Callback<Log> positionCallback(List<String> actuals) {
+        return new Callback<Log>() {
+            @Override
+            public void onEvent(Log event) {
+                actuals.add(event.getBlockNumberRaw() + "/" + event.getLogIndexRaw());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.getMessage());
+            }
+        };
+    }
+
+    private BerithLog berithLog(String... logs) throws IOException {
+        return objectMapper.readValue(
+            "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":[" + String.join(",", logs) + "]}", BerithLog.class);
+    }
+
+    private LogNotification logNotification(String blockNumber, String logIndex) throws IOException {
+        return objectMapper.readValue("{\"jsonrpc\":\"2.0\",\"method\":\"berith_subscription\",\"params\":{"
+            + "\"subscription\":\"0x9ce59a13059e417087c02d3236a0b1cc\",\"result\":" + logJson(blockNumber, logIndex)
+            + "}}", LogNotification.class);
+    }
+
+    private static String logJson(String blockNumber, String logIndex) {
+        return "{\"address\":\"0x2a98c5f40bfa3dee83431103c535f6fae9a8ad38\","
+            + "\"blockHash\":\"0xd263df878c66b8a08c8509a8f33d6758bc3a1ee3c5ab3c9a765ea981ae9d72e3\","
+            + "\"blockNumber\":\"" + blockNumber + "\",\"data\":\"0x\",\"logIndex\":\"" + logIndex + "\","
+            + "\"removed\":false,\"topics\":[],"
+            + "\"transactionHash\":\"0x9d8a4410204140a8fa7f191b0b1d9526822a87d212ade0b6a3cbd20a6e2ed2e9\","
+            + "\"transactionIndex\":\"0x0\"}";
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.metrics.DefaultMetricsRegistry.MethodMetrics;
+import berith.caym.protocol.response.Quantity;
+
+public class InstrumentedWeb3jServiceTest {
+
+    private Web3jService web3jService;
+    private DefaultMetricsRegistry metricsRegistry;
+    private Caym caym;
+
+    @Before
+    public void setUp() {
+        web3jService = mock(Web3jService.class);
+        metricsRegistry = new DefaultMetricsRegistry();
+        caym = Caym.build(web3jService, metricsRegistry);
+    }
+
+    @Test
+    public void testRecordCallsAndErrors() throws Exception {
+        Quantity ok = new Quantity();
+        ok.setResult("0x1");
+        Quantity rejected = new Quantity();
+        rejected.setError(new Response.Error(-32000, "header not found"));
+        when(web3jService.send(any(Request.class), eq(Quantity.class)))
+            .thenReturn(ok, rejected)
+            .thenThrow(new IOException("connection reset"));
+
+        caym.berith().berithBlockNumber().send();
+        caym.berith().berithBlockNumber().send();
+        try {
+            caym.berith().berithBlockNumber().send();
+            fail();
+        } catch (IOException expected) {
+        }
+
+        MethodMetrics metrics = metricsRegistry.getMethod("berith_blockNumber");
+        assertThat(metrics.getCallCount()).isEqualTo(3L);
+        assertThat(metrics.getErrorCount()).isEqualTo(1L);
+        assertThat(metrics.getErrorCounts()).containsEntry(-32000, 1L);
+        assertThat(metrics.getFailureCount()).isEqualTo(1L);
+        assertThat(metrics.getLatency().getCount()).isEqualTo(3L);
+        assertThat(metricsRegistry.getMethods()).containsOnlyKeys("berith_blockNumber");
+    }
+
+    @Test
+    public void testRecordBatchPerMethod() throws Exception {
+        when(web3jService.sendBatch(any(BatchRequest.class))).thenAnswer(invocation -> {
+            BatchRequest batch = (BatchRequest) invocation.getArguments()[0];
+            List<Response<?>> responses = new ArrayList<>();
+            for (int i = 0; i < batch.getRequests().size(); i++) {
+                Quantity quantity = new Quantity();
+                quantity.setResult("0x1");
+                responses.add(quantity);
+            }
+            return new BatchResponse(batch.getRequests(), responses);
+        });
+
+        caym.newBatch()
+            .add(caym.berith().berithBlockNumber())
+            .add(caym.berith().berithBlockNumber())
+            .add(caym.berith().berithGasPrice())
+            .send();
+
+        assertThat(metricsRegistry.getMethod("berith_blockNumber").getCallCount()).isEqualTo(2L);
+        assertThat(metricsRegistry.getMethod("berith_gasPrice").getCallCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testNoopIsNotInstrumented() throws Exception {
+        Quantity ok = new Quantity();
+        ok.setResult("0x1");
+        when(web3jService.send(any(Request.class), eq(Quantity.class))).thenReturn(ok);
+
+        Caym plain = Caym.build(web3jService, MetricsRegistry.NOOP);
+
+        assertThat(plain.getWeb3JService()).isSameAs(web3jService);
+        assertThat(plain.berith().berithBlockNumber().send()).isSameAs(ok);
+        assertThat(metricsRegistry.getMethods()).isEmpty();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getPercentileNanos(0.5)).isEqualTo(-1L);
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(100L);
+        assertThat(histogram.getPercentileNanos(0.5)).isBetween(TimeUnit.MILLISECONDS.toNanos(50),
+                                                                TimeUnit.MILLISECONDS.toNanos(63));
+        assertThat(histogram.getPercentileNanos(0.99)).isBetween(TimeUnit.MILLISECONDS.toNanos(99),
+                                                                 TimeUnit.MILLISECONDS.toNanos(124));
+    }
+
+    @Test
+    public void testDecay() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 9; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+
+        histogram.decay();
+
+        assertThat(histogram.getCount()).isEqualTo(4L);
+        assertThat(histogram.getPercentileNanos(1.0)).isLessThan(TimeUnit.MILLISECONDS.toNanos(2));
+    }
+
+    @Test
+    public void testBucketBounds() {
+        for (long micros = 4L; micros < 1_000_000L; micros = micros * 3 / 2) {
+            int bucket = LatencyHistogram.bucket(micros);
+            assertThat(LatencyHistogram.upperBound(bucket)).isGreaterThan(micros);
+            assertThat(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) <= micros).isTrue();
+        }
+    }
+}
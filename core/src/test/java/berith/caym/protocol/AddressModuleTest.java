@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.ObjectMapperFactory;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import berith.caym.account.Address;
+import berith.caym.account.AddressPool;
+import berith.caym.protocol.response.BSRRBlockCreators;
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.TransactionObject;
+import berith.caym.protocol.response.Log;
+import berith.caym.protocol.response.Transaction;
+import berith.caym.protocol.response.TransactionReceipt;
+
+public class AddressModuleTest {
+
+    private static final String FROM = "Bx8b1d2e0c6b7f5c4a3e2d1f0a9b8c7d6e5f4a3b2c";
+    private static final String TO = "Bx0000000000000000000000000000000000000001";
+
+    private AddressPool addressPool;
+    private ObjectMapper objectMapper;
+
+    @Before
+    public void setUp() {
+        addressPool = new AddressPool();
+        objectMapper = AddressModule.register(ObjectMapperFactory.getObjectMapper().copy(), addressPool);
+    }
+
+    @Test
+    public void testPoolAddressFields() throws Exception {
+        Transaction transaction = objectMapper.readValue(
+            "{\"hash\":\"0x01\",\"from\":\"" + FROM + "\",\"to\":\"" + TO + "\"}", Transaction.class);
+        TransactionReceipt receipt = objectMapper.readValue(
+            "{\"transactionHash\":\"0x01\",\"from\":\"" + FROM + "\",\"to\":\"" + TO
+            + "\",\"contractAddress\":null}", TransactionReceipt.class);
+        Log log = objectMapper.readValue("{\"address\":\"" + TO + "\",\"data\":\"0x\"}", Log.class);
+        BSRRBlockCreators blockCreators = objectMapper.readValue(
+            "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":[\"" + FROM + "\",\"" + TO + "\"]}", BSRRBlockCreators.class);
+
+        assertThat(transaction.getFrom()).isEqualTo(FROM);
+        assertThat(receipt.getFrom()).isSameAs(transaction.getFrom());
+        assertThat(receipt.getTo()).isSameAs(transaction.getTo());
+        assertThat(receipt.getContractAddress()).isNull();
+        assertThat(log.getAddress()).isSameAs(transaction.getTo());
+        assertThat(blockCreators.getBlockCreators().get(0)).isSameAs(transaction.getFrom());
+        assertThat(blockCreators.getBlockCreators().get(1)).isSameAs(transaction.getTo());
+        assertThat(addressPool.size()).isEqualTo(2);
+        // other fields are not pooled
+        assertThat(transaction.getHash()).isNotSameAs(receipt.getTransactionHash());
+    }
+
+    @Test
+    public void testPoolBlockAddresses() throws Exception {
+        BerithBlock berithBlock = objectMapper.readValue(
+            "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"number\":\"0x1\",\"miner\":\"" + FROM
+            + "\",\"transactions\":[{\"hash\":\"0x01\",\"from\":\"" + FROM + "\",\"to\":\"" + TO + "\"}]}}",
+            BerithBlock.class);
+
+        TransactionObject transaction = (TransactionObject) berithBlock.getBlock().getTransactions().get(0);
+        assertThat(berithBlock.getBlock().getMiner()).isEqualTo(FROM);
+        assertThat(transaction.getFrom()).isSameAs(berithBlock.getBlock().getMiner());
+        assertThat(transaction.getTo()).isEqualTo(TO);
+        assertThat(addressPool.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAddressValue() throws Exception {
+        Address address = objectMapper.readValue("\"" + FROM + "\"", Address.class);
+
+        assertThat(address).isSameAs(addressPool.intern(FROM));
+        assertThat(objectMapper.writeValueAsString(address)).isEqualTo("\"" + FROM + "\"");
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testInvalidAddressValue() throws Exception {
+        objectMapper.readValue("\"0x1234\"", Address.class);
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testInvalidBlockCreators() throws Exception {
+        objectMapper.readValue("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"" + FROM + "\"}", BSRRBlockCreators.class);
+    }
+}
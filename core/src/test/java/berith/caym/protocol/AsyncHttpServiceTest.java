@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import berith.caym.Caym;
+import berith.caym.metrics.DefaultMetricsRegistry;
+import berith.caym.metrics.DefaultMetricsRegistry.MethodMetrics;
+import berith.caym.protocol.response.Quantity;
+
+public class AsyncHttpServiceTest {
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    private HttpServer httpServer;
+    private ExecutorService executorService;
+    private AsyncHttpService asyncHttpService;
+    private volatile int status = 200;
+
+    @Before
+    public void setUp() throws Exception {
+        executorService = Executors.newFixedThreadPool(4);
+        httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        httpServer.setExecutor(executorService);
+        // answers every request with its id as result, batches in reverse order
+        httpServer.createContext("/", this::handle);
+        httpServer.start();
+
+        asyncHttpService = new AsyncHttpService("http://127.0.0.1:" + httpServer.getAddress().getPort(), true);
+    }
+
+    @After
+    public void tearDown() {
+        httpServer.stop(0);
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testSendAsync() throws Exception {
+        Caym caym = Caym.build(asyncHttpService);
+        List<CompletableFuture<Quantity>> futures = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Request<?, Quantity> request = caym.berith().berithBlockNumber();
+            ids.add(request.getId());
+            futures.add(request.sendAsync());
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            Quantity quantity = futures.get(i).get();
+            assertThat(quantity.getValue().longValue()).isEqualTo(ids.get(i));
+            assertThat(quantity.getRawResponse()).contains("\"id\":" + ids.get(i));
+        }
+    }
+
+    @Test
+    public void testSendBatchAsyncMatchesResponsesById() throws Exception {
+        Caym caym = Caym.build(asyncHttpService);
+        BatchRequest batchRequest = caym.newBatch();
+        for (int i = 0; i < 5; i++) {
+            batchRequest.add(caym.berith().berithGasPrice());
+        }
+
+        BatchResponse batchResponse = batchRequest.sendAsync().get();
+
+        assertThat(batchResponse.getResponses()).hasSize(5);
+        for (int i = 0; i < 5; i++) {
+            assertThat(((Quantity) batchResponse.getResponses().get(i)).getValue().longValue())
+                .isEqualTo(batchRequest.getRequests().get(i).getId());
+        }
+    }
+
+    @Test
+    public void testHttpError() throws Exception {
+        status = 500;
+
+        try {
+            Caym.build(asyncHttpService).berith().berithBlockNumber().sendAsync().get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(ClientConnectionException.class);
+            assertThat(e.getCause().getMessage()).startsWith("Invalid response received: 500");
+        }
+    }
+
+    @Test
+    public void testRecordBytes() throws Exception {
+        DefaultMetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+        Caym caym = Caym.build(asyncHttpService, metricsRegistry);
+
+        Quantity quantity = caym.berith().berithBlockNumber().send();
+        caym.newBatch().add(caym.berith().berithGasPrice()).add(caym.berith().berithGasPrice()).send();
+
+        MethodMetrics blockNumber = metricsRegistry.getMethod("berith_blockNumber");
+        assertThat(blockNumber.getCallCount()).isEqualTo(1L);
+        assertThat(blockNumber.getBytesSent()).isGreaterThan(0L);
+        assertThat(blockNumber.getBytesReceived()).isEqualTo(quantity.getRawResponse().length());
+        assertThat(metricsRegistry.getMethod("berith_gasPrice").getCallCount()).isEqualTo(2L);
+        assertThat(metricsRegistry.getMethod("batch").getBytesReceived()).isGreaterThan(0L);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        final JsonNode request;
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            request = objectMapper.readTree(inputStream);
+        }
+
+        final JsonNode response;
+        if (request.isArray()) {
+            ArrayNode responses = objectMapper.createArrayNode();
+            for (int i = request.size() - 1; i >= 0; i--) {
+                responses.add(response(request.get(i)));
+            }
+            response = responses;
+        } else {
+            response = response(request);
+        }
+
+        byte[] body = objectMapper.writeValueAsString(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private ObjectNode response(JsonNode request) {
+        long id = request.get("id").asLong();
+        return objectMapper.createObjectNode()
+                           .put("jsonrpc", "2.0")
+                           .put("id", id)
+                           .put("result", "0x" + Long.toHexString(id));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.web3j.protocol.ObjectMapperFactory;
+
+import berith.caym.protocol.response.BerithBlock;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithBlock.TransactionHash;
+import berith.caym.protocol.response.BerithBlock.TransactionObject;
+import berith.caym.protocol.response.BerithBlockReader;
+import berith.caym.protocol.response.BlockVisitor;
+import berith.caym.protocol.response.Transaction;
+
+public class BerithBlockReaderTest {
+
+    private static final String FULL_BLOCK = "{\"jsonrpc\":\"2.0\",\"id\":7,\"result\":{"
+            + "\"hash\":\"0xd4c5d0d4b37e7636617ea0731e0bd03395605654bb7cafe11663234b7e9e23c7\","
+            + "\"number\":\"0x850\","
+            + "\"extra\":{\"unknown\":[1,2,3]},"
+            + "\"transactions\":["
+            + "{\"hash\":\"0x01\",\"nonce\":\"0x4\",\"from\":\"Bxd8a25ff31c6174ce7bce74ca4a91c2e816dbf91e\","
+            + "\"to\":null,\"value\":\"0x1\",\"base\":1,\"target\":2,\"v\":\"0x11cca\"},"
+            + "{\"hash\":\"0x02\",\"nonce\":\"0x5\",\"base\":2,\"target\":1,\"v\":27}"
+            + "],"
+            + "\"transactionsRoot\":\"0xc40267b67d6b4d1930cb54f913c69c6560dd35633d67a4921e6803f3dbf7ef84\","
+            + "\"uncles\":[]}}";
+
+    @Test
+    public void testStreamTransactionsToVisitor() throws Exception {
+        List<TransactionObject> transactions = new ArrayList<>();
+        List<Block> blocks = new ArrayList<>();
+
+        BerithBlock berithBlock = BerithBlockReader.read(
+                new ByteArrayInputStream(FULL_BLOCK.getBytes(StandardCharsets.UTF_8)),
+                new BlockVisitor() {
+                    @Override
+                    public void onTransaction(TransactionObject transaction) {
+                        transactions.add(transaction);
+                    }
+
+                    @Override
+                    public void onBlock(Block block) {
+                        blocks.add(block);
+                    }
+                });
+
+        assertThat(berithBlock.getId()).isEqualTo(7L);
+        assertThat(blocks).containsExactly(berithBlock.getBlock());
+        Block block = berithBlock.getBlock();
+        assertThat(block.getNumber()).isEqualTo(BigInteger.valueOf(0x850));
+        assertThat(block.getTransactions()).isEmpty();
+        assertThat(block.getTransactionsRoot())
+                .isEqualTo("0xc40267b67d6b4d1930cb54f913c69c6560dd35633d67a4921e6803f3dbf7ef84");
+
+        assertThat(transactions).hasSize(2);
+        assertThat(transactions.get(0).getHash()).isEqualTo("0x01");
+        assertThat(transactions.get(0).getTo()).isNull();
+        assertThat(transactions.get(0).getTarget()).isEqualTo(Transaction.Type.STAKE);
+        assertThat(transactions.get(0).getV()).isEqualTo(0x11ccaL);
+        assertThat(transactions.get(1).getNonce()).isEqualTo(BigInteger.valueOf(5));
+        assertThat(transactions.get(1).getV()).isEqualTo(27L);
+    }
+
+    @Test
+    public void testDeserializeMatchesStreaming() throws Exception {
+        BerithBlock berithBlock = ObjectMapperFactory.getObjectMapper().readValue(FULL_BLOCK, BerithBlock.class);
+
+        assertThat(berithBlock.getBlock().getTransactions()).hasSize(2);
+        assertThat(berithBlock.getBlock().getTransactions().get(1)).isInstanceOf(TransactionObject.class);
+        assertThat(((Transaction) berithBlock.getBlock().getTransactions().get(1).get()).getBase())
+                .isEqualTo(Transaction.Type.STAKE);
+    }
+
+    @Test
+    public void testReadTransactionHashes() throws Exception {
+        BerithBlock berithBlock = ObjectMapperFactory.getObjectMapper().readValue(
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"number\":\"0x1\",\"transactions\":[\"0x01\",\"0x02\"]}}",
+                BerithBlock.class);
+
+        assertThat(berithBlock.getBlock().getTransactions())
+                .containsExactly(new TransactionHash("0x01"), new TransactionHash("0x02"));
+    }
+
+    @Test
+    public void testReadNullResult() throws Exception {
+        BerithBlock berithBlock = BerithBlockReader.read(
+                new ByteArrayInputStream("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":null}".getBytes(StandardCharsets.UTF_8)),
+                null);
+
+        assertThat(berithBlock.getBlock()).isNull();
+        assertThat(berithBlock.hasError()).isFalse();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithAccounts;
+import berith.caym.protocol.response.Quantity;
+
+public class CoalescingWeb3jServiceTest {
+
+    private Web3jService web3jService;
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @Before
+    public void setUp() {
+        web3jService = mock(Web3jService.class);
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+        // answers every batch in reverse order to make sure responses are matched by id
+        when(web3jService.sendBatchAsync(any(BatchRequest.class))).thenAnswer(invocation -> {
+            BatchRequest batchRequest = (BatchRequest) invocation.getArguments()[0];
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ?> request : batchRequest.getRequests()) {
+                Quantity quantity = new Quantity();
+                quantity.setId(request.getId());
+                quantity.setResult("0x" + Long.toHexString(request.getId()));
+                responses.add(quantity);
+            }
+            Collections.reverse(responses);
+            return CompletableFuture.completedFuture(new BatchResponse(batchRequest.getRequests(), responses));
+        });
+    }
+
+    @After
+    public void tearDown() {
+        scheduledExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void testFlushWhenBatchIsFull() throws Exception {
+        CoalescingWeb3jService service =
+                new CoalescingWeb3jService(web3jService, 3, TimeUnit.MINUTES.toMillis(1), scheduledExecutorService);
+        Caym caym = Caym.build(service);
+
+        List<Request<?, Quantity>> requests = new ArrayList<>();
+        List<CompletableFuture<Quantity>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Request<?, Quantity> request = caym.berith().berithBlockNumber();
+            requests.add(request);
+            futures.add(request.sendAsync());
+        }
+
+        for (int i = 0; i < 3; i++) {
+            Quantity quantity = futures.get(i).get(1L, TimeUnit.SECONDS);
+            assertThat(quantity.getValue()).isEqualTo(BigInteger.valueOf(requests.get(i).getId()));
+        }
+        assertThat(service.getPendingCount()).isZero();
+        verify(web3jService, times(1)).sendBatchAsync(any(BatchRequest.class));
+    }
+
+    @Test
+    public void testFlushAfterWindow() throws Exception {
+        CoalescingWeb3jService service =
+                new CoalescingWeb3jService(web3jService, 100, 10L, scheduledExecutorService);
+        Caym caym = Caym.build(service);
+
+        Request<?, Quantity> first = caym.berith().berithBlockNumber();
+        Request<?, Quantity> second = caym.berith().berithGasPrice();
+        CompletableFuture<Quantity> firstFuture = first.sendAsync();
+        Quantity secondQuantity = second.send();
+
+        assertThat(firstFuture.get(1L, TimeUnit.SECONDS).getValue()).isEqualTo(BigInteger.valueOf(first.getId()));
+        assertThat(secondQuantity.getValue()).isEqualTo(BigInteger.valueOf(second.getId()));
+        verify(web3jService, times(1)).sendBatchAsync(any(BatchRequest.class));
+    }
+
+    @Test
+    public void testSingleRequestIsNotBatched() throws Exception {
+        Quantity quantity = new Quantity();
+        quantity.setResult("0x1");
+        when(web3jService.sendAsync(any(Request.class), eq(Quantity.class)))
+                .thenReturn(CompletableFuture.completedFuture(quantity));
+
+        CoalescingWeb3jService service =
+                new CoalescingWeb3jService(web3jService, 100, 10L, scheduledExecutorService);
+
+        assertThat(Caym.build(service).berith().berithBlockNumber().send().getValue()).isEqualTo(BigInteger.ONE);
+        verify(web3jService, never()).sendBatchAsync(any(BatchRequest.class));
+    }
+
+    @Test
+    public void testMixedBatchIsMatchedById() throws Exception {
+        // like web3j's Service, deserializes the i-th response with the type of the i-th request
+        ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+        doAnswer(invocation -> {
+            BatchRequest batchRequest = (BatchRequest) invocation.getArguments()[0];
+            List<String> results = new ArrayList<>();
+            for (Request<?, ?> request : batchRequest.getRequests()) {
+                String result = request.getMethod().equals("berith_accounts")
+                                ? "[\"0x407d73d8a49eeb85d32cf465507dd71d507100c1\"]"
+                                : "\"0x" + Long.toHexString(request.getId()) + "\"";
+                results.add("{\"jsonrpc\":\"2.0\",\"id\":" + request.getId() + ",\"result\":" + result + "}");
+            }
+            Collections.reverse(results);
+
+            List<Response<?>> responses = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                responses.add(objectMapper.readValue(results.get(i),
+                                                     batchRequest.getRequests().get(i).getResponseType()));
+            }
+            return CompletableFuture.completedFuture(new BatchResponse(batchRequest.getRequests(), responses));
+        }).when(web3jService).sendBatchAsync(any(BatchRequest.class));
+
+        CoalescingWeb3jService service =
+                new CoalescingWeb3jService(web3jService, 3, TimeUnit.MINUTES.toMillis(1), scheduledExecutorService);
+        Caym caym = Caym.build(service);
+
+        Request<?, Quantity> blockNumber = caym.berith().berithBlockNumber();
+        Request<?, BerithAccounts> accounts = caym.berith().berithAccounts();
+        Request<?, Quantity> gasPrice = caym.berith().berithGasPrice();
+        CompletableFuture<Quantity> blockNumberFuture = blockNumber.sendAsync();
+        CompletableFuture<BerithAccounts> accountsFuture = accounts.sendAsync();
+        CompletableFuture<Quantity> gasPriceFuture = gasPrice.sendAsync();
+
+        assertThat(blockNumberFuture.get(1L, TimeUnit.SECONDS).getValue())
+                .isEqualTo(BigInteger.valueOf(blockNumber.getId()));
+        assertThat(accountsFuture.get(1L, TimeUnit.SECONDS).getAccounts())
+                .containsExactly("0x407d73d8a49eeb85d32cf465507dd71d507100c1");
+        assertThat(gasPriceFuture.get(1L, TimeUnit.SECONDS).getValue())
+                .isEqualTo(BigInteger.valueOf(gasPrice.getId()));
+        verify(web3jService, times(1)).sendBatchAsync(any(BatchRequest.class));
+    }
+
+    @Test
+    public void testSendAfterClose() throws Exception {
+        CoalescingWeb3jService service =
+                new CoalescingWeb3jService(web3jService, 100, 10L, scheduledExecutorService);
+        service.close();
+
+        CompletableFuture<Quantity> future = Caym.build(service).berith().berithBlockNumber().sendAsync();
+
+        assertThat(future).isCompletedExceptionally();
+        try {
+            future.get();
+            fail("Expected the request to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IOException.class).hasMessage("CoalescingWeb3jService is closed");
+        }
+        assertThat(service.getPendingCount()).isZero();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithFilter;
+import berith.caym.protocol.response.BerithLog;
+import berith.caym.protocol.response.Quantity;
+
+public class LoadBalancingWeb3jServiceTest {
+
+    private Web3jService first;
+    private Web3jService second;
+    private LoadBalancingWeb3jService loadBalancingWeb3jService;
+    private Caym caym;
+
+    @Before
+    public void setUp() throws Exception {
+        first = mock(Web3jService.class);
+        second = mock(Web3jService.class);
+        loadBalancingWeb3jService = new LoadBalancingWeb3jService(Arrays.asList(first, second));
+        caym = Caym.build(loadBalancingWeb3jService);
+
+        for (Web3jService web3jService : Arrays.asList(first, second)) {
+            when(web3jService.send(any(Request.class), eq(Quantity.class))).thenReturn(quantity("0x1"));
+            when(web3jService.send(any(Request.class), eq(BerithFilter.class))).thenReturn(filter());
+            when(web3jService.send(any(Request.class), eq(BerithLog.class))).thenReturn(new BerithLog());
+        }
+    }
+
+    @Test
+    public void testRetryAndEjectFailingNode() throws Exception {
+        when(first.send(any(Request.class), eq(Quantity.class))).thenThrow(new IOException("connection refused"));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(caym.berith().berithBlockNumber().send().getResult()).isEqualTo("0x1");
+        }
+
+        // the first node fails three times, then it is ejected
+        verify(first, times(3)).send(any(Request.class), eq(Quantity.class));
+        verify(second, times(10)).send(any(Request.class), eq(Quantity.class));
+        assertThat(loadBalancingWeb3jService.getNodes().get(0).isEjected()).isTrue();
+    }
+
+    @Test
+    public void testPinFilterRequestsToOwner() throws Exception {
+        caym.berith().berithNewBlockFilter().send();
+        boolean ownedByFirst = !mockingDetails(first).getInvocations().isEmpty();
+        Web3jService owner = ownedByFirst ? first : second;
+        Web3jService other = ownedByFirst ? second : first;
+
+        for (int i = 0; i < 6; i++) {
+            caym.berith().berithGetFilterChanges(BigInteger.valueOf(7L)).send();
+        }
+
+        verify(owner, times(6)).send(any(Request.class), eq(BerithLog.class));
+        verify(other, never()).send(any(Request.class), eq(BerithLog.class));
+    }
+
+    @Test
+    public void testHealthCheckMarksLaggingNode() throws Exception {
+        stubHealth(first, "0x64", "0x5");
+        stubHealth(second, "0x5a", "0x5");
+
+        loadBalancingWeb3jService.checkHealth();
+        for (int i = 0; i < 4; i++) {
+            caym.berith().berithGasPrice().send();
+        }
+
+        assertThat(loadBalancingWeb3jService.getNodes().get(0).isHealthy()).isTrue();
+        assertThat(loadBalancingWeb3jService.getNodes().get(1).isHealthy()).isFalse();
+        assertThat(loadBalancingWeb3jService.getNodes().get(1).getBlockNumber()).isEqualTo(90L);
+        verify(first, times(4)).send(any(Request.class), eq(Quantity.class));
+        verify(second, never()).send(any(Request.class), eq(Quantity.class));
+    }
+
+    @Test
+    public void testBatchWithMissingResponse() throws Exception {
+        for (Web3jService web3jService : Arrays.asList(first, second)) {
+            when(web3jService.sendBatchAsync(any(BatchRequest.class))).thenAnswer(invocation -> {
+                BatchRequest batchRequest = (BatchRequest) invocation.getArguments()[0];
+                Quantity unknown = quantity("0x1");
+                unknown.setId(-1L);
+                return CompletableFuture.completedFuture(
+                    new BatchResponse(batchRequest.getRequests(), Collections.singletonList(unknown)));
+            });
+        }
+        Request<?, Quantity> request = caym.berith().berithBlockNumber();
+
+        try {
+            caym.newBatch().add(request).sendAsync().get(1L, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IOException.class)
+                                    .hasMessage("Missing response in batch for request id: " + request.getId());
+        }
+    }
+
+    @Test
+    public void testHedgeSlowRead() throws Exception {
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HedgingPolicy hedgingPolicy = new HedgingPolicy(HedgingPolicy.DEFAULT_METHODS, 0.95, 1L, 20L,
+                                                            scheduledExecutorService);
+            loadBalancingWeb3jService.setHedgingPolicy(hedgingPolicy);
+
+            // the first request never answers, the hedge does
+            List<CompletableFuture<Quantity>> futures = new ArrayList<>();
+            for (Web3jService web3jService : Arrays.asList(first, second)) {
+                when(web3jService.sendAsync(any(Request.class), eq(Quantity.class))).thenAnswer(invocation -> {
+                    CompletableFuture<Quantity> future = futures.isEmpty()
+                        ? new CompletableFuture<>() : CompletableFuture.completedFuture(quantity("0xa"));
+                    futures.add(future);
+                    return future;
+                });
+            }
+
+            Quantity balance = caym.berith().berithGetBalance("Bx0000000000000000000000000000000000000001",
+                                                              DefaultBlockParameterName.LATEST).send();
+
+            assertThat(balance.getResult()).isEqualTo("0xa");
+            assertThat(futures).hasSize(2);
+            assertThat(futures.get(0).isCancelled()).isTrue();
+            assertThat(hedgingPolicy.getHedgeCount()).isEqualTo(1L);
+            assertThat(hedgingPolicy.getHedgeWinCount()).isEqualTo(1L);
+            // the hedge's latency, and the cancelled primary's as a lower bound
+            assertThat(hedgingPolicy.getHistogram("berith_getBalance").getCount()).isEqualTo(2L);
+
+            // not hedged
+            caym.berith().berithBlockNumber().send();
+            assertThat(hedgingPolicy.getHedgeCount()).isEqualTo(1L);
+        } finally {
+            scheduledExecutorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHedgeIgnoresErrorLatencies() throws Exception {
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HedgingPolicy hedgingPolicy = new HedgingPolicy(scheduledExecutorService);
+            loadBalancingWeb3jService.setHedgingPolicy(hedgingPolicy);
+            Quantity error = new Quantity();
+            error.setError(new Response.Error(-32000, "header not found"));
+            for (Web3jService web3jService : Arrays.asList(first, second)) {
+                when(web3jService.sendAsync(any(Request.class), eq(Quantity.class)))
+                    .thenReturn(CompletableFuture.completedFuture(error));
+            }
+
+            Quantity balance = caym.berith().berithGetBalance("Bx0000000000000000000000000000000000000001",
+                                                              DefaultBlockParameterName.LATEST).send();
+
+            assertThat(balance.hasError()).isTrue();
+            assertThat(hedgingPolicy.getHistogram("berith_getBalance")).isNull();
+        } finally {
+            scheduledExecutorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHedgeDelayFollowsRecentLatencies() {
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HedgingPolicy hedgingPolicy = new HedgingPolicy(HedgingPolicy.DEFAULT_METHODS, 0.95, 1L, 1000L,
+                                                            scheduledExecutorService);
+            for (int i = 0; i < HedgingPolicy.DECAY_SAMPLES; i++) {
+                hedgingPolicy.record("berith_call", TimeUnit.MILLISECONDS.toNanos(500L));
+            }
+            assertThat(hedgingPolicy.getDelayNanos("berith_call")).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(400L));
+
+            // the node became fast, the old latencies decay away
+            for (int i = 0; i < 5 * HedgingPolicy.DECAY_SAMPLES; i++) {
+                hedgingPolicy.record("berith_call", TimeUnit.MILLISECONDS.toNanos(10L));
+            }
+            assertThat(hedgingPolicy.getDelayNanos("berith_call")).isLessThan(TimeUnit.MILLISECONDS.toNanos(20L));
+        } finally {
+            scheduledExecutorService.shutdownNow();
+        }
+    }
+
+    private static void stubHealth(Web3jService web3jService, String blockNumber, String peerCount) {
+        when(web3jService.sendAsync(any(Request.class), eq(Quantity.class))).thenAnswer(invocation -> {
+            Request<?, ?> request = (Request<?, ?>) invocation.getArguments()[0];
+            return CompletableFuture.completedFuture(
+                quantity("net_peerCount".equals(request.getMethod()) ? peerCount : blockNumber));
+        });
+    }
+
+    private static Quantity quantity(String value) {
+        Quantity quantity = new Quantity();
+        quantity.setResult(value);
+        return quantity;
+    }
+
+    private static BerithFilter filter() {
+        BerithFilter berithFilter = new BerithFilter();
+        berithFilter.setResult("0x7");
+        return berithFilter;
+    }
+}
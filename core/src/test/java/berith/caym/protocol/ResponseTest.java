@@ -53,6 +53,7 @@ import berith.caym.protocol.response.BerithProtocolVersion;
 import berith.caym.protocol.response.BerithSendTransaction;
 import berith.caym.protocol.response.BerithSyncing;
 import berith.caym.protocol.response.BerithTransaction;
+import berith.caym.protocol.response.Log;
 import berith.caym.protocol.response.Quantity;
 import berith.caym.protocol.response.Transaction;
 import berith.caym.protocol.response.TransactionReceipt;
@@ -361,6 +362,8 @@ public class ResponseTest extends AbstractResponseTester {
                    is("0x0000000000000000000000000000000000000000000000000000000000000000"));
         assertBigInteger(block.getNonce(), "0x1");
         assertBigInteger(block.getNumber(), "0x850");
+        assertThat(block.getNumberAsLong(), is(0x850L));
+        assertThat(block.getTimestampAsLong(), is(0x5dba6667L));
         assertThat(block.getParentHash(),
                    is("0x4b297ac504bb9a7d74a161a3f45f48717a5acf0aaf16e1e6d2faf4b34a4ffcd9"));
         assertThat(block.getReceiptsRoot(),
@@ -389,6 +392,7 @@ public class ResponseTest extends AbstractResponseTester {
         assertThat(tx.getHash(), is("0xcfe05741f5c30a50ceab4e847eb4f48ed7b0b9841c92e1aaaeaef12226950ade"));
         assertThat(tx.getInput(), is("0x"));
         assertBigInteger(tx.getNonce(), "0x4");
+        assertThat(tx.getNonceAsLong(), is(4L));
         assertThat(tx.getTo(), is("Bxd8a25ff31c6174ce7bce74ca4a91c2e816dbf91e"));
         assertBigInteger(tx.getTransactionIndex(), "0x0");
         assertBigInteger(tx.getValue(), "0x1");
@@ -438,6 +442,7 @@ public class ResponseTest extends AbstractResponseTester {
         assertThat(tx.getHash(), is("0xcfe05741f5c30a50ceab4e847eb4f48ed7b0b9841c92e1aaaeaef12226950ade"));
         assertThat(tx.getInput(), is("0x"));
         assertBigInteger(tx.getNonce(), "0x4");
+        assertThat(tx.getNonceAsLong(), is(4L));
         assertThat(tx.getTo(), is("Bxd8a25ff31c6174ce7bce74ca4a91c2e816dbf91e"));
         assertBigInteger(tx.getTransactionIndex(), "0x0");
         assertBigInteger(tx.getValue(), "0x1");
@@ -485,6 +490,10 @@ public class ResponseTest extends AbstractResponseTester {
         assertThat(tr.getTransactionHash(),
                    is("0xcfe05741f5c30a50ceab4e847eb4f48ed7b0b9841c92e1aaaeaef12226950ade"));
         assertBigInteger(tr.getTransactionIndex(), "0x0");
+        assertThat(tr.getBlockNumberAsLong(), is(0x850L));
+        assertThat(tr.getGasUsedAsLong(), is(0x5208L));
+        assertThat(tr.getTransactionIndexAsLong(), is(0L));
+        assertTrue(tr.getBlockNumber() == tr.getBlockNumber());
     }
 
     @Test
@@ -534,6 +543,8 @@ public class ResponseTest extends AbstractResponseTester {
         assertThat(logObject.getBlockHash(),
                    is("0x8216c5785ac562ff41e2dcfdf5785ac562ff41e2dcfdf829c5a142f1fccd7d"));
         assertBigInteger(logObject.getBlockNumber(), "0x1b4");
+        assertThat(logObject.getBlockNumberAsLong(), is(0x1b4L));
+        assertThat(logObject.getLogIndexAsLong(), is(1L));
         assertThat(logObject.getAddress(), is("0x16c5785ac562ff41e2dcfdf829c5a142f1fccd7d"));
         assertThat(logObject.getData(),
                    is("0x0000000000000000000000000000000000000000000000000000000000000000"));
@@ -580,6 +591,16 @@ public class ResponseTest extends AbstractResponseTester {
     }
 
     // ========== helpers for tests
+    @Test
+    public void testAsLongOfAbsentValues() {
+        // pending blocks, transactions and logs have no block number
+        assertThat(new Block().getNumberAsLong(), is(-1L));
+        assertThat(new Transaction().getBlockNumberAsLong(), is(-1L));
+        assertThat(new Transaction().getTransactionIndexAsLong(), is(-1L));
+        assertThat(new TransactionReceipt().getBlockNumberAsLong(), is(-1L));
+        assertThat(new Log().getLogIndexAsLong(), is(-1L));
+    }
+
     private void assertBigInteger(BigInteger bi, String hex) {
         assertThat(bi.toString(16), is(NumericUtil.cleanHexPrefix(hex)));
     }
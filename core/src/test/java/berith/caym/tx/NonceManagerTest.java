@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.tx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithSendTransaction;
+import berith.caym.protocol.response.Quantity;
+
+public class NonceManagerTest {
+
+    private static final String ADDRESS = "Bxd8a25ff31c6174ce7bce74ca4a91c2e816dbf91e";
+
+    private Web3jService web3jService;
+    private NonceManager nonceManager;
+
+    @Before
+    public void setUp() throws Exception {
+        web3jService = mock(Web3jService.class);
+        nonceManager = new NonceManager(Caym.build(web3jService).berith());
+
+        Quantity first = new Quantity();
+        first.setResult("0x5");
+        Quantity second = new Quantity();
+        second.setResult("0x64");
+        when(web3jService.send(any(Request.class), eq(Quantity.class))).thenReturn(first, second);
+    }
+
+    @Test
+    public void testReserveConcurrently() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        Set<Long> nonces = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        nonces.add(nonceManager.reserveAsLong(ADDRESS));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(nonces).hasSize(4000);
+        assertThat(nonces).contains(5L, 4004L);
+        assertThat(nonceManager.reserve(ADDRESS.toLowerCase())).isEqualTo(BigInteger.valueOf(4005L));
+        verify(web3jService, times(1)).send(any(Request.class), eq(Quantity.class));
+    }
+
+    @Test
+    public void testResyncOnNonceError() throws Exception {
+        BerithSendTransaction rejected = new BerithSendTransaction();
+        rejected.setError(new Response.Error(-32000, "nonce too low"));
+        when(web3jService.send(any(Request.class), eq(BerithSendTransaction.class))).thenReturn(rejected);
+
+        assertThat(nonceManager.reserveAsLong(ADDRESS)).isEqualTo(5L);
+        assertThat(nonceManager.reserveAsLong(ADDRESS)).isEqualTo(6L);
+
+        nonceManager.sendRawTransaction(ADDRESS, "0x00");
+
+        assertThat(nonceManager.reserveAsLong(ADDRESS)).isEqualTo(100L);
+        verify(web3jService, times(2)).send(any(Request.class), eq(Quantity.class));
+    }
+
+    @Test
+    public void testKeepCounterOnOtherErrors() throws Exception {
+        BerithSendTransaction rejected = new BerithSendTransaction();
+        rejected.setError(new Response.Error(-32000, "insufficient funds for gas * price + value"));
+
+        nonceManager.reserveAsLong(ADDRESS);
+
+        assertThat(nonceManager.onResponse(ADDRESS, rejected)).isFalse();
+        assertThat(nonceManager.reserveAsLong(ADDRESS)).isEqualTo(6L);
+    }
+
+    @Test
+    public void testShareCounterAcrossPrefixes() throws Exception {
+        assertThat(nonceManager.reserveAsLong(ADDRESS)).isEqualTo(5L);
+        assertThat(nonceManager.reserveAsLong("0x" + ADDRESS.substring(2))).isEqualTo(6L);
+        verify(web3jService, times(1)).send(any(Request.class), eq(Quantity.class));
+    }
+}
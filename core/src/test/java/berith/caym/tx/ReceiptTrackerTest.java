@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.tx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.protocol.response.BerithBlock.Block;
+import berith.caym.protocol.response.BerithGetTransactionReceipt;
+import berith.caym.protocol.response.TransactionReceipt;
+
+public class ReceiptTrackerTest {
+
+    private final Map<String, TransactionReceipt> receipts = new HashMap<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    private Web3jService web3jService;
+    private Caym caym;
+
+    @Before
+    public void setUp() {
+        web3jService = mock(Web3jService.class);
+        caym = Caym.build(web3jService);
+
+        when(web3jService.sendBatchAsync(any(BatchRequest.class))).thenAnswer(invocation -> {
+            BatchRequest batch = (BatchRequest) invocation.getArguments()[0];
+            batchSizes.add(batch.getRequests().size());
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ?> request : batch.getRequests()) {
+                BerithGetTransactionReceipt response = new BerithGetTransactionReceipt();
+                response.setResult(receipts.get((String) request.getParams().get(0)));
+                responses.add(response);
+            }
+            return CompletableFuture.completedFuture(new BatchResponse(batch.getRequests(), responses));
+        });
+    }
+
+    @Test
+    public void testConfirmInOneBatchPerBlock() throws Exception {
+        ReceiptTracker tracker = new ReceiptTracker(caym, 2, 60_000L, 100);
+        CompletableFuture<TransactionReceipt> first = tracker.track("0x01");
+        CompletableFuture<TransactionReceipt> second = tracker.track("0x02");
+        assertThat(tracker.track("0x01")).isSameAs(first);
+
+        receipts.put("0x01", receipt("0x01", 10L, "0xa10"));
+        tracker.onBlock(10L);
+        assertThat(first).isNotDone();
+
+        receipts.put("0x02", receipt("0x02", 11L, "0xa11"));
+        tracker.onBlock(11L);
+        assertThat(first.get().getBlockHash()).isEqualTo("0xa10");
+        assertThat(second).isNotDone();
+
+        // the receipt of 0x02 is not looked up again until it has two confirmations
+        tracker.onBlock(12L);
+        assertThat(second.get().getBlockHash()).isEqualTo("0xa11");
+        assertThat(batchSizes).containsExactly(2, 2, 1);
+        assertThat(tracker.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void testForgetReceiptOfRemovedBlock() {
+        ReceiptTracker tracker = new ReceiptTracker(caym, 3, 60_000L, 100);
+        CompletableFuture<TransactionReceipt> future = tracker.track("0x01");
+
+        receipts.put("0x01", receipt("0x01", 10L, "0xa10"));
+        tracker.onBlock(10L);
+        tracker.onBlock(11L);
+        assertThat(batchSizes).containsExactly(1);
+
+        Block removed = new Block();
+        removed.setHash("0xa10");
+        tracker.onBlockRemoved(removed);
+        receipts.remove("0x01");
+        tracker.onBlock(12L);
+
+        assertThat(batchSizes).containsExactly(1, 1);
+        assertThat(future).isNotDone();
+    }
+
+    @Test
+    public void testSplitLargePolls() {
+        ReceiptTracker tracker = new ReceiptTracker(caym, 1, 60_000L, 2);
+        for (int i = 0; i < 5; i++) {
+            tracker.track("0x0" + i);
+        }
+
+        tracker.onBlock(1L);
+
+        assertThat(batchSizes).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ReceiptTracker tracker = new ReceiptTracker(caym, 1, 1L, 100);
+        CompletableFuture<TransactionReceipt> future = tracker.track("0x01");
+        Thread.sleep(10L);
+
+        tracker.onBlock(1L);
+
+        try {
+            future.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+        }
+        assertThat(batchSizes).isEmpty();
+    }
+
+    @Test
+    public void testTimeoutWithoutBlocks() throws Exception {
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ReceiptTracker tracker = new ReceiptTracker(caym, 1, 10L, 100, scheduledExecutorService);
+            CompletableFuture<TransactionReceipt> future = tracker.track("0x01");
+
+            try {
+                future.get(5L, TimeUnit.SECONDS);
+                fail("expected ExecutionException");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+            }
+            assertThat(batchSizes).isEmpty();
+        } finally {
+            scheduledExecutorService.shutdownNow();
+        }
+    }
+
+    private static TransactionReceipt receipt(String transactionHash, long blockNumber, String blockHash) {
+        TransactionReceipt receipt = new TransactionReceipt();
+        receipt.setTransactionHash(transactionHash);
+        receipt.setBlockNumber("0x" + Long.toHexString(blockNumber));
+        receipt.setBlockHash(blockHash);
+        return receipt;
+    }
+}
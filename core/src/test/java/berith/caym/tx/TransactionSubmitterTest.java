@@ -0,0 +1,219 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.tx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import berith.caym.Caym;
+import berith.caym.crypto.RawTransaction;
+import berith.caym.crypto.RawTransactionDecoder;
+import berith.caym.crypto.Signer;
+import berith.caym.protocol.response.BerithSendTransaction;
+import berith.caym.util.NumericUtil;
+
+public class TransactionSubmitterTest {
+
+    private static final ECKeyPair KEY_PAIR = ECKeyPair.create(BigInteger.valueOf(3360));
+    private static final String TO = "af304e6259984a857d43406efa1d6528f4055a69";
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final List<Long> sentNonces = new ArrayList<>();
+    // number of responses answered with a full pool
+    private final AtomicInteger pushBacks = new AtomicInteger();
+
+    private Web3jService web3jService;
+    private TransactionSubmitter submitter;
+
+    @Before
+    public void setUp() {
+        web3jService = mock(Web3jService.class);
+
+        // answers with the nonce of each transaction as its hash
+        when(web3jService.sendBatchAsync(any(BatchRequest.class))).thenAnswer(invocation -> {
+            BatchRequest batch = (BatchRequest) invocation.getArguments()[0];
+            synchronized (batchSizes) {
+                batchSizes.add(batch.getRequests().size());
+            }
+            List<Response<?>> responses = new ArrayList<>();
+            for (Request<?, ?> request : batch.getRequests()) {
+                RawTransactionDecoder decoder = new RawTransactionDecoder().wrap(
+                    NumericUtil.hexStringToByteArray((String) request.getParams().get(0)));
+                synchronized (batchSizes) {
+                    sentNonces.add(decoder.getNonceAsLong());
+                }
+                BerithSendTransaction response = new BerithSendTransaction();
+                if (decoder.isSigned() && pushBacks.getAndDecrement() > 0) {
+                    response.setError(new Response.Error(-32000, "txpool is full"));
+                } else {
+                    response.setResult("0x" + Long.toHexString(decoder.getNonceAsLong()));
+                }
+                responses.add(response);
+            }
+            return CompletableFuture.completedFuture(new BatchResponse(batch.getRequests(), responses));
+        });
+
+        submitter = new TransactionSubmitter(Caym.build(web3jService), KEY_PAIR, Signer.BERITH_CHAIN_ID,
+                                             ForkJoinPool.commonPool(), 100, 10, 2);
+    }
+
+    @After
+    public void tearDown() {
+        submitter.close();
+    }
+
+    @Test
+    public void testSendInBatches() throws Exception {
+        List<CompletableFuture<BerithSendTransaction>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(submitter.submit(transaction(i)));
+        }
+
+        submitter.start();
+
+        for (int i = 0; i < 25; i++) {
+            assertThat(futures.get(i).get(5, TimeUnit.SECONDS).getTransactionHash())
+                .isEqualTo("0x" + Integer.toHexString(i));
+        }
+        assertThat(batchSizes).containsExactly(10, 10, 5);
+        assertThat(submitter.getAcceptedCount()).isEqualTo(25L);
+        assertThat(submitter.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void testResendWhenPoolIsFull() throws Exception {
+        pushBacks.set(2);
+        List<CompletableFuture<BerithSendTransaction>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(submitter.submit(transaction(i)));
+        }
+
+        submitter.start();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(futures.get(i).get(5, TimeUnit.SECONDS).hasError()).isFalse();
+        }
+        assertThat(batchSizes).containsExactly(3, 2);
+        assertThat(submitter.getPushedBackCount()).isEqualTo(2L);
+        assertThat(submitter.getAcceptedCount()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            submitter.submit(transaction(i));
+        }
+
+        CompletableFuture<BerithSendTransaction> future = submitter.trySubmit(transaction(100));
+
+        assertThat(future).isCompletedExceptionally();
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+        }
+        assertThat(submitter.getQueueDepth()).isEqualTo(100);
+    }
+
+    @Test
+    public void testFailPushedBackAfterClose() throws Exception {
+        CompletableFuture<BatchResponse> batchFuture = new CompletableFuture<>();
+        List<BatchRequest> batches = new ArrayList<>();
+        doAnswer(invocation -> {
+            synchronized (batches) {
+                batches.add((BatchRequest) invocation.getArguments()[0]);
+                batches.notifyAll();
+            }
+            return batchFuture;
+        }).when(web3jService).sendBatchAsync(any(BatchRequest.class));
+
+        CompletableFuture<BerithSendTransaction> future = submitter.submit(transaction(0));
+        submitter.start();
+        synchronized (batches) {
+            while (batches.isEmpty()) {
+                batches.wait(5000L);
+            }
+        }
+        submitter.close();
+
+        BerithSendTransaction response = new BerithSendTransaction();
+        response.setError(new Response.Error(-32000, "txpool is full"));
+        batchFuture.complete(new BatchResponse(batches.get(0).getRequests(), Collections.singletonList(response)));
+
+        assertClosed(future);
+        assertClosed(submitter.submit(transaction(1)));
+        assertClosed(submitter.trySubmit(transaction(2)));
+        assertThat(submitter.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void testResendInNonceOrder() throws Exception {
+        pushBacks.set(10);
+        List<CompletableFuture<BerithSendTransaction>> futures = new ArrayList<>();
+        for (int i = 9; i >= 0; i--) {
+            futures.add(submitter.submit(transaction(i)));
+        }
+
+        submitter.start();
+
+        for (CompletableFuture<BerithSendTransaction> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS).hasError()).isFalse();
+        }
+        assertThat(batchSizes).containsExactly(10, 10);
+        assertThat(sentNonces.subList(10, 20)).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+    }
+
+    private static void assertClosed(CompletableFuture<BerithSendTransaction> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected the future to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IOException.class).hasMessage("TransactionSubmitter is closed");
+        }
+    }
+
+    private static RawTransaction transaction(long nonce) {
+        return RawTransaction.createTransferTransaction(
+            BigInteger.valueOf(nonce), BigInteger.ONE, BigInteger.valueOf(21000L), TO, BigInteger.TEN);
+    }
+}
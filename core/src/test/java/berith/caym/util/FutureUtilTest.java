@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Test;
+
+public class FutureUtilTest {
+
+    @Test
+    public void testToIOException() {
+        IOException ioException = new IOException("connection refused");
+        IllegalStateException runtimeException = new IllegalStateException("closed");
+
+        assertThat(FutureUtil.toIOException(new CompletionException(ioException))).isSameAs(ioException);
+        assertThat(FutureUtil.toIOException(runtimeException).getCause()).isSameAs(runtimeException);
+        assertThat(FutureUtil.unwrap(new CompletionException(runtimeException))).isSameAs(runtimeException);
+    }
+
+    @Test
+    public void testAwait() throws Exception {
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("closed"));
+        try {
+            FutureUtil.await(failed);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo("closed");
+        }
+
+        CompletableFuture<String> io = new CompletableFuture<>();
+        io.completeExceptionally(new IOException("connection refused"));
+        try {
+            FutureUtil.await(io);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("connection refused");
+        }
+
+        assertThat(FutureUtil.await(CompletableFuture.completedFuture("ok"))).isEqualTo("ok");
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Berith foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package berith.caym.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.web3j.exceptions.MessageDecodingException;
+import org.web3j.utils.Numeric;
+
+public class NumericUtilTest {
+
+    @Test
+    public void testToHexString() {
+        byte[] input = new byte[256];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) i;
+        }
+
+        assertThat(NumericUtil.toHexString(input)).isEqualTo(Numeric.toHexString(input));
+        assertThat(NumericUtil.toHexString(input, 250, 6, false)).isEqualTo("fafbfcfdfeff");
+        assertThat(NumericUtil.toHexString(new byte[0])).isEqualTo("0x");
+    }
+
+    @Test
+    public void testHexStringToByteArray() {
+        assertThat(NumericUtil.hexStringToByteArray("0x00ff7F80")).containsExactly(0x00, 0xff, 0x7f, 0x80);
+        assertThat(NumericUtil.hexStringToByteArray("fff")).containsExactly(0x0f, 0xff);
+        assertThat(NumericUtil.hexStringToByteArray("0x")).isEmpty();
+        assertThat(NumericUtil.hexStringToByteArray("")).isEmpty();
+        assertThat(NumericUtil.hexStringToByteArray("Bx0102", 2, 4)).containsExactly(0x01, 0x02);
+    }
+
+    @Test
+    public void testEncodeDecodeIntoBuffers() {
+        byte[] input = {0x12, 0x34, (byte) 0xab};
+        char[] chars = new char[8];
+        assertThat(NumericUtil.encodeHex(input, 1, 2, chars, 2)).isEqualTo(4);
+        assertThat(new String(chars, 2, 4)).isEqualTo("34ab");
+
+        byte[] bytes = new byte[4];
+        assertThat(NumericUtil.decodeHex("xx34ab", 2, 4, bytes, 1)).isEqualTo(2);
+        assertThat(bytes).containsExactly(0x00, 0x34, 0xab, 0x00);
+    }
+
+    @Test
+    public void testDecodeHexAsLong() {
+        assertThat(NumericUtil.decodeHexAsLong("0xffffffffffffffff", 2, 16)).isEqualTo(-1L);
+        assertThat(NumericUtil.decodeHexAsLong("00000000000000A1", 0, 16)).isEqualTo(0xa1L);
+        assertThat(NumericUtil.decodeHexAsLong("123", 1, 2)).isEqualTo(0x23L);
+    }
+
+    @Test(expected = MessageDecodingException.class)
+    public void testHexStringToByteArrayInvalidCharacter() {
+        NumericUtil.hexStringToByteArray("0x0g");
+    }
+
+    @Test
+    public void testDecodeQuantityAsLong() {
+        assertThat(NumericUtil.decodeQuantityAsLong("0x0")).isEqualTo(0L);
+        assertThat(NumericUtil.decodeQuantityAsLong("0x850")).isEqualTo(0x850L);
+        assertThat(NumericUtil.decodeQuantityAsLong("0x7fffffffffffffff")).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test(expected = MessageDecodingException.class)
+    public void testDecodeQuantityAsLongOverflow() {
+        NumericUtil.decodeQuantityAsLong("0x8000000000000000");
+    }
+}